@@ -44,6 +44,43 @@ tasks.test {
     useJUnitPlatform()
 }
 
+// offline performance harness, see src/perf
+sourceSets {
+    create("perf") {
+        compileClasspath += sourceSets.main.get().output
+        runtimeClasspath += sourceSets.main.get().output
+    }
+}
+
+configurations["perfImplementation"].extendsFrom(configurations.implementation.get())
+
+// the training run of the fast-start distribution, kept out of the jar like the harness
+sourceSets {
+    create("fastStart") {
+        compileClasspath += sourceSets.main.get().output
+        runtimeClasspath += sourceSets.main.get().output
+    }
+}
+
+configurations["fastStartImplementation"].extendsFrom(configurations.implementation.get())
+
+tasks.register<JavaExec>("installHarness") {
+    group = "verification"
+    description = "Runs install/uninstall repeatedly against a local fake GitHub/Fabric server and reports timings."
+    classpath = sourceSets["perf"].runtimeClasspath
+    mainClass.set("de.rhm176.silk.installer.InstallLoadHarness")
+    systemProperty("java.awt.headless", "true")
+    args(providers.gradleProperty("harnessArgs").map { it.trim().split(Regex("\\s+")) }.getOrElse(emptyList()))
+}
+
+tasks.register<JavaExec>("classpathBenchmark") {
+    group = "verification"
+    description = "Compares class lookup time of an installation's lib/ layout against the packed single jar."
+    classpath = sourceSets["perf"].runtimeClasspath
+    mainClass.set("de.rhm176.silk.installer.ClasspathBenchmark")
+    args(providers.gradleProperty("gamePath").getOrElse("."))
+}
+
 application {
     mainClass.set(manifestAttributes["Main-Class"])
 }
@@ -77,4 +114,115 @@ tasks.shadowJar {
 
 tasks.build {
     dependsOn(tasks.shadowJar)
-}
\ No newline at end of file
+}
+
+// optional fast-start distribution: a runtime trimmed to the modules the installer uses, the fat jar and the classes a
+// training run loaded, from which the launcher creates a class data sharing archive on its first start
+val fastStartDir = layout.buildDirectory.dir("fast-start")
+val fastStartModules = listOf(
+    "java.base",
+    "java.desktop",
+    "java.net.http",
+    // only used by the training run, which runs on this runtime
+    "jdk.httpserver",
+    // only loaded as services, so jdeps does not list them: TLS with elliptic curves and the jar file system
+    "jdk.crypto.ec",
+    "jdk.zipfs",
+)
+val fastStartJdk = javaToolchains.launcherFor(java.toolchain).map { it.metadata.installationPath }
+
+val fastStartRuntime = tasks.register<Exec>("fastStartRuntime") {
+    group = "distribution"
+    description = "Links a Java runtime that only contains the modules the installer uses."
+    val runtimeDir = fastStartDir.map { it.dir("runtime") }
+    outputs.dir(runtimeDir)
+    doFirst {
+        delete(runtimeDir)
+        executable = fastStartJdk.get().file("bin/jlink").asFile.path
+    }
+    args(
+        "--add-modules", fastStartModules.joinToString(","),
+        "--strip-debug",
+        "--no-man-pages",
+        "--no-header-files",
+        "--compress=2",
+        "--output", runtimeDir.get().asFile.path,
+    )
+}
+
+// the runtime's own archive of its JDK classes, used until the launcher created the installer's. It is written next to
+// the runtime rather than into it, so that the runtime stays up to date, and put into place by fastStartImage.
+val fastStartRuntimeArchive = tasks.register<Exec>("fastStartRuntimeArchive") {
+    group = "distribution"
+    description = "Creates the default class data sharing archive of the trimmed runtime."
+    dependsOn(fastStartRuntime)
+    val archive = fastStartDir.map { it.file("runtime-archive/classes.jsa") }
+    outputs.file(archive)
+    doFirst {
+        archive.get().asFile.parentFile.mkdirs()
+    }
+    executable = fastStartDir.get().file("runtime/bin/java").asFile.path
+    args("-Xshare:dump", "-XX:SharedArchiveFile=" + archive.get().asFile.path)
+}
+
+val fastStartClassList = tasks.register<JavaExec>("fastStartClassList") {
+    group = "distribution"
+    description = "Goes through the installer's command line and window once and lists the classes they load."
+    dependsOn(fastStartRuntime)
+    val classList = fastStartDir.map { it.file("silk-installer.classlist") }
+    outputs.file(classList)
+    classpath(tasks.shadowJar, sourceSets["fastStart"].output)
+    mainClass.set("de.rhm176.silk.installer.FastStartTraining")
+    executable = fastStartDir.get().file("runtime/bin/java").asFile.path
+    jvmArgumentProviders.add(CommandLineArgumentProvider {
+        listOf("-XX:DumpLoadedClassList=" + classList.get().asFile.path)
+    })
+}
+
+val fastStartImage = tasks.register<Sync>("fastStartImage") {
+    group = "distribution"
+    description = "Assembles the fast-start distribution for the platform the build runs on."
+    into(fastStartDir.map { it.dir("image") })
+    from(fastStartRuntime) {
+        into("runtime")
+    }
+    // where the JVM looks for its default archive, next to its own library
+    from(fastStartRuntimeArchive) {
+        into(if (System.getProperty("os.name").startsWith("Windows")) "runtime/bin/server" else "runtime/lib/server")
+    }
+    from(tasks.shadowJar) {
+        into("lib")
+        rename { "silk-installer.jar" }
+    }
+    from(fastStartClassList) {
+        into("lib")
+    }
+    from("src/fastStart/bin") {
+        into("bin")
+        filesMatching("silk-installer") {
+            filePermissions { unix("rwxr-xr-x") }
+        }
+    }
+}
+
+tasks.register<Zip>("fastStartZip") {
+    group = "distribution"
+    description = "Packs the fast-start distribution for the platform the build runs on."
+    archiveClassifier.set("fast-start")
+    from(fastStartImage)
+    into("silk-installer-${project.version}")
+}
+
+tasks.register<JavaExec>("startupBenchmark") {
+    group = "verification"
+    description = "Compares cold starts of the fat jar with the fast-start distribution."
+    dependsOn(fastStartImage)
+    classpath = sourceSets["perf"].runtimeClasspath
+    mainClass.set("de.rhm176.silk.installer.StartupBenchmark")
+    argumentProviders.add(CommandLineArgumentProvider {
+        listOf(
+            tasks.shadowJar.get().archiveFile.get().asFile.path,
+            fastStartDir.get().dir("image").asFile.path,
+        )
+    })
+}
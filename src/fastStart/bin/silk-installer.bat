@@ -0,0 +1,38 @@
+@echo off
+rem Starts the installer on the bundled runtime. The class data sharing archive is bound to the location of the jar,
+rem so it is created from the trained class list on the first launch rather than shipped. Delete
+rem lib\silk-installer.jsa after moving the installer to have it created again.
+setlocal
+for %%i in ("%~dp0..") do set "APP_HOME=%%~fi"
+set "JAVA=%APP_HOME%\runtime\bin\javaw.exe"
+if not "%~1"=="" set "JAVA=%APP_HOME%\runtime\bin\java.exe"
+set "JAR=%APP_HOME%\lib\silk-installer.jar"
+set "ARCHIVE=%APP_HOME%\lib\silk-installer.jsa"
+
+if exist "%ARCHIVE%" goto launch
+copy /y nul "%APP_HOME%\lib\.write-test" >nul 2>&1 && del /q "%APP_HOME%\lib\.write-test" && goto dump
+rem a system-wide installation, e.g. in Program Files, every user gets an archive of their own for this location
+set "KEY=%APP_HOME::=%"
+set "KEY=%KEY:\=-%"
+set "KEY=%KEY: =_%"
+set "ARCHIVE=%LOCALAPPDATA%\silk-installer\silk-installer-%KEY%.jsa"
+if exist "%ARCHIVE%" goto launch
+mkdir "%LOCALAPPDATA%\silk-installer" 2>nul
+
+:dump
+rem a failed dump is not retried on every launch, delete the .failed file to try again
+if exist "%ARCHIVE%.failed" goto launch
+rem dumped under a name of its own and moved into place, so concurrent first launches never map a partial archive
+set "TEMP_ARCHIVE=%ARCHIVE%.%RANDOM%.tmp"
+"%APP_HOME%\runtime\bin\java.exe" -Xshare:dump -XX:SharedClassListFile="%APP_HOME%\lib\silk-installer.classlist" -XX:SharedArchiveFile="%TEMP_ARCHIVE%" -cp "%JAR%" >nul 2>&1 && move /y "%TEMP_ARCHIVE%" "%ARCHIVE%" >nul 2>&1
+if not exist "%ARCHIVE%" type nul > "%ARCHIVE%.failed" 2>nul
+del /q "%TEMP_ARCHIVE%" 2>nul
+
+:launch
+set SHARE=-Xshare:auto
+if exist "%ARCHIVE%" set SHARE=-Xshare:auto "-XX:SharedArchiveFile=%ARCHIVE%"
+if "%~1"=="" (
+    start "" "%JAVA%" %SHARE% -cp "%JAR%" de.rhm176.silk.installer.Main
+) else (
+    "%JAVA%" %SHARE% -cp "%JAR%" de.rhm176.silk.installer.Main %*
+)
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2025 Silk Loader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.rhm176.silk.installer;
+
+import com.sun.net.httpserver.HttpServer;
+import java.awt.Frame;
+import java.awt.GraphicsEnvironment;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Training run for the fast-start distribution, see the {@code fastStartClassList} task. Goes through the command
+ * line and, if there is a display, the installer window the way a user would, so that the JVM can list the classes
+ * both load. Launches of the distribution map those classes from a class data sharing archive instead of loading
+ * them one by one.
+ * <p>
+ * Nothing leaves the machine and nothing of the user's is touched: every request is answered by a local server and
+ * the installer's files go to a temporary home directory.
+ */
+final class FastStartTraining {
+    // long enough for the window to load its version lists
+    private static final long WINDOW_SETTLE_MILLIS = 3000;
+
+    private FastStartTraining() {}
+
+    public static void main(String[] args) throws Exception {
+        Path home = Files.createTempDirectory("silk-installer-training");
+        System.setProperty("user.home", home.toString());
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            // an empty list is a valid answer for every version list the installer asks for
+            byte[] body = "[]".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        PrintStream originalOut = System.out;
+        try {
+            String localServer = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+            Main.configureRepositories(
+                    new RepositoryConfig(List.of(), Map.of("https://", List.of(localServer)), null, 0));
+
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            Main.main(new String[] {"--help"});
+            try {
+                Main.verifyInstallation(home, null);
+            } catch (IOException e) {
+                // there is nothing installed, loading the classes that check it is the point
+            }
+            System.setOut(originalOut);
+
+            if (GraphicsEnvironment.isHeadless()) {
+                System.out.println("No display is available, only the command line was trained.");
+            } else {
+                trainWindow();
+            }
+        } finally {
+            server.stop(0);
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            Main.deleteDirectoryRecursively(home, null);
+            System.setOut(originalOut);
+        }
+        // the window leaves the event thread running
+        System.exit(0);
+    }
+
+    private static void trainWindow() throws InterruptedException {
+        InstallerWindow.launch();
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (!isWindowShowing()) {
+            if (System.currentTimeMillis() > deadline) {
+                System.out.println("The installer window did not show up, only the command line was trained.");
+                return;
+            }
+            Thread.sleep(50);
+        }
+        Thread.sleep(WINDOW_SETTLE_MILLIS);
+        for (Frame frame : Frame.getFrames()) {
+            frame.dispose();
+        }
+    }
+
+    private static boolean isWindowShowing() {
+        for (Frame frame : Frame.getFrames()) {
+            if (frame instanceof InstallerWindow && frame.isShowing()) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2025 Silk Loader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.rhm176.silk.installer;
+
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonObject;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Downloads everything an installation of one Silk and Fabric Loader version would download into a temporary cache,
+ * while the user is still looking at the installer window. An installation of the same versions then copies the
+ * files that were prefetched completely instead of downloading them. It never waits for the prefetch: when it starts,
+ * {@link #handOff} cancels whatever is still pending and the installation downloads those files itself.
+ * <p>
+ * Only one combination of versions is prefetched at a time. Switching to another one cancels the running requests
+ * right away and discards what was fetched so far. Prefetching runs on a couple of minimum priority threads, so it
+ * stays out of the way of the UI and of an installation that does not use it.
+ */
+public final class ArtifactPrefetcher implements AutoCloseable {
+    private static final int DOWNLOAD_THREADS = 2;
+
+    private final HttpClient client;
+    private final Path cacheRoot;
+    private Session session;
+
+    public ArtifactPrefetcher(HttpClient client) throws IOException {
+        this.client = client;
+        this.cacheRoot = Files.createTempDirectory("silk-prefetch");
+    }
+
+    /**
+     * Starts prefetching the given versions, unless they already are being prefetched.
+     */
+    public synchronized void start(String silkTag, String fabricMaven) {
+        if (session != null && session.isFor(silkTag, fabricMaven) && !session.stopped) return;
+        cancel();
+        try {
+            session = new Session(silkTag, fabricMaven, Files.createTempDirectory(cacheRoot, "session"));
+        } catch (IOException e) {
+            System.err.println("Could not start prefetching: " + e.getMessage());
+            return;
+        }
+        session.start();
+    }
+
+    /**
+     * Cancels the running prefetch if it is for other versions than the given ones.
+     */
+    public synchronized void cancelUnless(String silkTag, String fabricMaven) {
+        if (session != null && !session.isFor(silkTag, fabricMaven)) {
+            cancel();
+        }
+    }
+
+    /**
+     * Stops prefetching because an installation of the given versions starts. Downloads that did not finish yet are
+     * cancelled, the finished ones stay available to {@link #lookup} until the next {@link #cancel}. A prefetch of
+     * other versions is discarded.
+     */
+    public synchronized void handOff(String silkTag, String fabricMaven) {
+        if (session != null && session.isFor(silkTag, fabricMaven)) {
+            session.stop();
+        } else {
+            cancel();
+        }
+    }
+
+    /**
+     * Cancels the running prefetch, if any, and discards its files.
+     */
+    public synchronized void cancel() {
+        if (session != null) {
+            session.cancel();
+            session = null;
+        }
+    }
+
+    /**
+     * @return the prefetched response body for {@code url}, or null if {@code url} is not part of the current
+     * prefetch or its download did not finish successfully
+     */
+    public Path lookup(String url) {
+        Session current;
+        synchronized (this) {
+            current = session;
+        }
+        if (current == null) return null;
+        CompletableFuture<Path> file = current.files.get(url);
+        if (file == null || !file.isDone() || file.isCompletedExceptionally()) return null;
+        return file.join();
+    }
+
+    @Override
+    public void close() {
+        cancel();
+        DirectoryDeleter.deleteRecursively(cacheRoot);
+    }
+
+    private final class Session {
+        private final String silkTag;
+        private final String fabricMaven;
+        private final Path directory;
+        private final ExecutorService executor;
+        private final Map<String, CompletableFuture<Path>> files = new ConcurrentHashMap<>();
+        private final Set<CompletableFuture<?>> requests = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger fileCounter = new AtomicInteger();
+        private final CancellationToken cancellation = new CancellationToken();
+        private volatile boolean stopped;
+
+        private Session(String silkTag, String fabricMaven, Path directory) {
+            this.silkTag = silkTag;
+            this.fabricMaven = fabricMaven;
+            this.directory = directory;
+            this.executor = Executors.newFixedThreadPool(DOWNLOAD_THREADS, r -> {
+                Thread thread = new Thread(r, "silk-prefetch");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+        }
+
+        private boolean isFor(String silkTag, String fabricMaven) {
+            return this.silkTag.equals(silkTag) && this.fabricMaven.equals(fabricMaven);
+        }
+
+        private void start() {
+            executor.execute(() -> {
+                try {
+                    resolve();
+                } catch (Exception e) {
+                    if (!stopped) {
+                        System.err.println("Prefetching " + silkTag + " and " + fabricMaven + " stopped: "
+                                + e.getMessage());
+                    }
+                } finally {
+                    // lets the threads end once the queued downloads are done
+                    executor.shutdown();
+                }
+            });
+        }
+
+        /**
+         * Requests the same URLs as {@link Main#install}, in the same order.
+         */
+        private void resolve() throws Exception {
+            // goes through the rate limit aware client, whose cache then answers the installation's request
+            Main.SilkJarAsset silkJar =
+                    Main.SilkJarAsset.find(Main.getGitHubReleases().release(silkTag, cancellation), silkTag);
+            fetch(silkJar.url(), true);
+
+            MavenArtifact fabricLoader = MavenArtifact.parse(fabricMaven);
+            String maven = Main.FABRIC_MAVENS.get(0);
+            String jarMirror = Main.rankedMirrors(maven, Main.JAR_SIZE_ESTIMATE).get(0);
+            fetch(fabricLoader.url(jarMirror, "jar"), true);
+            String jsonMirror = Main.rankedMirrors(maven, Main.METADATA_SIZE_ESTIMATE).get(0);
+            Path fabricJson = fetch(fabricLoader.url(jsonMirror, "json"), false).get();
+
+            // transitive dependencies are only known once the POMs are walked, the installation fetches those
+            JsonObject fabricJsonObject = Json.parse(Files.readString(fabricJson)).asObject();
+            for (LibraryResolver.Library library : LibraryResolver.declared(fabricJsonObject, message -> {})) {
+                String mirror = Main.rankedMirrors(library.repository(), Main.JAR_SIZE_ESTIMATE).get(0);
+                fetch(library.artifact().url(mirror, "jar"), true);
+            }
+        }
+
+        /**
+         * @param queued whether to download on another thread, metadata is fetched right away because the next
+         *               steps depend on it
+         */
+        private CompletableFuture<Path> fetch(String url, boolean queued) {
+            CompletableFuture<Path> file = new CompletableFuture<>();
+            CompletableFuture<Path> existing = files.putIfAbsent(url, file);
+            if (existing != null) return existing;
+            Runnable download = () -> {
+                try {
+                    file.complete(download(url));
+                } catch (Throwable e) {
+                    file.completeExceptionally(e);
+                }
+            };
+            if (queued) {
+                try {
+                    executor.execute(download);
+                } catch (RejectedExecutionException e) {
+                    file.completeExceptionally(e);
+                }
+            } else {
+                download.run();
+            }
+            return file;
+        }
+
+        private Path download(String url) throws Exception {
+            if (stopped) throw new CancellationException();
+            String name = url.substring(url.lastIndexOf('/') + 1);
+            Path output = directory.resolve(fileCounter.getAndIncrement() + "-" + name);
+            HttpRequest request = HttpRequest.newBuilder().uri(URI.create(url)).build();
+            CompletableFuture<HttpResponse<Path>> response =
+                    client.sendAsync(request, HttpResponse.BodyHandlers.ofFile(output));
+            requests.add(response);
+            try {
+                int status = response.get().statusCode();
+                if (status != 200) {
+                    Files.deleteIfExists(output);
+                    throw new IOException("Status " + status + " from " + url);
+                }
+                return output;
+            } finally {
+                requests.remove(response);
+            }
+        }
+
+        /**
+         * Cancels the downloads that did not finish, keeping the files of those that did.
+         */
+        private void stop() {
+            stopped = true;
+            cancellation.cancel();
+            for (CompletableFuture<?> request : requests) {
+                request.cancel(true);
+            }
+            executor.shutdownNow();
+            for (CompletableFuture<Path> file : files.values()) {
+                file.completeExceptionally(new CancellationException());
+            }
+        }
+
+        private void cancel() {
+            stop();
+            CompletableFuture.runAsync(() -> {
+                try {
+                    executor.awaitTermination(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                DirectoryDeleter.deleteRecursively(directory);
+            });
+        }
+    }
+}
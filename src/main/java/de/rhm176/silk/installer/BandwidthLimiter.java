@@ -0,0 +1,212 @@
+/*
+ * Copyright 2025 Silk Loader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.rhm176.silk.installer;
+
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket that limits how fast all downloads together receive data, so that an installation in the background
+ * leaves the rest of the uplink to e.g. running games.
+ * <p>
+ * Response bodies are throttled through backpressure: after a chunk arrives, the next one is only requested once the
+ * bucket has paid for it, and the connection stalls in between. Every chunk reserves its share of the bandwidth in
+ * the order the chunks arrive, so concurrent downloads take turns and split the limit evenly. An idle bucket fills up
+ * with a quarter second's worth of data, which keeps bursts short while the allowed bandwidth is still used in full.
+ * Metadata, e.g. POMs and version lists, takes a priority lane: it never waits and the bulk downloads pay for its
+ * share instead, because the installation cannot go on without it.
+ */
+public final class BandwidthLimiter {
+    public enum Lane {
+        METADATA,
+        BULK
+    }
+
+    // shared by all limiters, waiting for tokens only needs a timer
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "Bandwidth limiter");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long CAPACITY_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+
+    private final long bytesPerSecond;
+    // the bandwidth is taken up to this point in time, the bucket holds the time from there to now
+    private long reservedUntil = Long.MIN_VALUE;
+
+    public BandwidthLimiter(long bytesPerSecond) {
+        if (bytesPerSecond <= 0) throw new IllegalArgumentException("The rate must be positive: " + bytesPerSecond);
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    public long bytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * Parses a rate in bytes per second with an optional {@code k}, {@code m} or {@code g} suffix for multiples of
+     * 1024, e.g. {@code 500k} or {@code 2.5M}.
+     *
+     * @throws IllegalArgumentException if {@code rate} is malformed or not positive
+     */
+    public static long parseRate(String rate) {
+        String value = rate.trim().toLowerCase(Locale.ROOT);
+        if (value.endsWith("/s")) value = value.substring(0, value.length() - 2);
+        if (value.endsWith("b")) value = value.substring(0, value.length() - 1);
+        long unit = 1;
+        if (!value.isEmpty()) {
+            switch (value.charAt(value.length() - 1)) {
+                case 'k' -> unit = 1024;
+                case 'm' -> unit = 1024 * 1024;
+                case 'g' -> unit = 1024 * 1024 * 1024;
+                default -> {}
+            }
+        }
+        if (unit > 1) value = value.substring(0, value.length() - 1);
+        try {
+            long bytesPerSecond = (long) (Double.parseDouble(value) * unit);
+            if (bytesPerSecond > 0) return bytesPerSecond;
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Invalid rate '" + rate + "', expected e.g. 500k or 2M (bytes per second)");
+    }
+
+    /**
+     * Takes {@code bytes} from the bucket.
+     *
+     * @return how many nanoseconds to wait before receiving more on this lane
+     */
+    synchronized long reserve(long bytes, Lane lane) {
+        long now = System.nanoTime();
+        long cost = bytes * NANOS_PER_SECOND / bytesPerSecond;
+        // an idle bucket does not fill up beyond its capacity
+        if (reservedUntil == Long.MIN_VALUE || reservedUntil < now - CAPACITY_NANOS) {
+            reservedUntil = now - CAPACITY_NANOS;
+        }
+        reservedUntil += cost;
+        return lane == Lane.METADATA ? 0 : Math.max(0, reservedUntil - now);
+    }
+
+    /**
+     * @return a handler that receives the body of {@code handler} no faster than this limiter allows
+     */
+    public <T> HttpResponse.BodyHandler<T> limit(HttpResponse.BodyHandler<T> handler, Lane lane) {
+        return responseInfo -> new ThrottledSubscriber<>(handler.apply(responseInfo), lane);
+    }
+
+    private final class ThrottledSubscriber<T> implements HttpResponse.BodySubscriber<T> {
+        private final HttpResponse.BodySubscriber<T> downstream;
+        private final Lane lane;
+        private Flow.Subscription upstream;
+        // requested by the downstream subscriber and not yet asked for upstream
+        private long demand;
+        // whether a chunk was asked for upstream, or is waiting for tokens, and not passed on yet
+        private boolean pending;
+        private boolean cancelled;
+
+        private ThrottledSubscriber(HttpResponse.BodySubscriber<T> downstream, Lane lane) {
+            this.downstream = downstream;
+            this.lane = lane;
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return downstream.getBody();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            synchronized (this) {
+                upstream = subscription;
+            }
+            downstream.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    if (n <= 0) {
+                        // lets the upstream subscription report the illegal request
+                        subscription.request(n);
+                        return;
+                    }
+                    synchronized (ThrottledSubscriber.this) {
+                        demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                    }
+                    requestNext();
+                }
+
+                @Override
+                public void cancel() {
+                    synchronized (ThrottledSubscriber.this) {
+                        cancelled = true;
+                    }
+                    subscription.cancel();
+                }
+            });
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+            long bytes = 0;
+            for (ByteBuffer buffer : item) {
+                bytes += buffer.remaining();
+            }
+            downstream.onNext(item);
+            long waitNanos = reserve(bytes, lane);
+            if (waitNanos <= 0) {
+                chunkDone();
+            } else {
+                SCHEDULER.schedule(this::chunkDone, waitNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            downstream.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            downstream.onComplete();
+        }
+
+        private void chunkDone() {
+            synchronized (this) {
+                pending = false;
+            }
+            requestNext();
+        }
+
+        /**
+         * Asks for one chunk at a time, so that a chunk is only received once the previous one is paid for.
+         */
+        private void requestNext() {
+            synchronized (this) {
+                if (cancelled || pending || demand == 0) return;
+                pending = true;
+                if (demand != Long.MAX_VALUE) demand--;
+            }
+            upstream.request(1);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2025 Silk Loader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.rhm176.silk.installer;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * Lets an installation be cancelled from another thread, e.g. by the Cancel button or Ctrl+C.
+ * <p>
+ * Everything an installation waits on, HTTP exchanges and download tasks, is registered here. Cancelling cancels all
+ * of it at once, which aborts the HTTP exchanges and wakes up every waiting thread with a
+ * {@link CancellationException}, so the installation can roll back right away instead of running into timeouts.
+ */
+public final class CancellationToken {
+    private final Set<Future<?>> inFlight = ConcurrentHashMap.newKeySet();
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean cancelled;
+
+    public void cancel() {
+        cancelled = true;
+        for (Future<?> future : inFlight) {
+            future.cancel(true);
+        }
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @throws CancellationException if this token was cancelled
+     */
+    public void throwIfCancelled() {
+        if (cancelled) throw new CancellationException("Installation was cancelled.");
+    }
+
+    /**
+     * Runs {@code listener} when this token is cancelled, or right away if it already is.
+     */
+    public void onCancel(Runnable listener) {
+        listeners.add(listener);
+        if (cancelled) listener.run();
+    }
+
+    /**
+     * Registers {@code future} to be cancelled along with this token, for as long as the token is in use.
+     */
+    public <F extends Future<?>> F track(F future) {
+        inFlight.add(future);
+        if (cancelled) future.cancel(true);
+        return future;
+    }
+
+    /**
+     * Waits for {@code future}, cancelling it if this token is cancelled in the meantime.
+     *
+     * @throws CancellationException if this token was cancelled
+     * @throws IOException           if the future failed with one, other failures are wrapped
+     */
+    public <T> T await(CompletableFuture<T> future) throws IOException, InterruptedException {
+        track(future);
+        try {
+            return future.get();
+        } catch (CancellationException e) {
+            throw new CancellationException("Installation was cancelled.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) throw ioException;
+            if (cause instanceof RuntimeException runtimeException) throw runtimeException;
+            throw new IOException(cause);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        } finally {
+            inFlight.remove(future);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2025 Silk Loader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.rhm176.silk.installer;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Stream;
+
+/**
+ * Deletes directory trees with a parallel, streaming post-order walk, and supports removing a directory from the game
+ * folder instantly by renaming it into a trash folder that is then emptied in the background.
+ */
+public final class DirectoryDeleter {
+    public static final String TRASH_DIR_NAME = ".silk-trash";
+
+    // deleting is mostly waiting on the file system, so use more threads than cores
+    private static final ForkJoinPool POOL =
+            new ForkJoinPool(Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+    private static final Set<Path> PENDING_PATHS = ConcurrentHashMap.newKeySet();
+    private static final Set<CompletableFuture<Void>> PENDING_DELETIONS = ConcurrentHashMap.newKeySet();
+
+    private DirectoryDeleter() {}
+
+    /**
+     * Deletes {@code root} and everything below it, without following symbolic links.
+     *
+     * @return the paths that could not be deleted, empty if everything was deleted
+     */
+    public static List<Path> deleteRecursively(Path root) {
+        Queue<Path> failures = new ConcurrentLinkedQueue<>();
+        POOL.invoke(new DeleteTask(root, failures));
+        return new ArrayList<>(failures);
+    }
+
+    /**
+     * Deletes a single file if it exists. Read-only files, like the CDS archives the JVM writes, are made writable
+     * first where the platform refuses to delete them otherwise.
+     */
+    public static void deleteIfExists(Path file) throws IOException {
+        try {
+            Files.deleteIfExists(file);
+        } catch (AccessDeniedException e) {
+            if (!file.toFile().setWritable(true)) throw e;
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Atomically renames {@code directory} into the game's trash folder and schedules the actual deletion in the
+     * background. The original location is free again once this method returns.
+     *
+     * @return the new location of the directory inside the trash folder
+     */
+    public static Path moveToTrash(Path gamePath, Path directory) throws IOException {
+        Path trashDir = gamePath.resolve(TRASH_DIR_NAME);
+        Files.createDirectories(trashDir);
+        Path trashedPath = trashDir.resolve(directory.getFileName() + "-" + UUID.randomUUID());
+        Files.move(directory, trashedPath, StandardCopyOption.ATOMIC_MOVE);
+        deleteInBackground(trashedPath);
+        return trashedPath;
+    }
+
+    /**
+     * Schedules deletion of anything left in the game's trash folder, e.g. by a previous run that exited before its
+     * background deletions finished.
+     */
+    public static void purgeTrash(Path gamePath) {
+        Path trashDir = gamePath.resolve(TRASH_DIR_NAME);
+        if (!Files.isDirectory(trashDir)) return;
+        try (Stream<Path> leftovers = Files.list(trashDir)) {
+            leftovers.filter(p -> !PENDING_PATHS.contains(p)).forEach(DirectoryDeleter::deleteInBackground);
+        } catch (IOException e) {
+            System.err.println("Could not list trash directory " + trashDir + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Blocks until every background deletion scheduled so far has finished.
+     */
+    public static void awaitPendingDeletions() {
+        for (CompletableFuture<Void> deletion : List.copyOf(PENDING_DELETIONS)) {
+            deletion.join();
+        }
+    }
+
+    private static void deleteInBackground(Path path) {
+        if (!PENDING_PATHS.add(path)) return;
+        CompletableFuture<Void> deletion = CompletableFuture.runAsync(
+                () -> {
+                    List<Path> failures = deleteRecursively(path);
+                    if (!failures.isEmpty()) {
+                        System.err.println("Failed to delete " + failures.size() + " trashed file(s), e.g. "
+                                + failures.get(0) + ". They will be retried on the next run.");
+                    }
+                    try {
+                        // only succeeds once the last trashed entry is gone
+                        Files.deleteIfExists(path.getParent());
+                    } catch (IOException ignored) {
+                    }
+                },
+                POOL);
+        PENDING_DELETIONS.add(deletion);
+        deletion.whenComplete((result, e) -> {
+            PENDING_DELETIONS.remove(deletion);
+            PENDING_PATHS.remove(path);
+        });
+    }
+
+    private static final class DeleteTask extends RecursiveAction {
+        private final Path path;
+        private final Queue<Path> failures;
+
+        private DeleteTask(Path path, Queue<Path> failures) {
+            this.path = path;
+            this.failures = failures;
+        }
+
+        @Override
+        protected void compute() {
+            if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                List<DeleteTask> subdirectories = new ArrayList<>();
+                try (DirectoryStream<Path> children = Files.newDirectoryStream(path)) {
+                    for (Path child : children) {
+                        if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                            DeleteTask task = new DeleteTask(child, failures);
+                            task.fork();
+                            subdirectories.add(task);
+                        } else {
+                            delete(child);
+                        }
+                    }
+                } catch (NoSuchFileException ignored) {
+                    return;
+                } catch (IOException e) {
+                    failures.add(path);
+                    e.printStackTrace(System.err);
+                }
+                for (DeleteTask task : subdirectories) {
+                    task.join();
+                }
+            }
+            delete(path);
+        }
+
+        private void delete(Path p) {
+            try {
+                deleteIfExists(p);
+            } catch (IOException e) {
+                failures.add(p);
+                e.printStackTrace(System.err);
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2025 Silk Loader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.rhm176.silk.installer;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Orders parallel downloads largest first. Started in the order Fabric lists them, a large jar that happens to come
+ * last keeps one thread busy long after the others ran out of work. Largest first, the threads finish at roughly the
+ * same time, so an installation takes about as long as its total size needs at the available bandwidth.
+ * <p>
+ * Sizes come from an earlier installation's lock file where possible, the remaining ones from HEAD requests, as many
+ * at a time as there are download threads.
+ */
+public final class DownloadPlan {
+    /**
+     * @param size the size in bytes, or -1 if it is unknown
+     */
+    public record Entry(String path, String url, long size) {}
+
+    private final List<Entry> listed;
+    private final List<Entry> entries;
+
+    private DownloadPlan(List<Entry> listed, List<Entry> entries) {
+        this.listed = listed;
+        this.entries = entries;
+    }
+
+    /**
+     * @param urls       the URL of every download, keyed by installation path in the order they are listed in
+     * @param knownSizes sizes that are already known, keyed by installation path
+     * @param maxRequests how many HEAD requests may run at the same time
+     */
+    public static DownloadPlan create(
+            HttpClient client,
+            Map<String, String> urls,
+            Map<String, Long> knownSizes,
+            int maxRequests,
+            CancellationToken cancellation)
+            throws InterruptedException {
+        // with transitive dependencies there can be hundreds of them, mostly on the same maven
+        Semaphore permits = new Semaphore(maxRequests);
+        Map<String, CompletableFuture<HttpResponse<Void>>> heads = new HashMap<>();
+        for (Map.Entry<String, String> download : urls.entrySet()) {
+            if (knownSizes.containsKey(download.getKey())) continue;
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create(download.getValue()))
+                    .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                    .build();
+            // cancelling completes the running requests, which gives their permits back
+            permits.acquire();
+            cancellation.throwIfCancelled();
+            CompletableFuture<HttpResponse<Void>> head =
+                    cancellation.track(client.sendAsync(request, HttpResponse.BodyHandlers.discarding()));
+            head.whenComplete((response, failure) -> permits.release());
+            heads.put(download.getKey(), head);
+        }
+
+        List<Entry> entries = new ArrayList<>();
+        for (Map.Entry<String, String> download : urls.entrySet()) {
+            Long size = knownSizes.get(download.getKey());
+            if (size == null) {
+                try {
+                    HttpResponse<Void> response = cancellation.await(heads.get(download.getKey()));
+                    size = response.statusCode() == 200
+                            ? response.headers().firstValueAsLong("Content-Length").orElse(-1)
+                            : -1;
+                } catch (IOException | CancellationException e) {
+                    cancellation.throwIfCancelled();
+                    // the download itself will tell what is wrong
+                    size = -1L;
+                }
+            }
+            entries.add(new Entry(download.getKey(), download.getValue(), size));
+        }
+        return fromSizes(entries);
+    }
+
+    /**
+     * Plans downloads whose sizes are already known.
+     *
+     * @param entries the downloads in the order they are listed in
+     */
+    public static DownloadPlan fromSizes(List<Entry> entries) {
+        long averageSize = averageSize(entries);
+        List<Entry> ordered = new ArrayList<>(entries);
+        // unknown sizes count as average, the stable sort keeps Fabric's order among equally sized jars
+        ordered.sort(Comparator.comparingLong((Entry entry) -> sizeOrDefault(entry, averageSize))
+                .reversed());
+        return new DownloadPlan(List.copyOf(entries), List.copyOf(ordered));
+    }
+
+    /**
+     * @return the downloads, largest first
+     */
+    public List<Entry> entries() {
+        return entries;
+    }
+
+    public long totalBytes() {
+        return entries.stream().mapToLong(entry -> Math.max(0, entry.size())).sum();
+    }
+
+    /**
+     * Estimates how long the downloads take on {@code threads} threads if each thread takes the next download as soon
+     * as it is done with its last one.
+     */
+    public static double estimateMillis(List<Entry> order, int threads, MirrorStats stats) {
+        PriorityQueue<Double> threadBusyUntil = new PriorityQueue<>();
+        for (int i = 0; i < threads; i++) {
+            threadBusyUntil.add(0.0);
+        }
+        long averageSize = averageSize(order);
+        double end = 0;
+        for (Entry entry : order) {
+            double finished =
+                    threadBusyUntil.poll() + stats.expectedMillis(entry.url(), sizeOrDefault(entry, averageSize));
+            threadBusyUntil.add(finished);
+            end = Math.max(end, finished);
+        }
+        return end;
+    }
+
+    /**
+     * Prints the plan with its sizes and estimated durations, in listed order and largest first.
+     */
+    public void print(PrintStream out, int threads, MirrorStats stats) {
+        out.printf("%-60s %12s%n", "Download (largest first)", "Size");
+        for (Entry entry : entries) {
+            out.printf("%-60s %12s%n", entry.path(), entry.size() >= 0 ? formatSize(entry.size()) : "unknown");
+        }
+        long unknown = entries.stream().filter(entry -> entry.size() < 0).count();
+        out.printf(
+                "%d downloads, %s%s on %d threads.%n",
+                entries.size(),
+                formatSize(totalBytes()),
+                unknown > 0 ? " plus " + unknown + " of unknown size" : "",
+                threads);
+        out.printf("Estimated time in listed order: %.1f s%n", estimateMillis(listed, threads, stats) / 1000);
+        out.printf("Estimated time largest first:   %.1f s%n", estimateMillis(entries, threads, stats) / 1000);
+    }
+
+    private static long averageSize(List<Entry> entries) {
+        return (long) entries.stream()
+                .mapToLong(Entry::size)
+                .filter(size -> size >= 0)
+                .average()
+                .orElse(Main.JAR_SIZE_ESTIMATE);
+    }
+
+    private static long sizeOrDefault(Entry entry, long averageSize) {
+        return entry.size() >= 0 ? entry.size() : averageSize;
+    }
+
+    private static String formatSize(long bytes) {
+        if (bytes < 1024 * 1024) return String.format("%.1f KiB", bytes / 1024.0);
+        return String.format("%.1f MiB", bytes / (1024.0 * 1024.0));
+    }
+}
@@ -22,9 +22,11 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.LinkedHashSet;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
@@ -91,60 +93,86 @@ public class EquilinoxGameFinder {
                 && Files.isRegularFile(userConfigs);
     }
 
+    /**
+     * @return the first Equilinox installation {@link #findGames} finds, or null if there is none
+     */
     public static String tryFindGame() {
-        Set<String> potentialLibraryRoots = new LinkedHashSet<>();
+        AtomicReference<Path> found = new AtomicReference<>();
+        findGames(gamePath -> {
+            found.set(gamePath);
+            return false;
+        });
+        return found.get() != null ? found.get().toString() : null;
+    }
+
+    /**
+     * Probes the places Equilinox is usually installed in, most likely first, and reports every valid installation
+     * as soon as it is found instead of after the whole search. An installation that is reachable through several
+     * paths, e.g. a symlinked Steam directory, is reported once.
+     *
+     * @param onFound called on the searching thread with every installation found, returns false to stop the search
+     */
+    public static void findGames(Predicate<Path> onFound) {
+        Search search = new Search(onFound);
         String userHome = System.getProperty("user.home");
         String osName = System.getProperty("os.name").toLowerCase();
 
-        Path scoopEquilinox =
-                Paths.get(userHome, "scoop", "apps", "steam", "current", "steamapps", "common", "Equilinox");
-        if (isValidGamePath(scoopEquilinox)) return scoopEquilinox.toString();
+        search.probe(Paths.get(userHome, "scoop", "apps", "steam", "current", "steamapps", "common", "Equilinox"));
 
-        String mainSteamInstallStr;
         if (osName.contains("win")) {
-            mainSteamInstallStr = getSteamInstallPathFromRegistry();
+            String mainSteamInstallStr = getSteamInstallPathFromRegistry();
             if (mainSteamInstallStr != null) {
-                Path steamDir = Paths.get(mainSteamInstallStr);
-                if (Files.isDirectory(steamDir)) {
-                    potentialLibraryRoots.add(steamDir.toString());
-                    potentialLibraryRoots.addAll(
-                            parseLibraryFoldersVDF(steamDir.resolve("steamapps").resolve("libraryfolders.vdf")));
-                }
+                search.addSteamDirectory(Paths.get(mainSteamInstallStr));
             }
         } else if (osName.contains("mac")) {
-            Path macSteam = Paths.get(userHome, "Library", "Application Support", "Steam");
-            if (Files.isDirectory(macSteam)) {
-                potentialLibraryRoots.add(macSteam.toString());
-                potentialLibraryRoots.addAll(
-                        parseLibraryFoldersVDF(macSteam.resolve("steamapps").resolve("libraryfolders.vdf")));
-            }
+            search.addSteamDirectory(Paths.get(userHome, "Library", "Application Support", "Steam"));
         } else if (osName.contains("nix") || osName.contains("nux")) {
-            Path steam1 = Paths.get(userHome, ".steam", "steam");
-            if (Files.isDirectory(steam1)) {
-                potentialLibraryRoots.add(steam1.toString());
-                potentialLibraryRoots.addAll(
-                        parseLibraryFoldersVDF(steam1.resolve("steamapps").resolve("libraryfolders.vdf")));
+            search.addSteamDirectory(Paths.get(userHome, ".steam", "steam"));
+            search.addSteamDirectory(Paths.get(userHome, ".local", "share", "Steam"));
+        }
+        COMMON_STEAM_DIRECTORIES.forEach(commonPathStr -> search.addSteamDirectory(Paths.get(commonPathStr)));
+        // a copy of the game the installer is run from, e.g. a test directory
+        search.probe(Paths.get(System.getProperty("user.dir")));
+    }
+
+    private static final class Search {
+        private final Predicate<Path> onFound;
+        private final Set<String> libraryRoots = new HashSet<>();
+        private final Set<Path> reported = new HashSet<>();
+        private boolean stopped;
+
+        private Search(Predicate<Path> onFound) {
+            this.onFound = onFound;
+        }
+
+        void probe(Path gamePath) {
+            if (stopped || !isValidGamePath(gamePath)) return;
+            Path installation;
+            try {
+                installation = gamePath.toRealPath();
+            } catch (IOException e) {
+                installation = gamePath.toAbsolutePath().normalize();
             }
-            Path steam2 = Paths.get(userHome, ".local", "share", "Steam");
-            if (Files.isDirectory(steam2)) {
-                potentialLibraryRoots.add(steam2.toString());
-                potentialLibraryRoots.addAll(
-                        parseLibraryFoldersVDF(steam2.resolve("steamapps").resolve("libraryfolders.vdf")));
+            if (reported.add(installation)) {
+                stopped = !onFound.test(gamePath);
             }
         }
-        COMMON_STEAM_DIRECTORIES.forEach(commonPathStr -> {
-            Path commonDir = Paths.get(commonPathStr);
-            if (Files.isDirectory(commonDir)) {
-                potentialLibraryRoots.add(commonPathStr);
-                potentialLibraryRoots.addAll(
-                        parseLibraryFoldersVDF(commonDir.resolve("steamapps").resolve("libraryfolders.vdf")));
+
+        /**
+         * Probes a Steam installation and every library folder it knows about.
+         */
+        void addSteamDirectory(Path steamDir) {
+            if (stopped || !Files.isDirectory(steamDir)) return;
+            addLibraryRoot(steamDir.toString());
+            Path libraryFolders = steamDir.resolve("steamapps").resolve("libraryfolders.vdf");
+            parseLibraryFoldersVDF(libraryFolders).forEach(this::addLibraryRoot);
+        }
+
+        private void addLibraryRoot(String libraryRoot) {
+            if (libraryRoots.add(libraryRoot)) {
+                probe(Paths.get(libraryRoot, "steamapps", "common", "Equilinox"));
             }
-        });
-        for (String libRootStr : new ArrayList<>(potentialLibraryRoots)) {
-            Path gamePath = Paths.get(libRootStr, "steamapps", "common", "Equilinox");
-            if (isValidGamePath(gamePath)) return gamePath.toString();
         }
-        return null;
     }
 
     private static List<String> parseLibraryFoldersVDF(Path vdfPath) {
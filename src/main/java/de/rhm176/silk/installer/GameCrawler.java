@@ -0,0 +1,245 @@
+/*
+ * Copyright 2025 Silk Loader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.rhm176.silk.installer;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Predicate;
+
+/**
+ * Searches whole directory trees for Equilinox, for copies that are not installed through Steam, e.g. DRM-free ones.
+ * Opt-in, since walking a drive takes far longer than the probes of {@link EquilinoxGameFinder#findGames}.
+ * <p>
+ * Directories are walked in parallel on a fork-join pool, down to a maximum depth. Hidden directories, symbolic
+ * links, system directories and dependency trees like {@code node_modules} are skipped. Every directory is listed
+ * once: the game's files are recognized by name while the subdirectories to descend into are collected, instead of
+ * listing each directory a second time the way {@link EquilinoxGameFinder#isValidGamePath} does.
+ * <p>
+ * Listing happens on separate threads, which the walking threads wait for no longer than the timeout. A directory
+ * that takes longer to list, e.g. on a stalled network mount, is abandoned together with the thread stuck listing it,
+ * so that a file system call that never returns cannot hold up the search.
+ */
+public final class GameCrawler {
+    public static final int DEFAULT_MAX_DEPTH = 6;
+    public static final Duration DEFAULT_DIRECTORY_TIMEOUT = Duration.ofSeconds(2);
+
+    private static final Set<String> SKIPPED_NAMES =
+            Set.of("node_modules", "__pycache__", "site-packages", "WinSxS", "Library");
+    // only skipped right below the root of a file system, ~/dev may well contain a copy of the game
+    private static final Set<String> SYSTEM_DIRECTORIES = Set.of(
+            "System Volume Information",
+            "Windows",
+            "bin",
+            "boot",
+            "dev",
+            "etc",
+            "lib",
+            "lib32",
+            "lib64",
+            "proc",
+            "run",
+            "sbin",
+            "snap",
+            "sys");
+
+    private final int maxDepth;
+    private final Duration directoryTimeout;
+    private final CancellationToken cancellation;
+
+    /**
+     * @param maxDepth how many levels below a root to descend, the root itself is level 0
+     */
+    public GameCrawler(int maxDepth, Duration directoryTimeout, CancellationToken cancellation) {
+        this.maxDepth = maxDepth;
+        this.directoryTimeout = directoryTimeout;
+        this.cancellation = cancellation;
+    }
+
+    /**
+     * @return the user's home and the roots of all file systems
+     */
+    public static List<Path> defaultRoots() {
+        List<Path> roots = new ArrayList<>();
+        roots.add(Path.of(System.getProperty("user.home")));
+        FileSystems.getDefault().getRootDirectories().forEach(roots::add);
+        return roots;
+    }
+
+    /**
+     * Walks {@code roots} and reports every Equilinox installation to {@code onFound} as soon as it is found. Returns
+     * once all roots are walked, the search was stopped or the token was cancelled.
+     *
+     * @param onFound called with every installation found, from any of the walking threads but never concurrently,
+     *                returns false to stop the search
+     */
+    public void crawl(List<Path> roots, Predicate<Path> onFound) throws InterruptedException {
+        ForkJoinPool pool = new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        // threads stuck in a listing are never waited for, they must not keep the JVM alive
+        ExecutorService listingThreads = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "Game search listing");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Crawl crawl = new Crawl(onFound, pool, listingThreads);
+        cancellation.onCancel(pool::shutdownNow);
+        try {
+            for (Path root : new LinkedHashSet<>(roots)) {
+                if (Files.isDirectory(root)) {
+                    pool.execute(crawl.new Visit(root, 0));
+                }
+            }
+            pool.shutdown();
+            while (!pool.awaitTermination(100, TimeUnit.MILLISECONDS)) {
+                if (crawl.stopped || cancellation.isCancelled()) {
+                    pool.shutdownNow();
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+            listingThreads.shutdownNow();
+        }
+    }
+
+    private static boolean isSkipped(Path directory, String name) {
+        return name.startsWith(".")
+                || name.startsWith("$")
+                || SKIPPED_NAMES.contains(name)
+                || (directory.getParent() == null && SYSTEM_DIRECTORIES.contains(name));
+    }
+
+    private final class Crawl {
+        private final Predicate<Path> onFound;
+        private final ForkJoinPool pool;
+        private final ExecutorService listingThreads;
+        // the same directory can be reached from several roots, e.g. the home directory and the file system root,
+        // it is walked again if it is reached at a lower depth, which leaves more levels below it to search
+        private final Map<Path, Integer> visitedDepths = new ConcurrentHashMap<>();
+        private final Set<Path> reported = new HashSet<>();
+        private volatile boolean stopped;
+
+        private Crawl(Predicate<Path> onFound, ForkJoinPool pool, ExecutorService listingThreads) {
+            this.onFound = onFound;
+            this.pool = pool;
+            this.listingThreads = listingThreads;
+        }
+
+        private synchronized void report(Path gamePath) {
+            if (!stopped && !cancellation.isCancelled() && reported.add(gamePath.toAbsolutePath().normalize())) {
+                stopped = !onFound.test(gamePath);
+                if (stopped) pool.shutdownNow();
+            }
+        }
+
+        private record Listing(List<Visit> subdirectories, boolean unlockList, boolean userConfigs) {}
+
+        private final class Visit extends RecursiveAction {
+            private final Path directory;
+            private final int depth;
+
+            private Visit(Path directory, int depth) {
+                this.directory = directory;
+                this.depth = depth;
+            }
+
+            @Override
+            protected void compute() {
+                if (stopped || cancellation.isCancelled() || !isShallowestVisit()) return;
+                Future<Listing> listing;
+                try {
+                    listing = listingThreads.submit(this::list);
+                } catch (RejectedExecutionException e) {
+                    // the search is over
+                    return;
+                }
+                Listing result;
+                try {
+                    result = listing.get(directoryTimeout.toNanos(), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    listing.cancel(true);
+                    System.err.println("Listing " + directory + " timed out, skipping it");
+                    return;
+                } catch (ExecutionException e) {
+                    // unreadable directories are expected all over a drive
+                    return;
+                } catch (InterruptedException e) {
+                    listing.cancel(true);
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (result == null) return;
+                if (result.unlockList() && result.userConfigs()) {
+                    // an installation does not contain another one
+                    report(directory);
+                    return;
+                }
+                invokeAll(result.subdirectories());
+            }
+
+            /**
+             * @return the signature files and the subdirectories to descend into, or null if the search ended
+             */
+            private Listing list() throws IOException {
+                List<Visit> subdirectories = new ArrayList<>();
+                boolean unlockList = false;
+                boolean userConfigs = false;
+                try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                    for (Path entry : entries) {
+                        // interrupted once the walking thread gave up on this directory
+                        if (stopped || cancellation.isCancelled() || Thread.currentThread().isInterrupted()) {
+                            return null;
+                        }
+                        String name = entry.getFileName().toString();
+                        boolean signature = name.equals("unlockList.dat")
+                                || (name.startsWith("Equilinox") && name.endsWith("UserConfigs.dat"));
+                        if (!signature && (depth >= maxDepth || isSkipped(directory, name))) continue;
+                        BasicFileAttributes attributes;
+                        try {
+                            // from the directory listing on Windows, a single lstat elsewhere
+                            attributes = Files.readAttributes(
+                                    entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                        } catch (IOException e) {
+                            continue;
+                        }
+                        if (signature) {
+                            if (!attributes.isRegularFile()) continue;
+                            if (name.equals("unlockList.dat")) {
+                                unlockList = true;
+                            } else {
+                                userConfigs = true;
+                            }
+                        } else if (attributes.isDirectory()) {
+                            subdirectories.add(new Visit(entry, depth + 1));
+                        }
+                    }
+                }
+                return new Listing(subdirectories, unlockList, userConfigs);
+            }
+
+            private boolean isShallowestVisit() {
+                boolean[] shallowest = {false};
+                visitedDepths.compute(directory.toAbsolutePath().normalize(), (key, knownDepth) -> {
+                    shallowest[0] = knownDepth == null || depth < knownDepth;
+                    return shallowest[0] ? depth : knownDepth;
+                });
+                return shallowest[0];
+            }
+        }
+    }
+}
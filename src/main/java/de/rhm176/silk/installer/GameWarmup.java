@@ -0,0 +1,173 @@
+/*
+ * Copyright 2025 Silk Loader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.rhm176.silk.installer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Launches the modded game once right after installation so Fabric Loader builds its {@code .fabric} runtime cache
+ * while nobody is waiting for the game, instead of on the first real launch.
+ * <p>
+ * The same run can double as an AppCDS training run: the JVM then dumps the classes it loaded into
+ * {@link LaunchProfile#CDS_ARCHIVE_NAME} when it exits, and later launches map them instead of loading them from the
+ * jars. The archive only works with the exact JVM that created it, so training uses {@code java} from the
+ * {@code PATH}, just like the Steam launch option.
+ * <p>
+ * The game is stopped once the cache has stopped changing for a while, or when the timeout is reached.
+ */
+public final class GameWarmup {
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofMinutes(2);
+    public static final String LOG_FILE_NAME = "silk-warmup.log";
+
+    private static final Duration QUIET_PERIOD = Duration.ofSeconds(10);
+    private static final Duration POLL_INTERVAL = Duration.ofSeconds(1);
+
+    private GameWarmup() {}
+
+    /**
+     * @param gameCommand the command that starts the unmodded game, what Steam substitutes for {@code %command%}.
+     *                    If empty, {@code java -jar} with the Equilinox jar in the game directory is used.
+     * @param dumpCdsArchive whether to create an AppCDS archive and enable it in the launch profile
+     * @return true if the cache was populated before the timeout
+     */
+    public static boolean run(
+            Path gamePath, List<String> gameCommand, Duration timeout, boolean dumpCdsArchive, StatusListener status)
+            throws IOException, InterruptedException {
+        Path silkJar = gamePath.resolve(Main.SILK_LOADER_FIXED_JAR_NAME);
+        if (!Files.isRegularFile(silkJar)) {
+            throw new IOException("Silk Loader is not installed in " + gamePath);
+        }
+
+        Path cdsArchive = gamePath.resolve(LaunchProfile.CDS_ARCHIVE_NAME);
+        boolean hasArgfile = Files.isRegularFile(gamePath.resolve(LaunchProfile.ARGFILE_NAME));
+        if (dumpCdsArchive) {
+            if (!hasArgfile) {
+                throw new IOException("Creating a CDS archive needs a launch profile, please reinstall first.");
+            }
+            // a new dynamic archive cannot be dumped while an old one is in use
+            LaunchProfile.setCdsArchiveEnabled(gamePath, false);
+            DirectoryDeleter.deleteIfExists(cdsArchive);
+        }
+
+        List<String> command = new ArrayList<>();
+        command.add("java");
+        if (dumpCdsArchive) {
+            command.add("-XX:ArchiveClassesAtExit=" + LaunchProfile.CDS_ARCHIVE_NAME);
+        }
+        command.addAll(LaunchProfile.launchArguments(gamePath));
+        command.addAll(gameCommand.isEmpty() ? defaultGameCommand(gamePath) : gameCommand);
+
+        Main.updateStatus(status, "Warming up the Fabric cache by launching the game once...");
+        Path log = gamePath.resolve(LOG_FILE_NAME);
+        Process process = new ProcessBuilder(command)
+                .directory(gamePath.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+
+        Path fabricDir = gamePath.resolve(".fabric");
+        long deadline = System.nanoTime() + timeout.toNanos();
+        long lastChange = System.nanoTime();
+        CacheState lastState = CacheState.of(fabricDir);
+        boolean populated = false;
+        try {
+            while (process.isAlive() && System.nanoTime() < deadline) {
+                process.waitFor(POLL_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+                CacheState state = CacheState.of(fabricDir);
+                if (!state.equals(lastState)) {
+                    lastState = state;
+                    lastChange = System.nanoTime();
+                } else if (state.fileCount() > 0 && System.nanoTime() - lastChange >= QUIET_PERIOD.toNanos()) {
+                    populated = true;
+                    break;
+                }
+            }
+            if (!process.isAlive()) {
+                populated = CacheState.of(fabricDir).fileCount() > 0;
+            }
+        } finally {
+            stop(process);
+        }
+
+        if (dumpCdsArchive) {
+            if (Files.isRegularFile(cdsArchive)) {
+                LaunchProfile.setCdsArchiveEnabled(gamePath, true);
+                Main.updateStatus(status, "Created CDS archive " + LaunchProfile.CDS_ARCHIVE_NAME + ".");
+            } else {
+                Main.updateStatus(status, "The game exited without writing a CDS archive, see " + log + ".");
+            }
+        }
+        if (populated) {
+            Main.updateStatus(status, "Fabric cache warmed up.");
+        } else {
+            Main.updateStatus(status, "Warm-up did not finish populating the Fabric cache, see " + log + ".");
+        }
+        return populated;
+    }
+
+    private static List<String> defaultGameCommand(Path gamePath) throws IOException {
+        try (Stream<Path> files = Files.list(gamePath)) {
+            Path gameJar = files.filter(Files::isRegularFile)
+                    .filter(p -> {
+                        String name = p.getFileName().toString();
+                        return name.startsWith("Equilinox") && name.endsWith(".jar");
+                    })
+                    .sorted()
+                    .findFirst()
+                    .orElseThrow(() -> new IOException(
+                            "Could not find the Equilinox jar in " + gamePath + ". Pass the game command explicitly."));
+            return List.of("java", "-jar", gameJar.getFileName().toString());
+        }
+    }
+
+    private static void stop(Process process) throws InterruptedException {
+        if (!process.isAlive()) return;
+        // a normal termination request lets the JVM run its exit hooks
+        process.destroy();
+        if (!process.waitFor(10, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            process.waitFor();
+        }
+    }
+
+    private record CacheState(long fileCount, long totalSize, long lastModified) {
+        static CacheState of(Path directory) {
+            if (!Files.isDirectory(directory)) return new CacheState(0, 0, 0);
+            long[] state = new long[3];
+            try (Stream<Path> walk = Files.walk(directory)) {
+                walk.filter(Files::isRegularFile).forEach(p -> {
+                    try {
+                        state[0]++;
+                        state[1] += Files.size(p);
+                        state[2] = Math.max(
+                                state[2], Files.getLastModifiedTime(p).toMillis());
+                    } catch (IOException ignored) {
+                        // file vanished while walking, the next poll will see the new state
+                    }
+                });
+            } catch (IOException | RuntimeException ignored) {
+            }
+            return new CacheState(state[0], state[1], state[2]);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2025 Silk Loader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.rhm176.silk.installer;
+
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonArray;
+import com.eclipsesource.json.JsonObject;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.NoSuchElementException;
+import java.util.OptionalLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads Silk Loader releases from the GitHub API without running into its rate limit, which is only 60 requests an
+ * hour without a token and is shared by every machine behind the same public address.
+ * <p>
+ * Every answer is cached on disk together with its ETag. Answers younger than a minute are used without asking
+ * again, older ones are revalidated with a conditional request, which GitHub does not count against the limit when
+ * nothing changed. The {@code X-RateLimit-*} headers are tracked, and while the limit is (nearly) used up cached
+ * answers are used no matter their age instead of failing. A token from {@code SILK_INSTALLER_GITHUB_TOKEN},
+ * {@code GITHUB_TOKEN} or {@code GH_TOKEN} is sent along if set, which raises the limit to 5000 requests an hour.
+ */
+public final class GitHubReleases {
+    public static final String CACHE_DIRECTORY_NAME = "github";
+
+    private static final String ACCEPT = "application/vnd.github.v3+json";
+    private static final int PAGE_SIZE = 100;
+    private static final long FRESH_MILLIS = 60 * 1000;
+    // requests kept back while cached answers can be used instead, so that an installation can still look up a
+    // release that was never cached
+    private static final int RESERVED_REQUESTS = 5;
+    private static final Pattern NEXT_LINK = Pattern.compile("<([^>]+)>;\\s*rel=\"next\"");
+
+    private final HttpClient client;
+    private final String releasesUrl;
+    private final Path cacheDir;
+    private final String token;
+    // -1 until GitHub told how many requests are left
+    private int remainingRequests = -1;
+    private long resetEpochSeconds;
+
+    /**
+     * @param cacheDir where answers are cached, or null to not cache them
+     * @param token    the GitHub token to authenticate with, or null
+     */
+    public GitHubReleases(HttpClient client, String releasesUrl, Path cacheDir, String token) {
+        this.client = client;
+        this.releasesUrl = releasesUrl;
+        this.cacheDir = cacheDir;
+        this.token = token;
+    }
+
+    public static Path defaultCacheDir() {
+        return Path.of(System.getProperty("user.home"), ".silk-installer", CACHE_DIRECTORY_NAME);
+    }
+
+    /**
+     * @return the token configured in the environment, or null
+     */
+    public static String tokenFromEnvironment() {
+        for (String variable : new String[] {"SILK_INSTALLER_GITHUB_TOKEN", "GITHUB_TOKEN", "GH_TOKEN"}) {
+            String value = System.getenv(variable);
+            if (value != null && !value.isBlank()) return value.trim();
+        }
+        return null;
+    }
+
+    /**
+     * @return the tag of the latest release, drafts and pre-releases excluded
+     */
+    public String latestTag(CancellationToken cancellation) throws IOException, InterruptedException {
+        return Json.parse(get(releasesUrl + "/latest", cancellation))
+                .asObject()
+                .get("tag_name")
+                .asString();
+    }
+
+    public JsonObject release(String tag, CancellationToken cancellation) throws IOException, InterruptedException {
+        return Json.parse(get(releasesUrl + "/tags/" + tag, cancellation)).asObject();
+    }
+
+    /**
+     * Lists all releases, newest first, one page after the other. A page is only requested once the previous one is
+     * consumed, so callers that stop early do not spend requests on the rest.
+     */
+    public Pages pages(CancellationToken cancellation) {
+        return new Pages(cancellation);
+    }
+
+    public final class Pages {
+        private final CancellationToken cancellation;
+        private String nextUrl = releasesUrl + "?per_page=" + PAGE_SIZE;
+
+        private Pages(CancellationToken cancellation) {
+            this.cancellation = cancellation;
+        }
+
+        public boolean hasNext() {
+            return nextUrl != null;
+        }
+
+        public JsonArray next() throws IOException, InterruptedException {
+            if (nextUrl == null) throw new NoSuchElementException();
+            Answer answer = fetch(nextUrl, cancellation);
+            nextUrl = answer.nextUrl();
+            return Json.parse(answer.body()).asArray();
+        }
+    }
+
+    /**
+     * @return the body of the answer to a GET request for {@code url}
+     */
+    public String get(String url, CancellationToken cancellation) throws IOException, InterruptedException {
+        return fetch(url, cancellation).body();
+    }
+
+    private record Answer(String body, String etag, String nextUrl, long fetchedAt) {}
+
+    private Answer fetch(String url, CancellationToken cancellation) throws IOException, InterruptedException {
+        Path cacheFile = cacheFile(url);
+        Answer cached = readCache(cacheFile);
+        long now = System.currentTimeMillis();
+        if (cached != null && now - cached.fetchedAt() < FRESH_MILLIS) return cached;
+        if (cached != null && isRateLimited(RESERVED_REQUESTS)) {
+            System.out.println("GitHub API requests are running low, using the cached answer for " + url);
+            return cached;
+        }
+        if (isRateLimited(0)) throw rateLimitExceeded(url);
+
+        HttpRequest.Builder request = HttpRequest.newBuilder().uri(URI.create(url)).header("Accept", ACCEPT);
+        if (token != null) request.header("Authorization", "Bearer " + token);
+        if (cached != null && cached.etag() != null) request.header("If-None-Match", cached.etag());
+        HttpResponse<String> response;
+        try {
+            response = cancellation.await(client.sendAsync(request.build(), HttpResponse.BodyHandlers.ofString()));
+        } catch (IOException e) {
+            if (cached == null) throw e;
+            System.err.println("Could not reach GitHub (" + e.getMessage() + "), using the cached answer for " + url);
+            return cached;
+        }
+        updateRateLimit(response);
+
+        int statusCode = response.statusCode();
+        if (statusCode == 304 && cached != null) {
+            Answer revalidated = new Answer(cached.body(), cached.etag(), cached.nextUrl(), now);
+            writeCache(cacheFile, revalidated);
+            return revalidated;
+        }
+        if (statusCode == 200) {
+            Answer answer = new Answer(
+                    response.body(),
+                    response.headers().firstValue("ETag").orElse(null),
+                    nextUrl(response),
+                    now);
+            writeCache(cacheFile, answer);
+            return answer;
+        }
+        boolean limited = (statusCode == 403 || statusCode == 429) && isRateLimited(0);
+        if (cached != null && (limited || statusCode >= 500)) {
+            System.err.println("GitHub answered " + statusCode + ", using the cached answer for " + url);
+            return cached;
+        }
+        if (limited) throw rateLimitExceeded(url);
+        throw new IOException("GitHub answered " + statusCode + " for " + url + ": " + response.body());
+    }
+
+    private synchronized boolean isRateLimited(int reserve) {
+        return remainingRequests >= 0
+                && remainingRequests <= reserve
+                && Instant.now().getEpochSecond() < resetEpochSeconds;
+    }
+
+    private synchronized void updateRateLimit(HttpResponse<?> response) {
+        // mirrors configured for the releases API do not send these
+        OptionalLong remaining = response.headers().firstValueAsLong("X-RateLimit-Remaining");
+        OptionalLong reset = response.headers().firstValueAsLong("X-RateLimit-Reset");
+        if (remaining.isPresent() && reset.isPresent()) {
+            remainingRequests = (int) remaining.getAsLong();
+            resetEpochSeconds = reset.getAsLong();
+        } else if (response.statusCode() == 429 || response.statusCode() == 403) {
+            response.headers().firstValueAsLong("Retry-After").ifPresent(seconds -> {
+                remainingRequests = 0;
+                resetEpochSeconds = Instant.now().getEpochSecond() + seconds;
+            });
+        }
+    }
+
+    private synchronized IOException rateLimitExceeded(String url) {
+        return new IOException("GitHub API rate limit exceeded until " + Instant.ofEpochSecond(resetEpochSeconds)
+                + " and " + url + " is not cached"
+                + (token == null ? ". Setting GITHUB_TOKEN raises the limit." : "."));
+    }
+
+    private static String nextUrl(HttpResponse<?> response) {
+        Matcher matcher = NEXT_LINK.matcher(response.headers().firstValue("Link").orElse(""));
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    private Path cacheFile(String url) {
+        if (cacheDir == null) return null;
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+            return cacheDir.resolve(HexFormat.of().formatHex(digest, 0, 16) + ".json");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static Answer readCache(Path cacheFile) {
+        if (cacheFile == null || !Files.isRegularFile(cacheFile)) return null;
+        try {
+            JsonObject json = Json.parse(Files.readString(cacheFile)).asObject();
+            return new Answer(
+                    json.get("body").asString(),
+                    json.getString("etag", null),
+                    json.getString("next", null),
+                    json.getLong("fetchedAt", 0));
+        } catch (IOException | RuntimeException e) {
+            // a broken cache entry is simply fetched again
+            return null;
+        }
+    }
+
+    private static void writeCache(Path cacheFile, Answer answer) {
+        if (cacheFile == null) return;
+        JsonObject json = Json.object().add("body", answer.body()).add("fetchedAt", answer.fetchedAt());
+        if (answer.etag() != null) json.add("etag", answer.etag());
+        if (answer.nextUrl() != null) json.add("next", answer.nextUrl());
+        try {
+            Files.createDirectories(cacheFile.getParent());
+            Path tempFile = Files.createTempFile(cacheFile.getParent(), cacheFile.getFileName().toString(), ".tmp");
+            try {
+                Files.writeString(tempFile, json.toString());
+                Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not cache " + cacheFile + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2025 Silk Loader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.rhm176.silk.installer;
+
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonObject;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Records which Silk and Fabric Loader versions an installation consists of, so a reinstall can tell which parts of
+ * Fabric's {@code .fabric} runtime cache are still valid.
+ */
+public record InstallFingerprint(String silkTag, String silkJarSha256, String fabricLoader) {
+    public static final String FILE_NAME = "silk-install.json";
+
+    // caches written by Fabric Loader that depend on the game provider Silk supplies
+    private static final List<String> SILK_DEPENDENT_CACHES = List.of("remappedJars");
+
+    public static InstallFingerprint create(String silkTag, Path silkJar, String fabricLoader) throws IOException {
+        return new InstallFingerprint(silkTag, sha256(silkJar), fabricLoader);
+    }
+
+    /**
+     * @return the fingerprint recorded in {@code directory}, or null if there is none or it cannot be read
+     */
+    public static InstallFingerprint read(Path directory) {
+        Path file = directory.resolve(FILE_NAME);
+        if (!Files.isRegularFile(file)) return null;
+        try {
+            JsonObject json = Json.parse(Files.readString(file)).asObject();
+            return new InstallFingerprint(
+                    json.getString("silkTag", null),
+                    json.getString("silkJarSha256", null),
+                    json.getString("fabricLoader", null));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring unreadable install fingerprint " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public void write(Path directory) throws IOException {
+        JsonObject json = Json.object()
+                .add("silkTag", silkTag)
+                .add("silkJarSha256", silkJarSha256)
+                .add("fabricLoader", fabricLoader);
+        Files.writeString(directory.resolve(FILE_NAME), json.toString());
+    }
+
+    /**
+     * Moves the parts of {@code gamePath/.fabric} that were produced for a different installation to the trash.
+     * A changed Fabric Loader invalidates the whole cache. A changed Silk Loader only invalidates the caches built
+     * from the game jar, since those depend on its game provider. Without a previous fingerprint nothing is known
+     * about the cache, so all of it is dropped.
+     *
+     * @return the names of the invalidated cache entries
+     */
+    public static List<String> invalidateFabricCache(
+            Path gamePath, InstallFingerprint previous, InstallFingerprint current) throws IOException {
+        Path fabricDir = gamePath.resolve(".fabric");
+        List<String> invalidated = new ArrayList<>();
+        if (!Files.isDirectory(fabricDir)) return invalidated;
+
+        if (previous == null || !Objects.equals(previous.fabricLoader(), current.fabricLoader())) {
+            DirectoryDeleter.moveToTrash(gamePath, fabricDir);
+            invalidated.add(".fabric");
+        } else if (!Objects.equals(previous.silkJarSha256(), current.silkJarSha256())) {
+            for (String cache : SILK_DEPENDENT_CACHES) {
+                Path cacheDir = fabricDir.resolve(cache);
+                if (Files.exists(cacheDir)) {
+                    DirectoryDeleter.moveToTrash(gamePath, cacheDir);
+                    invalidated.add(".fabric/" + cache);
+                }
+            }
+        }
+        return invalidated;
+    }
+
+    static String sha256(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required to be supported", e);
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
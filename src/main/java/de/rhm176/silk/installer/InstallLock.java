@@ -0,0 +1,150 @@
+/*
+ * Copyright 2025 Silk Loader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.rhm176.silk.installer;
+
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonArray;
+import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.JsonValue;
+import com.eclipsesource.json.WriterConfig;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pins every artifact of an installation to the exact URL, size and SHA-256 it was installed from.
+ * <p>
+ * {@code install} writes the lock next to the game. {@code install --locked} then downloads exactly these artifacts
+ * and verifies them, without asking GitHub or the Fabric mavens which files make up a version, so every machine
+ * installing from the same lock gets byte-identical files.
+ */
+public record InstallLock(String silkTag, String fabricLoader, String mainClass, List<Artifact> artifacts) {
+    public static final String FILE_NAME = "silk-installer.lock";
+
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * @param path where the artifact is installed, relative to the game directory. The artifacts are listed in
+     *             classpath order.
+     */
+    public record Artifact(String path, String url, long size, String sha256) {
+        /**
+         * @throws IOException if {@code file} is not exactly the locked artifact
+         */
+        public void verify(Path file) throws IOException {
+            long actualSize = Files.size(file);
+            if (actualSize != size) {
+                throw new IOException(
+                        path + " has " + actualSize + " bytes, the lock expects " + size + " (" + url + ")");
+            }
+            String actualSha256 = InstallFingerprint.sha256(file);
+            if (!actualSha256.equalsIgnoreCase(sha256)) {
+                throw new IOException(
+                        path + " has SHA-256 " + actualSha256 + ", the lock expects " + sha256 + " (" + url + ")");
+            }
+        }
+    }
+
+    /**
+     * Creates a lock for freshly downloaded artifacts.
+     *
+     * @param directory  the directory the artifact paths are relative to
+     * @param sourceUrls the URL each artifact was downloaded from, keyed by path in classpath order
+     */
+    public static InstallLock create(
+            String silkTag, String fabricLoader, String mainClass, Path directory, Map<String, String> sourceUrls)
+            throws IOException {
+        List<Artifact> artifacts = new ArrayList<>();
+        for (Map.Entry<String, String> source : sourceUrls.entrySet()) {
+            Path file = directory.resolve(source.getKey());
+            artifacts.add(new Artifact(
+                    source.getKey(), source.getValue(), Files.size(file), InstallFingerprint.sha256(file)));
+        }
+        return new InstallLock(silkTag, fabricLoader, mainClass, List.copyOf(artifacts));
+    }
+
+    public static InstallLock read(Path file) throws IOException {
+        try {
+            JsonObject json = Json.parse(Files.readString(file)).asObject();
+            int version = json.getInt("version", -1);
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported lock file version " + version + " in " + file);
+            }
+            List<Artifact> artifacts = new ArrayList<>();
+            for (JsonValue value : json.get("artifacts").asArray()) {
+                JsonObject artifact = value.asObject();
+                artifacts.add(new Artifact(
+                        checkedPath(artifact.get("path").asString()),
+                        artifact.get("url").asString(),
+                        artifact.get("size").asLong(),
+                        artifact.get("sha256").asString()));
+            }
+            if (artifacts.isEmpty() || !artifacts.get(0).path().equals(Main.SILK_LOADER_FIXED_JAR_NAME)) {
+                throw new IOException("Lock file " + file + " does not start with " + Main.SILK_LOADER_FIXED_JAR_NAME);
+            }
+            String fabricLoader = json.get("fabricLoader").asString();
+            if (fabricLoader.split(":").length != 3) {
+                throw new IOException("Invalid Fabric Loader coordinates '" + fabricLoader + "' in " + file);
+            }
+            return new InstallLock(
+                    json.get("silkTag").asString(),
+                    fabricLoader,
+                    json.get("mainClass").asString(),
+                    List.copyOf(artifacts));
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed lock file " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    public void write(Path directory) throws IOException {
+        JsonArray artifactsJson = Json.array();
+        for (Artifact artifact : artifacts) {
+            artifactsJson.add(Json.object()
+                    .add("path", artifact.path())
+                    .add("url", artifact.url())
+                    .add("size", artifact.size())
+                    .add("sha256", artifact.sha256()));
+        }
+        JsonObject json = Json.object()
+                .add("version", FORMAT_VERSION)
+                .add("silkTag", silkTag)
+                .add("fabricLoader", fabricLoader)
+                .add("mainClass", mainClass)
+                .add("artifacts", artifactsJson);
+        // pretty printed, lock files are meant to be reviewed and checked in
+        Files.writeString(directory.resolve(FILE_NAME), json.toString(WriterConfig.PRETTY_PRINT));
+    }
+
+    public List<String> classpath() {
+        return artifacts.stream().map(Artifact::path).toList();
+    }
+
+    // lock files may come from elsewhere, never let one write outside of the installation layout
+    private static String checkedPath(String path) {
+        boolean valid = path.equals(Main.SILK_LOADER_FIXED_JAR_NAME)
+                || (path.startsWith("lib/")
+                        && path.endsWith(".jar")
+                        && path.indexOf('/', "lib/".length()) < 0
+                        && !path.contains("\\"));
+        if (!valid) {
+            throw new IllegalArgumentException("Illegal artifact path '" + path + "'");
+        }
+        return path;
+    }
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright 2025 Silk Loader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.rhm176.silk.installer;
+
+/**
+ * Optional behavior of {@link Main#install}.
+ *
+ * @param packed     merge all libraries into {@link JarPacker#PACKED_JAR_NAME} and launch from that instead of lib/
+ * @param transitive also install the runtime dependencies of the libraries that Fabric does not list itself, see
+ *                   {@link LibraryResolver}
+ */
+public record InstallOptions(boolean packed, boolean transitive) {
+    public static final InstallOptions DEFAULT = new InstallOptions(false, false);
+}
@@ -0,0 +1,472 @@
+/*
+ * Copyright 2025 Silk Loader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.rhm176.silk.installer;
+
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonArray;
+import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.JsonValue;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps one installer process running for provisioning systems that would otherwise start a JVM for every operation.
+ * The process keeps its HTTP connections, the Fabric Loader version list, the game it found and the caches of earlier
+ * installations warm, so an operation only costs the file work it does.
+ * <p>
+ * The API listens on the loopback interface only and speaks JSON:
+ * <pre>
+ * POST /install    {"silkTag": "v1.0.0", "fabricVersion": "0.15.7", "gamePath": "...", "packed": false,
+ *                   "transitive": false}
+ * POST /uninstall  {"gamePath": "..."}
+ * POST /verify     {"gamePath": "..."}
+ * GET  /status[?gamePath=...]   the jobs and the installation in the game
+ * GET  /jobs/&lt;id&gt;            a job with all of its messages
+ * GET  /jobs/&lt;id&gt;/events     the messages of a job as one JSON object per line while it runs
+ * POST /jobs/&lt;id&gt;/cancel
+ * POST /shutdown
+ * </pre>
+ * {@code gamePath} is optional, the game is searched for once and remembered otherwise. Operations are answered with
+ * {@code 202} and the job they started. Jobs on different games run concurrently, jobs on the same game one after
+ * the other in the order they were submitted.
+ * <p>
+ * POST requests have to be sent with {@code Content-Type: application/json} and the {@code Host} has to be the
+ * loopback address. A web page cannot send either to the daemon, so it cannot drive installations from a browser.
+ */
+public final class InstallerDaemon implements AutoCloseable {
+    public static final int DEFAULT_PORT = 7436;
+
+    private static final Duration FABRIC_VERSIONS_MAX_AGE = Duration.ofMinutes(10);
+    private static final int FINISHED_JOBS_KEPT = 100;
+
+    private final HttpServer server;
+    private final ExecutorService requestExecutor;
+    private final ExecutorService jobExecutor;
+    private final CountDownLatch shutdown = new CountDownLatch(1);
+    private final long startedAt = System.nanoTime();
+    private final AtomicLong nextJobId = new AtomicLong(1);
+    private final Map<String, Job> jobs = Collections.synchronizedMap(new LinkedHashMap<>());
+    // the last job submitted for each game, the next one for the same game waits for it
+    private final Map<Path, CompletableFuture<Void>> gameQueues = new HashMap<>();
+
+    // separate locks, a slow refresh of the Fabric versions must not hold up requests that look for the game
+    private final Object discoveredGameLock = new Object();
+    private final Object fabricVersionsLock = new Object();
+    private Path discoveredGame;
+    private JsonArray fabricVersions;
+    private long fabricVersionsFetchedAt;
+
+    private InstallerDaemon(HttpServer server) {
+        this.server = server;
+        this.requestExecutor = Executors.newCachedThreadPool(daemonThreads("silk-installer-daemon-request"));
+        this.jobExecutor = Executors.newCachedThreadPool(daemonThreads("silk-installer-daemon-job"));
+        server.setExecutor(requestExecutor);
+        server.createContext("/", this::handle);
+    }
+
+    /**
+     * Starts the daemon on {@code port} of the loopback interface, 0 picks a free port.
+     */
+    public static InstallerDaemon start(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        InstallerDaemon daemon = new InstallerDaemon(server);
+        server.start();
+        return daemon;
+    }
+
+    public String url() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/";
+    }
+
+    /**
+     * Blocks until the daemon is shut down through the API or {@link #close}.
+     */
+    public void awaitShutdown() throws InterruptedException {
+        shutdown.await();
+    }
+
+    /**
+     * Cancels the running jobs and stops the daemon.
+     */
+    @Override
+    public void close() {
+        synchronized (jobs) {
+            jobs.values().forEach(job -> job.cancellation.cancel());
+        }
+        server.stop(0);
+        jobExecutor.shutdownNow();
+        requestExecutor.shutdownNow();
+        shutdown.countDown();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String host = exchange.getRequestHeaders().getFirst("Host");
+            if (host == null || !isLoopbackHost(host)) {
+                respond(exchange, 403, error("Only requests to the loopback address are accepted"));
+                return;
+            }
+            String method = exchange.getRequestMethod();
+            if (method.equals("POST")) {
+                String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+                if (contentType == null || !contentType.startsWith("application/json")) {
+                    respond(exchange, 415, error("POST requests must be sent as application/json"));
+                    return;
+                }
+            }
+            String[] path = exchange.getRequestURI().getPath().replaceAll("^/+|/+$", "").split("/");
+            String route = method + " " + path[0];
+            switch (route) {
+                case "GET status" -> respond(exchange, 200, status(exchange));
+                case "POST install", "POST uninstall", "POST verify" -> submit(exchange, path[0]);
+                case "POST shutdown" -> {
+                    respond(exchange, 200, Json.object().add("state", "shutting down"));
+                    // answering first, close() stops the server this request runs on
+                    CompletableFuture.runAsync(this::close);
+                }
+                default -> {
+                    Job job = path[0].equals("jobs") && path.length >= 2 ? jobs.get(path[1]) : null;
+                    if (job == null) {
+                        respond(exchange, 404, error("Unknown resource " + exchange.getRequestURI().getPath()));
+                    } else if (method.equals("GET") && path.length == 2) {
+                        respond(exchange, 200, job.toJson(true));
+                    } else if (method.equals("GET") && path.length == 3 && path[2].equals("events")) {
+                        streamEvents(exchange, job);
+                    } else if (method.equals("POST") && path.length == 3 && path[2].equals("cancel")) {
+                        job.cancellation.cancel();
+                        respond(exchange, 202, job.toJson(false));
+                    } else {
+                        respond(exchange, 404, error("Unknown resource " + exchange.getRequestURI().getPath()));
+                    }
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, error(e.getMessage()));
+        } catch (RuntimeException e) {
+            e.printStackTrace(System.err);
+            respond(exchange, 500, error(e.toString()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static boolean isLoopbackHost(String host) {
+        String name = host.replaceFirst(":\\d+$", "");
+        return name.equals("localhost") || name.equals("127.0.0.1") || name.equals("[::1]");
+    }
+
+    private JsonObject status(HttpExchange exchange) {
+        JsonObject status = Json.object()
+                .add("uptimeSeconds", (System.nanoTime() - startedAt) / 1_000_000_000L)
+                .add("url", url());
+        JsonArray jobsJson = Json.array();
+        synchronized (jobs) {
+            jobs.values().forEach(job -> jobsJson.add(job.toJson(false)));
+        }
+        status.add("jobs", jobsJson);
+
+        String query = exchange.getRequestURI().getQuery();
+        String requestedGame = query != null && query.startsWith("gamePath=")
+                ? URLDecoder.decode(query.substring("gamePath=".length()), StandardCharsets.UTF_8)
+                : null;
+        Path gamePath = requestedGame != null ? Path.of(requestedGame) : findGame();
+        if (gamePath != null) {
+            JsonObject game = Json.object().add("path", gamePath.toString());
+            Path lockFile = gamePath.resolve(InstallLock.FILE_NAME);
+            try {
+                if (Files.isRegularFile(gamePath.resolve(Main.SILK_LOADER_FIXED_JAR_NAME))
+                        && Files.isRegularFile(lockFile)) {
+                    InstallLock lock = InstallLock.read(lockFile);
+                    game.add("silkTag", lock.silkTag()).add("fabricLoader", lock.fabricLoader());
+                }
+                JsonArray stored = Json.array();
+                VersionStore.list(gamePath).forEach(version -> stored.add(VersionStore.id(version)));
+                game.add("storedVersions", stored);
+            } catch (IOException e) {
+                game.add("error", e.getMessage());
+            }
+            status.add("game", game);
+        }
+        return status;
+    }
+
+    private void submit(HttpExchange exchange, String operation) throws IOException {
+        JsonObject request;
+        try {
+            request = Json.parse(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8))
+                    .asObject();
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed JSON request: " + e.getMessage());
+        }
+        String requestedGame = request.getString("gamePath", null);
+        Path gamePath = requestedGame != null ? Path.of(requestedGame) : findGame();
+        if (gamePath == null) {
+            throw new IllegalArgumentException("Could not find Equilinox, pass gamePath");
+        }
+        if (!EquilinoxGameFinder.isValidGamePath(gamePath)) {
+            throw new IllegalArgumentException(gamePath + " is not an Equilinox installation");
+        }
+        if (operation.equals("install")) {
+            // checked right away, a typo should not have to wait for the jobs queued before it
+            requireString(request, "silkTag");
+            requireString(request, "fabricVersion");
+        }
+        Job job = new Job(String.valueOf(nextJobId.getAndIncrement()), operation, gamePath, request);
+        synchronized (jobs) {
+            jobs.put(job.id, job);
+            // forgets the oldest finished jobs
+            Iterator<Job> oldest = jobs.values().iterator();
+            int finished = (int) jobs.values().stream().filter(Job::isFinished).count();
+            while (finished > FINISHED_JOBS_KEPT && oldest.hasNext()) {
+                if (oldest.next().isFinished()) {
+                    oldest.remove();
+                    finished--;
+                }
+            }
+        }
+        synchronized (gameQueues) {
+            Path key = gamePath.toAbsolutePath().normalize();
+            CompletableFuture<Void> previous = gameQueues.getOrDefault(key, CompletableFuture.completedFuture(null));
+            // chained on any outcome, a job that could not run or died must not keep the jobs after it queued
+            CompletableFuture<Void> next = previous.exceptionally(failure -> null)
+                    .thenRunAsync(job::run, jobExecutor)
+                    .whenComplete((result, failure) -> {
+                        if (failure != null) job.abandon(failure);
+                    });
+            gameQueues.put(key, next);
+            next.whenComplete((result, failure) -> {
+                synchronized (gameQueues) {
+                    gameQueues.remove(key, next);
+                }
+            });
+        }
+        respond(exchange, 202, job.toJson(false));
+    }
+
+    private static void requireString(JsonObject request, String name) {
+        JsonValue value = request.get(name);
+        if (value == null || !value.isString() || value.asString().isBlank()) {
+            throw new IllegalArgumentException("Missing " + name);
+        }
+    }
+
+    /**
+     * @return the game found by an earlier search if it is still there, or the result of a new search
+     */
+    private Path findGame() {
+        synchronized (discoveredGameLock) {
+            if (discoveredGame == null || !EquilinoxGameFinder.isValidGamePath(discoveredGame)) {
+                String found = EquilinoxGameFinder.tryFindGame();
+                discoveredGame = found != null ? Path.of(found) : null;
+            }
+            return discoveredGame;
+        }
+    }
+
+    /**
+     * @return the Maven coordinates of {@code fabricVersion}, from a version list that is refreshed when it is old or
+     * does not know the version yet
+     */
+    private String fabricMaven(String fabricVersion) throws IOException, InterruptedException {
+        synchronized (fabricVersionsLock) {
+            boolean fresh = fabricVersions != null
+                    && System.nanoTime() - fabricVersionsFetchedAt < FABRIC_VERSIONS_MAX_AGE.toNanos();
+            Optional<String> maven = fresh ? Main.findFabricMaven(fabricVersions, fabricVersion) : Optional.empty();
+            if (maven.isEmpty()) {
+                fabricVersions = Main.fetchFabricLoaderVersions();
+                fabricVersionsFetchedAt = System.nanoTime();
+                maven = Main.findFabricMaven(fabricVersions, fabricVersion);
+            }
+            return maven.orElseThrow(
+                    () -> new IOException("Could not find Fabric Loader version '" + fabricVersion + "'"));
+        }
+    }
+
+    private static void streamEvents(HttpExchange exchange, Job job) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream body = exchange.getResponseBody();
+        int sent = 0;
+        try {
+            while (true) {
+                List<String> messages;
+                boolean finished;
+                synchronized (job) {
+                    while (sent == job.messages.size() && !job.isFinished()) {
+                        job.wait();
+                    }
+                    messages = List.copyOf(job.messages.subList(sent, job.messages.size()));
+                    finished = job.isFinished();
+                }
+                for (String message : messages) {
+                    writeLine(body, Json.object().add("message", message));
+                }
+                sent += messages.size();
+                if (finished) {
+                    writeLine(body, job.toJson(false));
+                    return;
+                }
+                body.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void writeLine(OutputStream body, JsonValue json) throws IOException {
+        body.write((json.toString() + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static JsonObject error(String message) {
+        return Json.object().add("error", message);
+    }
+
+    private static void respond(HttpExchange exchange, int status, JsonValue json) throws IOException {
+        byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicLong count = new AtomicLong();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * One operation, which collects the messages it reports for the clients following it.
+     */
+    private final class Job implements StatusListener {
+        private final String id;
+        private final String operation;
+        private final Path gamePath;
+        private final JsonObject request;
+        private final CancellationToken cancellation = new CancellationToken();
+        private final List<String> messages = new ArrayList<>();
+        private String state = "queued";
+        private String error;
+
+        private Job(String id, String operation, Path gamePath, JsonObject request) {
+            this.id = id;
+            this.operation = operation;
+            this.gamePath = gamePath;
+            this.request = request;
+        }
+
+        @Override
+        public synchronized void status(String message) {
+            messages.add(message);
+            notifyAll();
+        }
+
+        private synchronized boolean isFinished() {
+            return !state.equals("queued") && !state.equals("running");
+        }
+
+        private synchronized void setState(String state, String error) {
+            this.state = state;
+            this.error = error;
+            notifyAll();
+        }
+
+        /**
+         * Fails the job if it could not be run or {@link #run} died with an unexpected error.
+         */
+        private synchronized void abandon(Throwable failure) {
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                    ? failure.getCause()
+                    : failure;
+            if (!isFinished()) setState("failed", cause.toString());
+        }
+
+        private void run() {
+            if (cancellation.isCancelled()) {
+                setState("cancelled", null);
+                return;
+            }
+            setState("running", null);
+            try {
+                boolean succeeded =
+                        switch (operation) {
+                            case "install" -> Main.install(
+                                    fabricMaven(request.getString("fabricVersion", null)),
+                                    request.getString("silkTag", null),
+                                    gamePath,
+                                    new InstallOptions(
+                                            request.getBoolean("packed", false),
+                                            request.getBoolean("transitive", false)),
+                                    this,
+                                    cancellation);
+                            case "uninstall" -> {
+                                Main.uninstall(gamePath, this, false, cancellation);
+                                yield true;
+                            }
+                            case "verify" -> Main.verifyInstallation(gamePath, this).isEmpty();
+                            default -> throw new IllegalStateException("Unknown operation " + operation);
+                        };
+                if (cancellation.isCancelled()) {
+                    setState("cancelled", null);
+                } else {
+                    setState(succeeded ? "succeeded" : "failed", null);
+                }
+            } catch (InterruptedException e) {
+                setState("cancelled", null);
+            } catch (Exception e) {
+                status(operation + " failed: " + e.getMessage());
+                setState("failed", e.getMessage());
+            }
+        }
+
+        private synchronized JsonObject toJson(boolean withMessages) {
+            JsonObject json = Json.object()
+                    .add("id", id)
+                    .add("operation", operation)
+                    .add("gamePath", gamePath.toString())
+                    .add("state", state);
+            if (error != null) json.add("error", error);
+            if (withMessages) {
+                JsonArray messagesJson = Json.array();
+                messages.forEach(messagesJson::add);
+                json.add("messages", messagesJson);
+            } else if (!messages.isEmpty()) {
+                json.add("lastMessage", messages.get(messages.size() - 1));
+            }
+            return json;
+        }
+    }
+}
@@ -19,7 +19,9 @@ import com.eclipsesource.json.Json;
 import com.eclipsesource.json.JsonArray;
 import com.eclipsesource.json.JsonObject;
 import java.awt.*;
+import java.awt.datatransfer.StringSelection;
 import java.io.File;
+import java.io.IOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
@@ -31,26 +33,80 @@ import java.util.*;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import javax.swing.*;
+import javax.swing.Timer;
+import javax.swing.border.EmptyBorder;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
+import javax.swing.plaf.basic.ComboPopup;
 
 public class InstallerWindow extends JFrame {
-    private static final FabricVersionItem FABRIC_LOADING_ITEM = new FabricVersionItem("Loading...", "");
-    private static final FabricVersionItem FABRIC_ERROR_ITEM = new FabricVersionItem("Error", "");
-    private static final FabricVersionItem FABRIC_NO_VERSIONS_ITEM = new FabricVersionItem("No versions found.", "");
-
+    private static final FabricVersionItem FABRIC_LOADING_ITEM = new FabricVersionItem("Loading...", "", true);
+    private static final FabricVersionItem FABRIC_ERROR_ITEM = new FabricVersionItem("Error", "", true);
+    private static final FabricVersionItem FABRIC_NO_VERSIONS_ITEM =
+            new FabricVersionItem("No versions found.", "", true);
+    // how long a version selection has to stay unchanged before its files are prefetched
+    private static final int PREFETCH_DELAY_MILLIS = 1500;
+
+    private final VersionListModel<FabricVersionItem> fabricVersionModel =
+            new VersionListModel<>(FabricVersionItem::stable);
+    private final VersionListModel<String> silkVersionModel = new VersionListModel<>(version -> true);
     private final JComboBox<FabricVersionItem> fabricVersionDropdown;
+    private final JTextField fabricFilterField;
+    private final JCheckBox fabricStableOnlyCheckBox;
     private final JComboBox<String> silkVersionDropdown;
+    private final JComboBox<String> pathDropdown;
     private final JTextField pathTextField;
     private final JButton browseButton;
+    private final JButton deepSearchButton;
     private final JLabel statusLabel;
+    private final StatusListener statusListener = new StatusListener() {
+        @Override
+        public void status(String message) {
+            SwingUtilities.invokeLater(() -> statusLabel.setText(message));
+        }
+
+        @Override
+        public void installed(Path silkLoaderJar) {
+            SwingUtilities.invokeLater(() -> showInstallInstructionsPopup(InstallerWindow.this, silkLoaderJar));
+        }
+
+        @Override
+        public void uninstalled() {
+            SwingUtilities.invokeLater(() -> showUninstallInstructionsPopup(InstallerWindow.this));
+        }
+    };
     private final JButton installButton;
     private final JButton uninstallButton;
+    private final JButton cancelButton;
     private volatile boolean fabricTaskComplete = false;
     private volatile boolean silkTaskComplete = false;
     private volatile boolean fabricSucceeded = false;
     private volatile boolean silkSucceeded = false;
     private volatile boolean pathSearchComplete = false;
+    private final ArtifactPrefetcher prefetcher;
+    private final Timer prefetchTimer;
+    // the running installation, only accessed on the event dispatch thread
+    private CancellationToken installCancellation;
+    private CancellationToken deepSearchCancellation;
+
+    /**
+     * Shows the installer window in the system's look and feel, which is what the installer does without arguments.
+     */
+    static void launch() {
+        if (GraphicsEnvironment.isHeadless()) {
+            System.err.println("No display is available to show the installer window on.");
+            System.exit(1);
+        }
+        try {
+            UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
+        } catch (ReflectiveOperationException | UnsupportedLookAndFeelException e) {
+            System.err.println("Could not use the system look and feel: " + e.getMessage());
+        }
+        SwingUtilities.invokeLater(() -> {
+            InstallerWindow window = new InstallerWindow();
+            window.setVisible(true);
+        });
+    }
 
     public InstallerWindow() {
         // I'm aware that this doesn't work in a devenv
@@ -73,19 +129,28 @@ public class InstallerWindow extends JFrame {
 
         JPanel fabricRowPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 5));
         JLabel fabricLabel = new JLabel("Fabric Loader Version:");
-        fabricVersionDropdown = new JComboBox<>();
-        fabricVersionDropdown.addItem(FABRIC_LOADING_ITEM);
+        fabricVersionDropdown = new JComboBox<>(fabricVersionModel);
+        fabricVersionModel.setAll(List.of(FABRIC_LOADING_ITEM));
         fabricVersionDropdown.setEnabled(false);
+        usePrototypeCells(fabricVersionDropdown, new FabricVersionItem("0.00.00+build.000", "", true));
         fabricVersionDropdown.setPreferredSize(new Dimension(200, fabricVersionDropdown.getPreferredSize().height));
+        fabricFilterField = new JTextField(6);
+        fabricFilterField.setToolTipText("Only show Fabric Loader versions containing this text");
+        fabricFilterField.setEnabled(false);
+        fabricStableOnlyCheckBox = new JCheckBox("Stable only");
+        fabricStableOnlyCheckBox.setEnabled(false);
         fabricRowPanel.add(fabricLabel);
         fabricRowPanel.add(fabricVersionDropdown);
+        fabricRowPanel.add(fabricFilterField);
+        fabricRowPanel.add(fabricStableOnlyCheckBox);
         mainPanel.add(fabricRowPanel);
 
         JPanel silkRowPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 5));
         JLabel silkLabel = new JLabel("Silk Loader Version:    ");
-        silkVersionDropdown = new JComboBox<>();
-        silkVersionDropdown.addItem("Loading...");
+        silkVersionDropdown = new JComboBox<>(silkVersionModel);
+        silkVersionModel.setAll(List.of("Loading..."));
         silkVersionDropdown.setEnabled(false);
+        usePrototypeCells(silkVersionDropdown, "v0.00.00-alpha.00");
         silkVersionDropdown.setPreferredSize(new Dimension(200, silkVersionDropdown.getPreferredSize().height));
         silkRowPanel.add(silkLabel);
         silkRowPanel.add(silkVersionDropdown);
@@ -93,17 +158,24 @@ public class InstallerWindow extends JFrame {
 
         JPanel pathRowPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 5));
         JLabel pathLabel = new JLabel("Equilinox Location:   ");
-        pathTextField = new JTextField();
-        pathTextField.setPreferredSize(new Dimension(280, pathTextField.getPreferredSize().height));
-        pathTextField.setEnabled(false);
+        // editable, so that any location can be typed in, the installations found are offered as items
+        pathDropdown = new JComboBox<>();
+        pathDropdown.setEditable(true);
+        pathDropdown.setPreferredSize(new Dimension(280, pathDropdown.getPreferredSize().height));
+        pathDropdown.setEnabled(false);
+        pathTextField = (JTextField) pathDropdown.getEditor().getEditorComponent();
         browseButton = new JButton("...");
         browseButton.setToolTipText("Browse for Equilinox installation directory");
-        browseButton.setPreferredSize(new Dimension(45, pathTextField.getPreferredSize().height));
+        browseButton.setPreferredSize(new Dimension(45, pathDropdown.getPreferredSize().height));
         browseButton.setEnabled(false);
+        deepSearchButton = new JButton("Search");
+        deepSearchButton.setToolTipText("Search your drives for copies not installed through Steam, may take a while");
+        deepSearchButton.setEnabled(false);
 
         pathRowPanel.add(pathLabel);
-        pathRowPanel.add(pathTextField);
+        pathRowPanel.add(pathDropdown);
         pathRowPanel.add(browseButton);
+        pathRowPanel.add(deepSearchButton);
         mainPanel.add(pathRowPanel);
 
         mainPanel.add(Box.createRigidArea(new Dimension(0, 10)));
@@ -126,12 +198,38 @@ public class InstallerWindow extends JFrame {
         uninstallButton.setPreferredSize(new Dimension(100, 30));
         buttonPanel.add(uninstallButton);
 
+        cancelButton = new JButton("Cancel");
+        cancelButton.setEnabled(false);
+        cancelButton.setPreferredSize(new Dimension(100, 30));
+        buttonPanel.add(cancelButton);
+
         mainPanel.add(buttonPanel);
 
         add(mainPanel);
         pack();
         setMinimumSize(getSize());
 
+        prefetcher = createPrefetcher();
+        prefetchTimer = new Timer(PREFETCH_DELAY_MILLIS, e -> startPrefetch());
+        prefetchTimer.setRepeats(false);
+        fabricVersionDropdown.addActionListener(e -> onVersionSelectionChanged());
+        silkVersionDropdown.addActionListener(e -> onVersionSelectionChanged());
+        fabricFilterField.getDocument().addDocumentListener(new DocumentListener() {
+            public void changedUpdate(DocumentEvent e) {
+                fabricVersionModel.setFilter(fabricFilterField.getText());
+            }
+
+            public void removeUpdate(DocumentEvent e) {
+                fabricVersionModel.setFilter(fabricFilterField.getText());
+            }
+
+            public void insertUpdate(DocumentEvent e) {
+                fabricVersionModel.setFilter(fabricFilterField.getText());
+            }
+        });
+        fabricStableOnlyCheckBox.addItemListener(
+                e -> fabricVersionModel.setStableOnly(fabricStableOnlyCheckBox.isSelected()));
+
         browseButton.addActionListener(e -> {
             JFileChooser fileChooser = new JFileChooser();
             fileChooser.setDialogTitle("Select Equilinox Installation Directory");
@@ -157,6 +255,14 @@ public class InstallerWindow extends JFrame {
             }
         });
 
+        deepSearchButton.addActionListener(e -> {
+            if (deepSearchCancellation != null) {
+                deepSearchCancellation.cancel();
+            } else {
+                deepSearch();
+            }
+        });
+
         pathTextField.getDocument().addDocumentListener(new DocumentListener() {
             public void changedUpdate(DocumentEvent e) {
                 updateOverallStatus();
@@ -193,15 +299,30 @@ public class InstallerWindow extends JFrame {
                     && !gamePathString.isEmpty()
                     && EquilinoxGameFinder.isValidGamePath(gamePath)) {
                 final String finalFabricMavenCoords = fabricMavenCoordinates;
+                final CancellationToken cancellation = new CancellationToken();
 
                 installButton.setEnabled(false);
+                uninstallButton.setEnabled(false);
+                installCancellation = cancellation;
+                cancelButton.setEnabled(true);
                 statusLabel.setText("Installing...");
+                prefetchTimer.stop();
+                if (prefetcher != null) {
+                    // keeps what was prefetched for this selection, the installation picks it up
+                    prefetcher.handOff(selectedSilkVersion, finalFabricMavenCoords);
+                }
 
                 SwingWorker<Void, String> installerWorker = new SwingWorker<>() {
                     @Override
                     protected Void doInBackground() {
                         publish("Starting installation...");
-                        Main.install(finalFabricMavenCoords, selectedSilkVersion, gamePath, statusLabel);
+                        Main.install(
+                                finalFabricMavenCoords,
+                                selectedSilkVersion,
+                                gamePath,
+                                InstallOptions.DEFAULT,
+                                statusListener,
+                                cancellation);
                         return null;
                     }
 
@@ -212,8 +333,17 @@ public class InstallerWindow extends JFrame {
 
                     @Override
                     protected void done() {
+                        if (prefetcher != null) {
+                            prefetcher.cancel();
+                        }
+                        installCancellation = null;
+                        cancelButton.setEnabled(false);
                         try {
                             get();
+                            if (cancellation.isCancelled()) {
+                                updateOverallStatus();
+                                statusLabel.setText("Installation cancelled, the previous installation was kept.");
+                            }
                         } catch (InterruptedException ex) {
                             Thread.currentThread().interrupt();
                             statusLabel.setText("Installation interrupted.");
@@ -233,6 +363,14 @@ public class InstallerWindow extends JFrame {
             }
         });
 
+        cancelButton.addActionListener(e -> {
+            if (installCancellation != null) {
+                cancelButton.setEnabled(false);
+                statusLabel.setText("Cancelling...");
+                installCancellation.cancel();
+            }
+        });
+
         uninstallButton.addActionListener(e -> {
             String gamePathString = pathTextField.getText();
             if (gamePathString == null || gamePathString.trim().isEmpty()) {
@@ -250,7 +388,7 @@ public class InstallerWindow extends JFrame {
                     @Override
                     protected Void doInBackground() throws Exception {
                         publish("Starting uninstallation...");
-                        Main.uninstall(gamePath, statusLabel, false);
+                        Main.uninstall(gamePath, statusListener, false);
                         return null;
                     }
 
@@ -289,12 +427,57 @@ public class InstallerWindow extends JFrame {
         searchForEquilinoxLocation();
     }
 
+    private static ArtifactPrefetcher createPrefetcher() {
+        try {
+            ArtifactPrefetcher prefetcher = new ArtifactPrefetcher(Main.getHttpClient());
+            Runtime.getRuntime().addShutdownHook(new Thread(prefetcher::close, "silk-prefetch-cleanup"));
+            Main.setPrefetcher(prefetcher);
+            return prefetcher;
+        } catch (IOException e) {
+            System.err.println("Prefetching is disabled: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Cancels the prefetch of versions that are no longer selected right away, and prefetches the new selection once
+     * it has not changed for {@link #PREFETCH_DELAY_MILLIS}.
+     */
+    private void onVersionSelectionChanged() {
+        if (prefetcher == null) return;
+        prefetchTimer.stop();
+        FabricVersionItem fabricItem = (FabricVersionItem) fabricVersionDropdown.getSelectedItem();
+        String silkVersion = (String) silkVersionDropdown.getSelectedItem();
+        if (fabricItem == null || !fabricItem.isSelectable() || !isSelectableSilkVersion(silkVersion)) {
+            prefetcher.cancel();
+            return;
+        }
+        prefetcher.cancelUnless(silkVersion, fabricItem.mavenCoordinates());
+        prefetchTimer.restart();
+    }
+
+    private void startPrefetch() {
+        FabricVersionItem fabricItem = (FabricVersionItem) fabricVersionDropdown.getSelectedItem();
+        String silkVersion = (String) silkVersionDropdown.getSelectedItem();
+        if (fabricItem != null && fabricItem.isSelectable() && isSelectableSilkVersion(silkVersion)) {
+            prefetcher.start(silkVersion, fabricItem.mavenCoordinates());
+        }
+    }
+
+    private static boolean isSelectableSilkVersion(String silkVersion) {
+        return silkVersion != null
+                && !silkVersion.isEmpty()
+                && !silkVersion.equals("Loading...")
+                && !silkVersion.equals("Error")
+                && !silkVersion.equals("No releases found.");
+    }
+
     private void loadFabricVersions() {
         SwingWorker<List<FabricVersionItem>, Void> fabricWorker = new SwingWorker<>() {
             @Override
             protected List<FabricVersionItem> doInBackground() throws Exception {
                 List<FabricVersionItem> versions = new ArrayList<>();
-                HttpClient client = HttpClient.newHttpClient();
+                HttpClient client = Main.getHttpClient();
                 HttpRequest request = HttpRequest.newBuilder()
                         .uri(URI.create(Main.FABRIC_LOADER_VERSIONS_URL))
                         .header("Accept", "application/json")
@@ -307,7 +490,8 @@ public class InstallerWindow extends JFrame {
                         if (versionObject.contains("version") && versionObject.contains("maven")) {
                             versions.add(new FabricVersionItem(
                                     versionObject.get("version").asString(),
-                                    versionObject.get("maven").asString()));
+                                    versionObject.get("maven").asString(),
+                                    versionObject.getBoolean("stable", true)));
                         }
                     }
                 } else {
@@ -318,17 +502,14 @@ public class InstallerWindow extends JFrame {
 
             @Override
             protected void done() {
-                fabricVersionDropdown.removeAllItems();
                 try {
                     List<FabricVersionItem> versions = get();
                     if (versions.isEmpty()) {
-                        fabricVersionDropdown.addItem(FABRIC_NO_VERSIONS_ITEM);
+                        fabricVersionModel.setAll(List.of(FABRIC_NO_VERSIONS_ITEM));
                         fabricSucceeded = false;
                     } else {
-                        versions.forEach(fabricVersionDropdown::addItem);
-                        if (fabricVersionDropdown.getItemCount() > 0) {
-                            fabricVersionDropdown.setSelectedIndex(0);
-                        }
+                        // one change event for the whole list, and the first visible version is selected
+                        fabricVersionModel.setAll(versions);
                         fabricSucceeded = true;
                     }
                 } catch (InterruptedException e) {
@@ -340,8 +521,10 @@ public class InstallerWindow extends JFrame {
                     handleFabricLoadingError("Fabric: " + e.getCause().getMessage());
                 } finally {
                     fabricVersionDropdown.setEnabled(fabricSucceeded
-                            && fabricVersionDropdown.getItemCount() > 0
+                            && fabricVersionModel.getSize() > 0
                             && ((FabricVersionItem) fabricVersionDropdown.getSelectedItem()).isSelectable());
+                    fabricFilterField.setEnabled(fabricVersionDropdown.isEnabled());
+                    fabricStableOnlyCheckBox.setEnabled(fabricVersionDropdown.isEnabled());
                     fabricTaskComplete = true;
                     updateOverallStatus();
                 }
@@ -355,39 +538,28 @@ public class InstallerWindow extends JFrame {
             @Override
             protected List<String> doInBackground() throws Exception {
                 List<String> releaseTags = new ArrayList<>();
-                HttpClient client = HttpClient.newHttpClient();
-                HttpRequest request = HttpRequest.newBuilder()
-                        .uri(URI.create(Main.SILK_LOADER_RELEASES_URL))
-                        .header("Accept", "application/vnd.github.v3+json")
-                        .build();
-                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-                if (response.statusCode() == 200) {
-                    JsonArray jsonArray = Json.parse(response.body()).asArray();
+                GitHubReleases.Pages pages = Main.getGitHubReleases().pages(new CancellationToken());
+                while (pages.hasNext()) {
+                    JsonArray jsonArray = pages.next();
                     for (int i = 0; i < jsonArray.size(); i++) {
                         JsonObject releaseObject = jsonArray.get(i).asObject();
                         if (releaseObject.contains("tag_name")) {
                             releaseTags.add(releaseObject.get("tag_name").asString());
                         }
                     }
-                } else {
-                    throw new Exception("Silk: Failed to fetch. Status: " + response.statusCode());
                 }
                 return releaseTags;
             }
 
             @Override
             protected void done() {
-                silkVersionDropdown.removeAllItems();
                 try {
                     List<String> versions = get();
                     if (versions.isEmpty()) {
-                        silkVersionDropdown.addItem("No releases found.");
+                        silkVersionModel.setAll(List.of("No releases found."));
                         silkSucceeded = false;
                     } else {
-                        versions.forEach(silkVersionDropdown::addItem);
-                        if (silkVersionDropdown.getItemCount() > 0) {
-                            silkVersionDropdown.setSelectedIndex(0);
-                        }
+                        silkVersionModel.setAll(versions);
                         silkSucceeded = true;
                     }
                 } catch (InterruptedException e) {
@@ -399,7 +571,7 @@ public class InstallerWindow extends JFrame {
                     handleSilkLoadingError("Silk: " + e.getCause().getMessage());
                 } finally {
                     silkVersionDropdown.setEnabled(silkSucceeded
-                            && silkVersionDropdown.getItemCount() > 0
+                            && silkVersionModel.getSize() > 0
                             && !((String) Objects.requireNonNull(silkVersionDropdown.getSelectedItem()))
                                     .startsWith("No releases")
                             && !Objects.requireNonNull(silkVersionDropdown.getSelectedItem())
@@ -412,17 +584,25 @@ public class InstallerWindow extends JFrame {
         silkWorker.execute();
     }
 
+    /**
+     * Sizes the dropdown and its popup list after {@code prototype} instead of measuring every version.
+     */
+    private static <E> void usePrototypeCells(JComboBox<E> dropdown, E prototype) {
+        dropdown.setPrototypeDisplayValue(prototype);
+        if (dropdown.getUI().getAccessibleChild(dropdown, 0) instanceof ComboPopup popup) {
+            popup.getList().setPrototypeCellValue(prototype);
+        }
+    }
+
     private void handleFabricLoadingError(String errorMessage) {
-        fabricVersionDropdown.removeAllItems();
-        fabricVersionDropdown.addItem(FABRIC_ERROR_ITEM);
+        fabricVersionModel.setAll(List.of(FABRIC_ERROR_ITEM));
         fabricVersionDropdown.setEnabled(false);
         fabricSucceeded = false;
         System.err.println(errorMessage);
     }
 
     private void handleSilkLoadingError(String errorMessage) {
-        silkVersionDropdown.removeAllItems();
-        silkVersionDropdown.addItem("Error");
+        silkVersionModel.setAll(List.of("Error"));
         silkVersionDropdown.setEnabled(false);
         silkSucceeded = false;
         System.err.println(errorMessage);
@@ -430,19 +610,33 @@ public class InstallerWindow extends JFrame {
 
     private void searchForEquilinoxLocation() {
         statusLabel.setText("Searching for Equilinox...");
-        pathTextField.setEnabled(false);
+        pathDropdown.setEnabled(false);
         browseButton.setEnabled(false);
-        SwingWorker<String, Void> pathFinderWorker = new SwingWorker<>() {
+        SwingWorker<Void, Path> pathFinderWorker = new SwingWorker<>() {
             @Override
-            protected String doInBackground() {
-                return EquilinoxGameFinder.tryFindGame();
+            protected Void doInBackground() {
+                EquilinoxGameFinder.findGames(gamePath -> {
+                    publish(gamePath);
+                    return true;
+                });
+                return null;
+            }
+
+            @Override
+            protected void process(List<Path> found) {
+                for (Path gamePath : found) {
+                    // the first item added is selected, the ones found later are only offered
+                    pathDropdown.addItem(gamePath.toString());
+                }
+                pathDropdown.setToolTipText(pathDropdown.getItemCount() + " Equilinox installation(s) found");
+                // the first installation found is good enough to install to, the remaining probes go on
+                enablePathSelection();
             }
 
             @Override
             protected void done() {
                 try {
-                    String foundPath = get();
-                    if (foundPath != null && !foundPath.isEmpty()) pathTextField.setText(foundPath);
+                    get();
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
                 } catch (ExecutionException e) {
@@ -450,16 +644,77 @@ public class InstallerWindow extends JFrame {
                             "Error during path search: " + e.getCause().getMessage());
                     e.getCause().printStackTrace(System.out);
                 } finally {
-                    pathTextField.setEnabled(true);
-                    browseButton.setEnabled(true);
-                    pathSearchComplete = true;
-                    updateOverallStatus();
+                    enablePathSelection();
                 }
             }
         };
         pathFinderWorker.execute();
     }
 
+    /**
+     * Searches whole drives with a {@link GameCrawler}, adding every installation found to the location dropdown. The
+     * button that started it stops it.
+     */
+    private void deepSearch() {
+        CancellationToken cancellation = new CancellationToken();
+        deepSearchCancellation = cancellation;
+        deepSearchButton.setText("Stop");
+        statusLabel.setText("Searching your drives for Equilinox...");
+        int knownInstallations = pathDropdown.getItemCount();
+        SwingWorker<Void, Path> crawlerWorker = new SwingWorker<>() {
+            @Override
+            protected Void doInBackground() throws InterruptedException {
+                new GameCrawler(GameCrawler.DEFAULT_MAX_DEPTH, GameCrawler.DEFAULT_DIRECTORY_TIMEOUT, cancellation)
+                        .crawl(GameCrawler.defaultRoots(), gamePath -> {
+                            publish(gamePath);
+                            return true;
+                        });
+                return null;
+            }
+
+            @Override
+            protected void process(List<Path> found) {
+                for (Path gamePath : found) {
+                    String path = gamePath.toString();
+                    if (((DefaultComboBoxModel<String>) pathDropdown.getModel()).getIndexOf(path) >= 0) continue;
+                    pathDropdown.addItem(path);
+                    if (pathTextField.getText().trim().isEmpty()) pathDropdown.setSelectedItem(path);
+                }
+                pathDropdown.setToolTipText(pathDropdown.getItemCount() + " Equilinox installation(s) found");
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    System.err.println(
+                            "Error during deep search: " + e.getCause().getMessage());
+                    e.getCause().printStackTrace(System.out);
+                } finally {
+                    deepSearchCancellation = null;
+                    deepSearchButton.setText("Search");
+                    updateOverallStatus();
+                    if (pathDropdown.getItemCount() > knownInstallations) {
+                        pathDropdown.showPopup();
+                    }
+                }
+            }
+        };
+        crawlerWorker.execute();
+    }
+
+    private void enablePathSelection() {
+        if (pathSearchComplete) return;
+        pathDropdown.setEnabled(true);
+        browseButton.setEnabled(true);
+        deepSearchButton.setEnabled(true);
+        pathSearchComplete = true;
+        updateOverallStatus();
+    }
+
     private synchronized void updateOverallStatus() {
         String currentPathText = pathTextField.getText();
         boolean pathIsValid = false;
@@ -537,10 +792,14 @@ public class InstallerWindow extends JFrame {
         }
     }
 
-    private record FabricVersionItem(String displayVersion, String mavenCoordinates) {
-        private FabricVersionItem(String displayVersion, String mavenCoordinates) {
+    /**
+     * @param stable whether Fabric's meta server marks the version as stable
+     */
+    private record FabricVersionItem(String displayVersion, String mavenCoordinates, boolean stable) {
+        private FabricVersionItem(String displayVersion, String mavenCoordinates, boolean stable) {
             this.displayVersion = Objects.requireNonNull(displayVersion);
             this.mavenCoordinates = Objects.requireNonNull(mavenCoordinates);
+            this.stable = stable;
         }
 
         @Override
@@ -555,4 +814,83 @@ public class InstallerWindow extends JFrame {
                     && !displayVersion.equals("No versions found.");
         }
     }
+
+    private static void showInstallInstructionsPopup(Component parentComponent, Path silkLoaderPath) {
+        String title = "Installation Successful!";
+        String headerMessage = "To make the mod loader automatically launch when you start Equilinox on Steam:";
+
+        JPanel panel = new JPanel(new BorderLayout(10, 10));
+        panel.setBorder(new EmptyBorder(10, 10, 10, 10));
+
+        JLabel headerLabel = new JLabel("<html><body style='width: 350px;'>" + headerMessage + "</body></html>");
+        panel.add(headerLabel, BorderLayout.NORTH);
+
+        JTextArea instructionsArea = new JTextArea();
+        instructionsArea.setEditable(false);
+        instructionsArea.setLineWrap(true);
+        instructionsArea.setWrapStyleWord(true);
+        instructionsArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        instructionsArea.setText(
+                """
+                        1. Right-click Equilinox in your Steam library.
+                        2. Click on 'Properties...'.
+                        3. In the 'General' tab, find the 'LAUNCH OPTIONS' text box.
+                        4. Paste the following line into the text box:""");
+        instructionsArea.setRows(5);
+        instructionsArea.setColumns(0);
+        instructionsArea.setBackground(panel.getBackground());
+
+        String launchCommand = LaunchProfile.launchCommand(silkLoaderPath.getParent());
+        JTextArea commandArea = new JTextArea(launchCommand);
+        commandArea.setEditable(false);
+        commandArea.setFont(new Font("Monospaced", Font.BOLD, 13));
+        commandArea.setLineWrap(true);
+        commandArea.setWrapStyleWord(true);
+        commandArea.setToolTipText("Click to select, or use the button to copy.");
+        commandArea.setRows(3);
+        commandArea.setColumns(0);
+
+        JScrollPane commandScrollPane = new JScrollPane(commandArea);
+        commandScrollPane.setBorder(BorderFactory.createTitledBorder("Launch Option:"));
+
+        JButton copyButton = new JButton("Copy Launch Option to Clipboard");
+        copyButton.addActionListener(e -> {
+            StringSelection stringSelection = new StringSelection(launchCommand);
+            java.awt.Toolkit.getDefaultToolkit().getSystemClipboard().setContents(stringSelection, null);
+            JOptionPane.showMessageDialog(
+                    panel, "Launch option copied to clipboard!", "Copied!", JOptionPane.INFORMATION_MESSAGE);
+        });
+
+        JPanel centerPanel = new JPanel(new BorderLayout(5, 5));
+        centerPanel.add(instructionsArea, BorderLayout.NORTH);
+        centerPanel.add(commandScrollPane, BorderLayout.CENTER);
+
+        panel.add(centerPanel, BorderLayout.CENTER);
+        panel.add(copyButton, BorderLayout.SOUTH);
+
+        Window windowAncestor = null;
+        if (parentComponent != null) {
+            windowAncestor = SwingUtilities.getWindowAncestor(parentComponent);
+        }
+
+        JOptionPane.showMessageDialog(windowAncestor, panel, title, JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    private static void showUninstallInstructionsPopup(Component parentComponent) {
+        String title = "Uninstallation Information";
+        String message = "<html><body style='width: 350px;'>" + "The uninstallation process has finished.<br><br>"
+                + "<b>Important:</b> If you previously set <b>Steam launch options</b> for Equilinox to use the mod loader, "
+                + "you should now remove them to ensure the game launches normally.<br><br>"
+                + "To do this:<br>"
+                + "1. Right-click Equilinox in your Steam library.<br>"
+                + "2. Click on 'Properties...'.<br>"
+                + "3. In the 'General' tab, clear the 'LAUNCH OPTIONS' text box.</body></html>";
+
+        Window windowAncestor = null;
+        if (parentComponent != null) {
+            windowAncestor = SwingUtilities.getWindowAncestor(parentComponent);
+        }
+
+        JOptionPane.showMessageDialog(windowAncestor, message, title, JOptionPane.INFORMATION_MESSAGE);
+    }
 }
@@ -0,0 +1,494 @@
+/*
+ * Copyright 2025 Silk Loader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.rhm176.silk.installer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Downloads a new version of a jar by reusing the entries an older version of it already has on disk.
+ * <p>
+ * The remote central directory is read with a range request. Every entry whose name, CRC, sizes, compression and
+ * timestamp match an entry of the old jar is copied byte for byte from the old jar, only the remaining byte ranges are
+ * downloaded. The rebuilt jar is then checked against the remote central directory and, if known, the expected
+ * SHA-256. Whenever the server ignores ranges, the delta would not save much, or the rebuilt jar does not check out,
+ * the whole jar is downloaded instead.
+ */
+public final class JarDeltaUpdater {
+    private static final int END_HEADER_SIZE = 22;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int CENTRAL_SIGNATURE = 0x02014b50;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+    private static final int TAIL_GUESS = 16 * 1024;
+
+    // a separate request for less than this costs more than downloading the reusable bytes in between
+    private static final long MERGE_GAP = 16 * 1024;
+    private static final int MAX_RANGE_REQUESTS = 64;
+    // below this share of reusable bytes a full download is simpler and just as fast
+    private static final double MIN_REUSED_SHARE = 0.2;
+
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+)");
+
+    private JarDeltaUpdater() {}
+
+    /**
+     * @param bytesDownloaded bytes of the jar fetched from the server
+     * @param bytesReused     bytes of the jar copied from the old version
+     */
+    public record Result(long bytesDownloaded, long bytesReused) {
+        public boolean isDelta() {
+            return bytesReused > 0;
+        }
+    }
+
+    /**
+     * Downloads the jar at {@code url} to {@code output}.
+     *
+     * @param baseJar        an older version of the same jar, or null to always download the whole jar
+     * @param expectedSha256 the SHA-256 the downloaded jar must have, or null if unknown
+     * @throws java.util.concurrent.CancellationException if {@code cancellation} is cancelled
+     */
+    public static Result download(
+            HttpClient client,
+            CancellationToken cancellation,
+            String url,
+            Path output,
+            Path baseJar,
+            String expectedSha256)
+            throws IOException, InterruptedException {
+        if (baseJar != null && Files.isRegularFile(baseJar)) {
+            try {
+                Result result = downloadDelta(client, cancellation, url, output, baseJar, expectedSha256);
+                if (result != null) return result;
+            } catch (IOException e) {
+                System.err.println("Delta update of " + url + " failed, downloading the whole jar: " + e.getMessage());
+            }
+        }
+        return downloadFull(client, cancellation, url, output, expectedSha256);
+    }
+
+    /**
+     * @return null if a delta is not worth it
+     */
+    private static Result downloadDelta(
+            HttpClient client,
+            CancellationToken cancellation,
+            String url,
+            Path output,
+            Path baseJar,
+            String expectedSha256)
+            throws IOException, InterruptedException {
+        byte[] tail = null;
+        long tailStart = 0;
+        long remoteSize = 0;
+        long downloaded = 0;
+        EndRecord remoteEnd = null;
+        // jars rarely have an archive comment, so the end record is almost always found in the small guess
+        for (int tailSize : new int[] {TAIL_GUESS, END_HEADER_SIZE + MAX_COMMENT_SIZE}) {
+            HttpResponse<byte[]> tailResponse = sendRange(client, cancellation, url, "bytes=-" + tailSize);
+            if (tailResponse.statusCode() == 200) {
+                // no range support, but the answer already is the whole jar
+                byte[] jar = tailResponse.body();
+                writeVerified(output, expectedSha256, out -> out.write(ByteBuffer.wrap(jar)));
+                return new Result(downloaded + jar.length, 0);
+            }
+            long[] tailRange = contentRange(tailResponse);
+            tailStart = tailRange[0];
+            remoteSize = tailRange[2];
+            tail = tailResponse.body();
+            downloaded += tail.length;
+            if (tailStart + tail.length != remoteSize) {
+                throw new IOException("Server did not return the end of the jar");
+            }
+            remoteEnd = EndRecord.find(tail, tailStart);
+            if (remoteEnd != null || tailStart == 0) break;
+        }
+        if (remoteEnd == null) {
+            throw new IOException("End of central directory not found in " + url);
+        }
+
+        // everything from the central directory to the end of the file is copied as is
+        byte[] remoteTrailer;
+        if (remoteEnd.directoryOffset() >= tailStart) {
+            int trailerSize = (int) (remoteSize - remoteEnd.directoryOffset());
+            remoteTrailer = slice(tail, remoteEnd.directoryOffset() - tailStart, trailerSize);
+        } else {
+            byte[] directoryStart = checkedRange(
+                    sendRange(
+                            client,
+                            cancellation,
+                            url,
+                            "bytes=" + remoteEnd.directoryOffset() + "-" + (tailStart - 1)),
+                    tailStart - remoteEnd.directoryOffset());
+            downloaded += directoryStart.length;
+            remoteTrailer = Arrays.copyOf(directoryStart, directoryStart.length + tail.length);
+            System.arraycopy(tail, 0, remoteTrailer, directoryStart.length, tail.length);
+        }
+        byte[] remoteDirectory = slice(remoteTrailer, 0, remoteEnd.directorySize());
+        List<Segment> remoteSegments = Segment.of(remoteEnd, remoteDirectory);
+
+        Map<String, Segment> baseSegments = new HashMap<>();
+        try (FileChannel base = FileChannel.open(baseJar)) {
+            long baseSize = base.size();
+            long baseTailStart = Math.max(0, baseSize - END_HEADER_SIZE - MAX_COMMENT_SIZE);
+            EndRecord baseEnd =
+                    EndRecord.find(read(base, baseTailStart, (int) (baseSize - baseTailStart)), baseTailStart);
+            if (baseEnd == null) {
+                throw new IOException("End of central directory not found in " + baseJar);
+            }
+            byte[] baseDirectory = read(base, baseEnd.directoryOffset(), baseEnd.directorySize());
+            for (Segment segment : Segment.of(baseEnd, baseDirectory)) {
+                baseSegments.put(segment.name(), segment);
+            }
+
+            List<Piece> pieces = plan(remoteSegments, baseSegments);
+            long reused = pieces.stream().filter(p -> !p.remote()).mapToLong(Piece::length).sum();
+            long remoteRequests = pieces.stream().filter(Piece::remote).count();
+            if (reused < remoteEnd.directoryOffset() * MIN_REUSED_SHARE || remoteRequests > MAX_RANGE_REQUESTS) {
+                return null;
+            }
+
+            List<CompletableFuture<HttpResponse<byte[]>>> downloads = new ArrayList<>();
+            for (Piece piece : pieces) {
+                downloads.add(
+                        piece.remote()
+                                ? cancellation.track(client.sendAsync(
+                                        rangeRequest(url, "bytes=" + piece.start() + "-" + (piece.end() - 1)),
+                                        HttpResponse.BodyHandlers.ofByteArray()))
+                                : null);
+            }
+            List<byte[]> bodies = new ArrayList<>();
+            for (int i = 0; i < pieces.size(); i++) {
+                if (downloads.get(i) == null) {
+                    bodies.add(null);
+                    continue;
+                }
+                byte[] body = checkedRange(cancellation.await(downloads.get(i)), pieces.get(i).length());
+                bodies.add(body);
+                downloaded += body.length;
+            }
+
+            long expectedSize = remoteSize;
+            writeVerified(output, expectedSha256, out -> {
+                for (int i = 0; i < pieces.size(); i++) {
+                    Piece piece = pieces.get(i);
+                    if (piece.remote()) {
+                        out.write(ByteBuffer.wrap(bodies.get(i)));
+                    } else {
+                        long position = piece.baseStart();
+                        long end = piece.baseStart() + piece.length();
+                        while (position < end) {
+                            position += base.transferTo(position, end - position, out);
+                        }
+                    }
+                }
+                out.write(ByteBuffer.wrap(remoteTrailer));
+                if (out.size() != expectedSize) {
+                    throw new IOException("Rebuilt jar has " + out.size() + " bytes, expected " + expectedSize);
+                }
+            });
+            verifyEntries(output);
+            return new Result(downloaded, reused);
+        }
+    }
+
+    /**
+     * Splits the remote file in front of its central directory into pieces, each either copied from the base jar or
+     * downloaded.
+     */
+    private static List<Piece> plan(List<Segment> remoteSegments, Map<String, Segment> baseSegments) {
+        List<Piece> pieces = new ArrayList<>();
+        if (!remoteSegments.isEmpty() && remoteSegments.get(0).start() > 0) {
+            pieces.add(new Piece(0, remoteSegments.get(0).start(), -1));
+        }
+        for (Segment segment : remoteSegments) {
+            Segment baseSegment = baseSegments.get(segment.name());
+            if (baseSegment != null && baseSegment.sameContentAs(segment)) {
+                pieces.add(new Piece(segment.start(), segment.end(), baseSegment.start()));
+            } else {
+                pieces.add(new Piece(segment.start(), segment.end(), -1));
+            }
+        }
+
+        // download small reusable gaps along with their neighbours instead of splitting the request
+        for (int i = 1; i < pieces.size() - 1; i++) {
+            Piece piece = pieces.get(i);
+            if (!piece.remote()
+                    && piece.length() < MERGE_GAP
+                    && pieces.get(i - 1).remote()
+                    && pieces.get(i + 1).remote()) {
+                pieces.set(i, new Piece(piece.start(), piece.end(), -1));
+            }
+        }
+
+        List<Piece> merged = new ArrayList<>();
+        for (Piece piece : pieces) {
+            Piece last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && last.remote() && piece.remote()) {
+                merged.set(merged.size() - 1, new Piece(last.start(), piece.end(), -1));
+            } else if (last != null
+                    && !last.remote()
+                    && !piece.remote()
+                    && last.baseStart() + last.length() == piece.baseStart()) {
+                merged.set(merged.size() - 1, new Piece(last.start(), piece.end(), last.baseStart()));
+            } else {
+                merged.add(piece);
+            }
+        }
+        return merged;
+    }
+
+    private static Result downloadFull(
+            HttpClient client, CancellationToken cancellation, String url, Path output, String expectedSha256)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create(url)).build();
+        Path tempFile = Files.createTempFile(
+                output.getParent(), output.getFileName().toString(), ".tmp");
+        try {
+            HttpResponse<Path> response =
+                    cancellation.await(client.sendAsync(request, HttpResponse.BodyHandlers.ofFile(tempFile)));
+            if (response.statusCode() != 200) {
+                throw new IOException("Failed to download " + url + ". Status: " + response.statusCode());
+            }
+            checkSha256(tempFile, expectedSha256);
+            long size = Files.size(tempFile);
+            Files.move(tempFile, output, StandardCopyOption.REPLACE_EXISTING);
+            return new Result(size, 0);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static void writeVerified(Path output, String expectedSha256, ChannelWriter writer) throws IOException {
+        Path tempFile = Files.createTempFile(
+                output.getParent(), output.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                writer.write(out);
+            }
+            checkSha256(tempFile, expectedSha256);
+            Files.move(tempFile, output, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static void checkSha256(Path file, String expectedSha256) throws IOException {
+        if (expectedSha256 == null) return;
+        String actual = InstallFingerprint.sha256(file);
+        if (!actual.equalsIgnoreCase(expectedSha256)) {
+            throw new IOException("SHA-256 mismatch, expected " + expectedSha256 + " but got " + actual);
+        }
+    }
+
+    /**
+     * Recomputes the CRC of every entry, which catches reused bytes that do not belong to the new jar even if no
+     * SHA-256 is known.
+     */
+    private static void verifyEntries(Path jar) throws IOException {
+        try (ZipFile zip = new ZipFile(jar.toFile())) {
+            byte[] buffer = new byte[64 * 1024];
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                CRC32 crc = new CRC32();
+                try (InputStream in = zip.getInputStream(entry)) {
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        crc.update(buffer, 0, read);
+                    }
+                }
+                if (crc.getValue() != entry.getCrc()) {
+                    Files.deleteIfExists(jar);
+                    throw new IOException("Rebuilt entry " + entry.getName() + " has a wrong CRC");
+                }
+            }
+        }
+    }
+
+    private static HttpRequest rangeRequest(String url, String range) {
+        return HttpRequest.newBuilder().uri(URI.create(url)).header("Range", range).build();
+    }
+
+    private static HttpResponse<byte[]> sendRange(
+            HttpClient client, CancellationToken cancellation, String url, String range)
+            throws IOException, InterruptedException {
+        return cancellation.await(client.sendAsync(rangeRequest(url, range), HttpResponse.BodyHandlers.ofByteArray()));
+    }
+
+    private static byte[] checkedRange(HttpResponse<byte[]> response, long expectedLength) throws IOException {
+        if (response.statusCode() != 206 || response.body().length != expectedLength) {
+            throw new IOException("Server did not honor a range request, status " + response.statusCode());
+        }
+        return response.body();
+    }
+
+    private static long[] contentRange(HttpResponse<byte[]> response) throws IOException {
+        if (response.statusCode() != 206) {
+            throw new IOException("Unexpected status " + response.statusCode() + " for a range request");
+        }
+        String header = response.headers().firstValue("Content-Range").orElse("");
+        Matcher matcher = CONTENT_RANGE.matcher(header);
+        if (!matcher.matches()) {
+            throw new IOException("Unsupported Content-Range '" + header + "'");
+        }
+        return new long[] {
+            Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2)), Long.parseLong(matcher.group(3))
+        };
+    }
+
+    private static byte[] read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        return buffer.array();
+    }
+
+    private static byte[] slice(byte[] bytes, long offset, int length) throws IOException {
+        if (offset < 0 || offset + length > bytes.length) {
+            throw new IOException("Central directory lies outside of the file");
+        }
+        return Arrays.copyOfRange(bytes, (int) offset, (int) offset + length);
+    }
+
+    @FunctionalInterface
+    private interface ChannelWriter {
+        void write(FileChannel out) throws IOException;
+    }
+
+    /**
+     * @param baseStart where the bytes can be copied from in the base jar, or -1 if they have to be downloaded
+     */
+    private record Piece(long start, long end, long baseStart) {
+        boolean remote() {
+            return baseStart < 0;
+        }
+
+        long length() {
+            return end - start;
+        }
+    }
+
+    private record EndRecord(int entryCount, int directorySize, long directoryOffset) {
+        /**
+         * @return the end record at the end of {@code tail}, or null if {@code tail} does not contain it
+         */
+        static EndRecord find(byte[] tail, long tailStart) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(tail).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = tail.length - END_HEADER_SIZE; i >= 0; i--) {
+                if (buffer.getInt(i) == END_SIGNATURE
+                        && i + END_HEADER_SIZE + Short.toUnsignedInt(buffer.getShort(i + 20)) == tail.length) {
+                    int entryCount = Short.toUnsignedInt(buffer.getShort(i + 10));
+                    long directorySize = Integer.toUnsignedLong(buffer.getInt(i + 12));
+                    long directoryOffset = Integer.toUnsignedLong(buffer.getInt(i + 16));
+                    if (entryCount == 0xFFFF || directorySize == 0xFFFFFFFFL || directoryOffset == 0xFFFFFFFFL) {
+                        throw new IOException("ZIP64 jars are not supported");
+                    }
+                    if (directoryOffset + directorySize != tailStart + i) {
+                        throw new IOException("Jar has data between its central directory and end record");
+                    }
+                    return new EndRecord(entryCount, (int) directorySize, directoryOffset);
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * The local header and data of one entry, from {@code start} up to the next entry or the central directory.
+     */
+    private record Segment(
+            String name, int flags, int method, int dosTime, long crc, long compressedSize, long size, long start,
+            long end) {
+        static List<Segment> of(EndRecord endRecord, byte[] directory) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(directory).order(ByteOrder.LITTLE_ENDIAN);
+            List<Segment> segments = new ArrayList<>();
+            int position = 0;
+            for (int i = 0; i < endRecord.entryCount(); i++) {
+                if (position + CENTRAL_HEADER_SIZE > directory.length || buffer.getInt(position) != CENTRAL_SIGNATURE) {
+                    throw new IOException("Malformed central directory");
+                }
+                int nameLength = Short.toUnsignedInt(buffer.getShort(position + 28));
+                int extraLength = Short.toUnsignedInt(buffer.getShort(position + 30));
+                int commentLength = Short.toUnsignedInt(buffer.getShort(position + 32));
+                segments.add(new Segment(
+                        new String(directory, position + CENTRAL_HEADER_SIZE, nameLength, StandardCharsets.UTF_8),
+                        Short.toUnsignedInt(buffer.getShort(position + 8)),
+                        Short.toUnsignedInt(buffer.getShort(position + 10)),
+                        buffer.getInt(position + 12),
+                        Integer.toUnsignedLong(buffer.getInt(position + 16)),
+                        Integer.toUnsignedLong(buffer.getInt(position + 20)),
+                        Integer.toUnsignedLong(buffer.getInt(position + 24)),
+                        Integer.toUnsignedLong(buffer.getInt(position + 42)),
+                        -1));
+                position += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+            }
+
+            segments.sort(Comparator.comparingLong(Segment::start));
+            List<Segment> bounded = new ArrayList<>();
+            for (int i = 0; i < segments.size(); i++) {
+                Segment segment = segments.get(i);
+                long end = i + 1 < segments.size() ? segments.get(i + 1).start() : endRecord.directoryOffset();
+                if (end <= segment.start()) {
+                    throw new IOException("Overlapping entries in jar");
+                }
+                bounded.add(new Segment(
+                        segment.name(),
+                        segment.flags(),
+                        segment.method(),
+                        segment.dosTime(),
+                        segment.crc(),
+                        segment.compressedSize(),
+                        segment.size(),
+                        segment.start(),
+                        end));
+            }
+            return bounded;
+        }
+
+        boolean sameContentAs(Segment other) {
+            return name.equals(other.name)
+                    && flags == other.flags
+                    && method == other.method
+                    && dosTime == other.dosTime
+                    && crc == other.crc
+                    && compressedSize == other.compressedSize
+                    && size == other.size
+                    && end - start == other.end - other.start;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2025 Silk Loader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.rhm176.silk.installer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Merges several jars into a single classpath jar, so the JVM opens one zip file instead of one per library.
+ * <ul>
+ *     <li>Duplicate entries are dropped, the jar that comes first on the classpath wins, just like at runtime.</li>
+ *     <li>{@code META-INF/services} files are concatenated, so no service provider is lost.</li>
+ *     <li>Signatures and per-jar manifests are dropped, they would be invalid for the merged jar.</li>
+ *     <li>Classes of the packages the loader needs during startup are stored uncompressed.</li>
+ *     <li>Entries are written sorted by name, so every package is laid out contiguously in the file, and with a
+ *         fixed timestamp, so packing the same jars always produces the same bytes.</li>
+ * </ul>
+ * <p>
+ * Jars that Fabric Loader discovers as mods on the classpath, including Fabric Loader itself, cannot be merged. Each
+ * of them has a {@code fabric.mod.json} at its root, and only one of those would survive. {@link #isPackable} tells
+ * them apart.
+ */
+public final class JarPacker {
+    public static final String PACKED_JAR_NAME = "silk-libraries.jar";
+
+    // the libraries Fabric Loader touches before the game starts, inflating these would only cost startup time
+    private static final List<String> HOT_PACKAGES =
+            List.of("net/fabricmc/mappingio/", "org/objectweb/asm/", "org/spongepowered/asm/");
+    private static final String MOD_METADATA_NAME = "fabric.mod.json";
+    private static final String SERVICES_PREFIX = "META-INF/services/";
+    private static final long ENTRY_TIME = new GregorianCalendar(2000, Calendar.JANUARY, 1).getTimeInMillis();
+
+    private JarPacker() {}
+
+    /**
+     * @return whether {@code jar} can be merged, which is the case unless Fabric Loader discovers it as a mod
+     */
+    public static boolean isPackable(Path jar) throws IOException {
+        try (ZipFile zip = new ZipFile(jar.toFile())) {
+            return zip.getEntry(MOD_METADATA_NAME) == null;
+        }
+    }
+
+    /**
+     * @param jars the jars to merge, in classpath order, all of them {@link #isPackable packable}
+     * @return the number of duplicate entries that were dropped
+     */
+    public static int pack(List<Path> jars, Path output) throws IOException {
+        List<ZipFile> zips = new ArrayList<>();
+        try {
+            SortedMap<String, ZipSource> entries = new TreeMap<>();
+            Map<String, Set<String>> services = new TreeMap<>();
+            boolean multiRelease = false;
+            int duplicates = 0;
+
+            for (Path jar : jars) {
+                ZipFile zip = new ZipFile(jar.toFile());
+                zips.add(zip);
+                for (ZipEntry entry : Collections.list(zip.entries())) {
+                    String name = entry.getName();
+                    if (name.startsWith(SERVICES_PREFIX) && !entry.isDirectory()) {
+                        services.computeIfAbsent(name, k -> new LinkedHashSet<>())
+                                .addAll(readServiceProviders(zip, entry));
+                    } else if (isDroppedMetadata(name)) {
+                        if (name.equals(JarFile.MANIFEST_NAME)) {
+                            multiRelease |= isMultiRelease(zip, entry);
+                        }
+                    } else if (entries.putIfAbsent(name, new ZipSource(zip, entry)) != null && !entry.isDirectory()) {
+                        duplicates++;
+                    }
+                }
+            }
+
+            Manifest manifest = new Manifest();
+            manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+            manifest.getMainAttributes().putValue("Created-By", "Silk Loader Installer");
+            if (multiRelease) {
+                manifest.getMainAttributes().put(Attributes.Name.MULTI_RELEASE, "true");
+            }
+
+            Path tempFile = Files.createTempFile(
+                    output.getParent(), output.getFileName().toString(), ".tmp");
+            try {
+                try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(tempFile))) {
+                    ZipEntry manifestEntry = new ZipEntry(JarFile.MANIFEST_NAME);
+                    manifestEntry.setTime(ENTRY_TIME);
+                    out.putNextEntry(manifestEntry);
+                    manifest.write(out);
+                    out.closeEntry();
+
+                    for (Map.Entry<String, Set<String>> service : services.entrySet()) {
+                        String content = String.join("\n", service.getValue()) + "\n";
+                        writeEntry(out, service.getKey(), content.getBytes(StandardCharsets.UTF_8));
+                    }
+                    for (Map.Entry<String, ZipSource> entry : entries.entrySet()) {
+                        if (entry.getValue().entry().isDirectory()) {
+                            writeEntry(out, entry.getKey(), new byte[0]);
+                        } else {
+                            try (InputStream in = entry.getValue().zip().getInputStream(entry.getValue().entry())) {
+                                writeEntry(out, entry.getKey(), in.readAllBytes());
+                            }
+                        }
+                    }
+                }
+                Files.move(tempFile, output, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+            return duplicates;
+        } finally {
+            for (ZipFile zip : zips) {
+                zip.close();
+            }
+        }
+    }
+
+    private static void writeEntry(JarOutputStream out, String name, byte[] content) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setTime(ENTRY_TIME);
+        if (isHot(name) || content.length == 0) {
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(content.length);
+            entry.setCompressedSize(content.length);
+            entry.setCrc(crc.getValue());
+        } else {
+            entry.setMethod(ZipEntry.DEFLATED);
+        }
+        out.putNextEntry(entry);
+        out.write(content);
+        out.closeEntry();
+    }
+
+    private static boolean isHot(String name) {
+        if (!name.endsWith(".class")) return false;
+        for (String hotPackage : HOT_PACKAGES) {
+            if (name.startsWith(hotPackage)) return true;
+        }
+        return false;
+    }
+
+    private static boolean isDroppedMetadata(String name) {
+        String upperName = name.toUpperCase(Locale.ROOT);
+        if (!upperName.startsWith("META-INF/") || upperName.indexOf('/', "META-INF/".length()) >= 0) return false;
+        return upperName.equals(JarFile.MANIFEST_NAME)
+                || upperName.equals("META-INF/INDEX.LIST")
+                || upperName.endsWith(".SF")
+                || upperName.endsWith(".RSA")
+                || upperName.endsWith(".DSA")
+                || upperName.endsWith(".EC")
+                || upperName.startsWith("META-INF/SIG-");
+    }
+
+    private static boolean isMultiRelease(ZipFile zip, ZipEntry manifestEntry) throws IOException {
+        try (InputStream in = zip.getInputStream(manifestEntry)) {
+            return "true"
+                    .equalsIgnoreCase(new Manifest(in).getMainAttributes().getValue(Attributes.Name.MULTI_RELEASE));
+        }
+    }
+
+    private static List<String> readServiceProviders(ZipFile zip, ZipEntry entry) throws IOException {
+        List<String> providers = new ArrayList<>();
+        try (InputStream in = zip.getInputStream(entry)) {
+            for (String line : new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\\R")) {
+                int comment = line.indexOf('#');
+                String provider = (comment >= 0 ? line.substring(0, comment) : line).trim();
+                if (!provider.isEmpty()) providers.add(provider);
+            }
+        }
+        return providers;
+    }
+
+    private record ZipSource(ZipFile zip, ZipEntry entry) {}
+}
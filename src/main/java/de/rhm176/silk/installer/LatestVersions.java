@@ -0,0 +1,258 @@
+/*
+ * Copyright 2025 Silk Loader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.rhm176.silk.installer;
+
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.JsonValue;
+import java.io.*;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.concurrent.*;
+
+/**
+ * Finds the latest Silk Loader and Fabric Loader versions quickly enough for {@code --help} and for installing "the
+ * latest" version, also when offline.
+ * <p>
+ * Both lookups run at the same time and are given up after a deadline. Results are saved and reused for an hour
+ * without asking again, and a lookup that fails or runs out of time falls back to the last saved result, however
+ * old. Fabric's version list is read as it arrives and the download is abandoned as soon as the latest and the latest
+ * stable version are known, which are usually its first entries.
+ */
+public final class LatestVersions {
+    public static final String FILE_NAME = "latest-versions.json";
+
+    private static final long FRESH_MILLIS = 60 * 60 * 1000;
+    // lookups that miss the deadline are left to finish on their own, they must not keep the JVM alive
+    private static final Executor LOOKUP_THREADS = task -> {
+        Thread thread = new Thread(task, "Latest version lookup");
+        thread.setDaemon(true);
+        thread.start();
+    };
+
+    private final HttpClient client;
+    private final GitHubReleases gitHubReleases;
+    private final Path file;
+
+    /**
+     * @param version the version, e.g. {@code 0.16.10}
+     * @param maven   the Maven coordinates of this version
+     */
+    public record FabricLoader(String version, String maven) {}
+
+    /**
+     * The latest versions, null where they could not be found.
+     *
+     * @param fabricLoader       the latest Fabric Loader, which may be a beta
+     * @param stableFabricLoader the latest Fabric Loader marked stable
+     */
+    public record Versions(String silkLoader, FabricLoader fabricLoader, FabricLoader stableFabricLoader) {}
+
+    /**
+     * @param file where results are saved, or null to keep them in memory only
+     */
+    public LatestVersions(HttpClient client, GitHubReleases gitHubReleases, Path file) {
+        this.client = client;
+        this.gitHubReleases = gitHubReleases;
+        this.file = file;
+    }
+
+    public static Path defaultFile() {
+        return Path.of(System.getProperty("user.home"), ".silk-installer", FILE_NAME);
+    }
+
+    /**
+     * Looks up the latest versions, waiting at most {@code deadline} for either lookup.
+     */
+    public Versions resolve(Duration deadline) throws InterruptedException {
+        JsonObject saved = load();
+        long now = System.currentTimeMillis();
+        boolean silkFresh = now - saved.getLong("silkLoaderFetchedAt", 0) < FRESH_MILLIS;
+        boolean fabricFresh = now - saved.getLong("fabricLoaderFetchedAt", 0) < FRESH_MILLIS;
+
+        CompletableFuture<String> silkLookup = silkFresh
+                ? CompletableFuture.completedFuture(null)
+                : CompletableFuture.supplyAsync(this::lookUpSilkLoader, LOOKUP_THREADS);
+        CompletableFuture<FabricLoader[]> fabricLookup = fabricFresh
+                ? CompletableFuture.completedFuture(null)
+                : CompletableFuture.supplyAsync(() -> lookUpFabricLoaders(deadline), LOOKUP_THREADS);
+        try {
+            CompletableFuture.allOf(silkLookup, fabricLookup).get(deadline.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            // whatever finished is used, the rest falls back to the saved versions
+        }
+        silkLookup.cancel(true);
+        fabricLookup.cancel(true);
+
+        String silkLoader = resultOf(silkLookup);
+        FabricLoader[] fabricLoaders = resultOf(fabricLookup);
+        if (silkLoader != null) {
+            saved.set("silkLoader", silkLoader).set("silkLoaderFetchedAt", now);
+        }
+        if (fabricLoaders != null) {
+            saved.set("fabricLoader", toJson(fabricLoaders[0]))
+                    .set("stableFabricLoader", toJson(fabricLoaders[1]))
+                    .set("fabricLoaderFetchedAt", now);
+        }
+        if (silkLoader != null || fabricLoaders != null) save(saved);
+
+        return new Versions(
+                saved.getString("silkLoader", null),
+                fromJson(saved.get("fabricLoader")),
+                fromJson(saved.get("stableFabricLoader")));
+    }
+
+    private String lookUpSilkLoader() {
+        try {
+            return gitHubReleases.latestTag(new CancellationToken());
+        } catch (IOException e) {
+            System.err.println("Could not look up the latest Silk Loader version: " + e.getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * @return the latest and the latest stable Fabric Loader, or null if they could not be looked up
+     */
+    private FabricLoader[] lookUpFabricLoaders(Duration deadline) {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(Main.FABRIC_LOADER_VERSIONS_URL))
+                .timeout(deadline)
+                .build();
+        try {
+            HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            // closing the body before it is read completely abandons the rest of the download
+            try (Reader body = new InputStreamReader(response.body(), StandardCharsets.UTF_8)) {
+                if (response.statusCode() != 200) {
+                    System.err.println("Could not look up the latest Fabric Loader version. Status: "
+                            + response.statusCode());
+                    return null;
+                }
+                return readFabricLoaders(new BufferedReader(body));
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not look up the latest Fabric Loader version: " + e.getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Reads Fabric's version list, newest first, one entry at a time and stops at the first stable one.
+     *
+     * @return the first entry and the first stable entry, either may be null
+     */
+    static FabricLoader[] readFabricLoaders(Reader reader) throws IOException {
+        FabricLoader[] found = new FabricLoader[2];
+        int c;
+        while ((c = reader.read()) != '[') {
+            if (c == -1 || !Character.isWhitespace(c)) throw new IOException("Expected a JSON array of versions");
+        }
+        StringBuilder entry = new StringBuilder();
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        while ((c = reader.read()) != -1) {
+            if (depth == 0) {
+                if (c == ']') break;
+                if (c != '{') continue;
+                entry.setLength(0);
+            }
+            entry.append((char) c);
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if ((c == '}' || c == ']') && --depth == 0) {
+                JsonObject version = Json.parse(entry.toString()).asObject();
+                if (!version.contains("version") || !version.contains("maven")) continue;
+                FabricLoader fabricLoader = new FabricLoader(
+                        version.get("version").asString(), version.get("maven").asString());
+                if (found[0] == null) found[0] = fabricLoader;
+                if (version.getBoolean("stable", false)) {
+                    found[1] = fabricLoader;
+                    break;
+                }
+            }
+        }
+        return found;
+    }
+
+    private static <T> T resultOf(CompletableFuture<T> lookup) {
+        try {
+            return lookup.getNow(null);
+        } catch (CancellationException | CompletionException e) {
+            return null;
+        }
+    }
+
+    private static JsonValue toJson(FabricLoader fabricLoader) {
+        if (fabricLoader == null) return Json.NULL;
+        return Json.object().add("version", fabricLoader.version()).add("maven", fabricLoader.maven());
+    }
+
+    private static FabricLoader fromJson(JsonValue value) {
+        if (value == null || !value.isObject()) return null;
+        JsonObject object = value.asObject();
+        return new FabricLoader(object.getString("version", null), object.getString("maven", null));
+    }
+
+    private JsonObject load() {
+        if (file == null || !Files.isRegularFile(file)) return Json.object();
+        try {
+            return Json.parse(Files.readString(file)).asObject();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring unreadable " + file + ": " + e.getMessage());
+            return Json.object();
+        }
+    }
+
+    private void save(JsonObject saved) {
+        if (file == null) return;
+        try {
+            Files.createDirectories(file.getParent());
+            Path tempFile = Files.createTempFile(file.getParent(), FILE_NAME, ".tmp");
+            try {
+                Files.writeString(tempFile, saved.toString());
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not save the latest versions to " + file + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2025 Silk Loader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.rhm176.silk.installer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The JVM arguments used to launch the modded game, stored in a {@code java @argfile} next to the game.
+ * <p>
+ * The argument file holds an explicit, ordered classpath and the loader's main class, so the Steam launch option
+ * stays {@code java @silk-launch.args %command%} no matter what is installed. After a training run it also points
+ * the JVM at an AppCDS archive of the loader's classes.
+ */
+public final class LaunchProfile {
+    public static final String ARGFILE_NAME = "silk-launch.args";
+    public static final String CDS_ARCHIVE_NAME = "silk-launch.jsa";
+
+    private LaunchProfile() {}
+
+    /**
+     * Writes the argument file into {@code directory}.
+     *
+     * @param classpath classpath entries relative to the game directory, in lookup order
+     */
+    public static void write(Path directory, List<String> classpath, String mainClass, boolean useCdsArchive)
+            throws IOException {
+        List<String> lines = new ArrayList<>();
+        if (useCdsArchive) {
+            lines.add("-XX:SharedArchiveFile=" + CDS_ARCHIVE_NAME);
+        }
+        lines.add("-cp");
+        // forward slashes work on every platform and need no escaping in argument files
+        lines.add(quote(String.join(File.pathSeparator, classpath).replace('\\', '/')));
+        lines.add(mainClass);
+        Files.write(directory.resolve(ARGFILE_NAME), lines);
+    }
+
+    /**
+     * Rewrites the argument file in {@code gamePath} to use (or stop using) the CDS archive next to it.
+     */
+    public static void setCdsArchiveEnabled(Path gamePath, boolean enabled) throws IOException {
+        Path argfile = gamePath.resolve(ARGFILE_NAME);
+        List<String> lines = new ArrayList<>(Files.readAllLines(argfile));
+        lines.removeIf(line -> line.startsWith("-XX:SharedArchiveFile="));
+        if (enabled) {
+            lines.add(0, "-XX:SharedArchiveFile=" + CDS_ARCHIVE_NAME);
+        }
+        Files.write(argfile, lines);
+    }
+
+    /**
+     * @return the JVM arguments, without the {@code java} executable, that start the loader installed in
+     * {@code gamePath}. Falls back to a wildcard classpath for installations without an argument file.
+     */
+    public static List<String> launchArguments(Path gamePath) {
+        if (Files.isRegularFile(gamePath.resolve(ARGFILE_NAME))) {
+            return List.of("@" + ARGFILE_NAME);
+        }
+        return List.of(
+                "-cp",
+                Main.SILK_LOADER_FIXED_JAR_NAME + File.pathSeparator + "lib" + File.separator + "*",
+                Main.getMainClassFromJar(gamePath.resolve(Main.SILK_LOADER_FIXED_JAR_NAME)));
+    }
+
+    /**
+     * @return the Steam launch option for the installation in {@code gamePath}
+     */
+    public static String launchCommand(Path gamePath) {
+        List<String> arguments = new ArrayList<>();
+        for (String argument : launchArguments(gamePath)) {
+            arguments.add(argument.contains(File.pathSeparator) ? quote(argument) : argument);
+        }
+        return "java " + String.join(" ", arguments) + " %command%";
+    }
+
+    private static String quote(String value) {
+        return "\"" + value + "\"";
+    }
+}
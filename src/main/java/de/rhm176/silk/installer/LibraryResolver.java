@@ -0,0 +1,510 @@
+/*
+ * Copyright 2025 Silk Loader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.rhm176.silk.installer;
+
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonArray;
+import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.JsonValue;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Resolves the libraries an installation needs from a Fabric Loader JSON.
+ * <p>
+ * The libraries of every section a game client loads are read. {@link #resolve} walks the POMs of those libraries as
+ * well, one level of the dependency graph at a time with all POMs of a level fetched in parallel, so that runtime
+ * dependencies Fabric does not list itself are installed instead of failing with a missing class on launch. Every
+ * library is installed in one version: the one closest to the Fabric JSON wins, which keeps the versions Fabric pins,
+ * and the highest one wins among equally close ones.
+ * <p>
+ * Released POMs never change, so a walked graph is cached by the digest of the Fabric JSON.
+ */
+public final class LibraryResolver {
+    /**
+     * The sections of the Fabric JSON a game client needs, server and development libraries are never loaded.
+     */
+    static final List<String> SECTIONS = List.of("common", "client");
+
+    private static final int CACHE_FORMAT_VERSION = 1;
+    // guards against parent POMs that refer to each other
+    private static final int MAX_PARENT_DEPTH = 16;
+    private static final Set<String> RUNTIME_SCOPES = Set.of("compile", "runtime");
+    private static final Pattern PROPERTY = Pattern.compile("\\$\\{([^}]+)}");
+
+    /**
+     * @param repository the repository the library is expected in, the download may still use a faster mirror
+     */
+    public record Library(MavenArtifact artifact, String repository) {}
+
+    private record Dependency(
+            String group,
+            String artifact,
+            String version,
+            String classifier,
+            String scope,
+            String type,
+            String optional,
+            Set<String> exclusions) {}
+
+    /**
+     * A POM merged with its parents. Properties are interpolated only when its dependencies are read, the way Maven
+     * does it, so that a parent's dependencies pick up the child's versions.
+     */
+    private record Pom(Map<String, String> properties, List<Dependency> managed, List<Dependency> dependencies) {}
+
+    // a library on the walk, along with the exclusions of the path that led to it
+    private record Visit(Library library, Set<String> exclusions) {}
+
+    private final HttpClient client;
+    private final CancellationToken cancellation;
+    private final Path cacheDir;
+    private final Consumer<String> status;
+    private final Map<String, CompletableFuture<Pom>> poms = new ConcurrentHashMap<>();
+
+    /**
+     * @param cacheDir where resolved graphs are cached, or null to always walk the POMs
+     * @param status   receives progress and warnings
+     */
+    public LibraryResolver(
+            HttpClient client, CancellationToken cancellation, Path cacheDir, Consumer<String> status) {
+        this.client = client;
+        this.cancellation = cancellation;
+        this.cacheDir = cacheDir;
+        this.status = status;
+    }
+
+    public static Path defaultCacheDir() {
+        return Path.of(System.getProperty("user.home"), ".silk-installer", "resolved-libraries");
+    }
+
+    /**
+     * @return the libraries listed in {@link #SECTIONS} of {@code fabricJson}, in the order Fabric lists them. A
+     * library listed twice is kept once, in its highest version.
+     */
+    public static List<Library> declared(JsonObject fabricJson, Consumer<String> status) {
+        Map<String, Library> libraries = new LinkedHashMap<>();
+        JsonValue sections = fabricJson.get("libraries");
+        if (sections == null || !sections.isObject()) {
+            status.accept("No 'libraries' section found in Fabric JSON.");
+            return List.of();
+        }
+        for (String section : SECTIONS) {
+            JsonValue entries = sections.asObject().get(section);
+            if (entries == null || !entries.isArray()) continue;
+            for (JsonValue value : entries.asArray()) {
+                JsonObject libInfo = value.asObject();
+                String libNameFull = libInfo.getString("name", "");
+                MavenArtifact artifact;
+                try {
+                    artifact = MavenArtifact.parse(libNameFull);
+                } catch (IllegalArgumentException e) {
+                    status.accept("Skipping library with invalid coordinates: " + libNameFull);
+                    continue;
+                }
+                Library library = new Library(artifact, libInfo.getString("url", Main.FABRIC_MAVENS.get(0)));
+                libraries.merge(artifact.key(), library, LibraryResolver::higher);
+            }
+        }
+        if (libraries.isEmpty()) {
+            status.accept("No libraries found in the " + String.join(", ", SECTIONS) + " sections of Fabric JSON.");
+        }
+        return List.copyOf(libraries.values());
+    }
+
+    /**
+     * @return the libraries {@link #declared declared} in {@code fabricJson}, followed by their transitive runtime
+     * dependencies in breadth-first order
+     * @throws java.util.concurrent.CancellationException if the cancellation token was cancelled
+     */
+    public List<Library> resolve(JsonObject fabricJson) throws InterruptedException {
+        List<Library> declared = declared(fabricJson, status);
+        String cacheKey = cacheKey(fabricJson);
+        List<Library> cached = readCache(cacheKey);
+        if (cached != null) {
+            status.accept("Using the cached dependency graph of " + cached.size() + " libraries.");
+            return cached;
+        }
+
+        Map<String, Library> resolved = new LinkedHashMap<>();
+        List<Visit> level = new ArrayList<>();
+        for (Library library : declared) {
+            resolved.put(library.artifact().key(), library);
+            level.add(new Visit(library, Set.of()));
+        }
+        boolean complete = true;
+        for (int depth = 1; !level.isEmpty(); depth++) {
+            status.accept("Resolving dependencies of " + level.size() + " libraries (level " + depth + ")...");
+            Map<Visit, CompletableFuture<Pom>> levelPoms = new LinkedHashMap<>();
+            for (Visit visit : level) {
+                levelPoms.put(visit, pom(visit.library().artifact(), visit.library().repository(), 0));
+            }
+
+            Map<String, Visit> next = new LinkedHashMap<>();
+            for (Map.Entry<Visit, CompletableFuture<Pom>> entry : levelPoms.entrySet()) {
+                Visit visit = entry.getKey();
+                Pom pom;
+                try {
+                    pom = cancellation.await(entry.getValue());
+                } catch (IOException | RuntimeException e) {
+                    cancellation.throwIfCancelled();
+                    status.accept("Could not read the POM of " + visit.library().artifact().coordinates() + ": "
+                            + e.getMessage());
+                    complete = false;
+                    continue;
+                }
+                for (Dependency dependency : runtimeDependencies(pom, visit.library().artifact())) {
+                    MavenArtifact artifact = new MavenArtifact(
+                            dependency.group(), dependency.artifact(), dependency.version(), dependency.classifier());
+                    // the version closer to the Fabric JSON wins
+                    if (resolved.containsKey(artifact.key()) || isExcluded(artifact, visit.exclusions())) continue;
+                    Set<String> exclusions = new HashSet<>(visit.exclusions());
+                    exclusions.addAll(dependency.exclusions());
+                    Visit child = new Visit(new Library(artifact, visit.library().repository()), exclusions);
+                    // among equally close versions the highest wins
+                    next.merge(
+                            artifact.key(), child, (a, b) -> higher(a.library(), b.library()) == a.library() ? a : b);
+                }
+            }
+            level = new ArrayList<>(next.values());
+            level.forEach(visit -> resolved.put(visit.library().artifact().key(), visit.library()));
+        }
+
+        List<Library> libraries = List.copyOf(resolved.values());
+        status.accept("Resolved " + libraries.size() + " libraries, " + (libraries.size() - declared.size())
+                + " of them transitive dependencies.");
+        // a graph with holes is walked again next time
+        if (complete) writeCache(cacheKey, libraries);
+        return libraries;
+    }
+
+    private static Library higher(Library a, Library b) {
+        return MavenArtifact.compareVersions(b.artifact().version(), a.artifact().version()) > 0 ? b : a;
+    }
+
+    private static boolean isExcluded(MavenArtifact artifact, Set<String> exclusions) {
+        return exclusions.contains(artifact.group() + ":" + artifact.artifact())
+                || exclusions.contains(artifact.group() + ":*")
+                || exclusions.contains("*:*");
+    }
+
+    /**
+     * @return the dependencies of {@code self} that are needed at runtime, with their versions resolved
+     */
+    private List<Dependency> runtimeDependencies(Pom pom, MavenArtifact self) {
+        Map<String, String> properties = new HashMap<>(pom.properties());
+        properties.put("project.groupId", self.group());
+        properties.put("project.artifactId", self.artifact());
+        properties.put("project.version", self.version());
+        properties.put("pom.version", self.version());
+        properties.put("version", self.version());
+
+        Map<String, String> managedVersions = new HashMap<>();
+        for (Dependency managed : pom.managed()) {
+            String version = interpolate(managed.version(), properties);
+            if (version != null) {
+                managedVersions.putIfAbsent(
+                        interpolate(managed.group(), properties) + ":" + interpolate(managed.artifact(), properties),
+                        version);
+            }
+        }
+
+        List<Dependency> dependencies = new ArrayList<>();
+        for (Dependency dependency : pom.dependencies()) {
+            String scope = dependency.scope() != null ? interpolate(dependency.scope(), properties) : "compile";
+            String type = dependency.type() != null ? interpolate(dependency.type(), properties) : "jar";
+            if (!RUNTIME_SCOPES.contains(scope) || !"jar".equals(type)) continue;
+            if ("true".equals(interpolate(dependency.optional(), properties))) continue;
+
+            String group = interpolate(dependency.group(), properties);
+            String artifact = interpolate(dependency.artifact(), properties);
+            String version = dependency.version() != null
+                    ? interpolate(dependency.version(), properties)
+                    : managedVersions.get(group + ":" + artifact);
+            if (group == null || artifact == null || version == null || version.startsWith("[")
+                    || version.startsWith("(")) {
+                // ranges need the repository's metadata, Fabric's libraries do not use them
+                status.accept("Skipping dependency " + dependency.group() + ":" + dependency.artifact() + " of "
+                        + self.coordinates() + ", its version cannot be resolved.");
+                continue;
+            }
+            String classifier =
+                    dependency.classifier() != null ? interpolate(dependency.classifier(), properties) : null;
+            dependencies.add(new Dependency(
+                    group, artifact, version, classifier, scope, type, null, dependency.exclusions()));
+        }
+        return dependencies;
+    }
+
+    /**
+     * @return {@code value} with its {@code ${property}} references replaced, or null if one is unknown
+     */
+    private static String interpolate(String value, Map<String, String> properties) {
+        if (value == null) return null;
+        // properties may refer to other properties
+        for (int i = 0; i < 8 && value.contains("${"); i++) {
+            Matcher matcher = PROPERTY.matcher(value);
+            StringBuilder result = new StringBuilder();
+            while (matcher.find()) {
+                String replacement = properties.get(matcher.group(1));
+                if (replacement == null) return null;
+                matcher.appendReplacement(result, Matcher.quoteReplacement(replacement));
+            }
+            matcher.appendTail(result);
+            value = result.toString();
+        }
+        return value.contains("${") ? null : value.trim();
+    }
+
+    /**
+     * @return the POM of {@code artifact} merged with its parents, fetched once per resolver
+     */
+    private CompletableFuture<Pom> pom(MavenArtifact artifact, String repository, int depth) {
+        MavenArtifact pomArtifact = new MavenArtifact(artifact.group(), artifact.artifact(), artifact.version(), null);
+        CompletableFuture<Pom> result = new CompletableFuture<>();
+        CompletableFuture<Pom> existing = poms.putIfAbsent(pomArtifact.coordinates(), result);
+        if (existing != null) return existing;
+
+        List<String> mirrors = Main.rankedMirrors(repository, Main.METADATA_SIZE_ESTIMATE);
+        fetch(pomArtifact, mirrors, 0)
+                .thenCompose(xml -> {
+                    Element project = parse(xml);
+                    Pom pom = new Pom(
+                            properties(project),
+                            dependencies(child(project, "dependencyManagement"), "dependencies"),
+                            dependencies(project, "dependencies"));
+                    Element parent = child(project, "parent");
+                    if (parent == null || depth >= MAX_PARENT_DEPTH) {
+                        return CompletableFuture.completedFuture(pom);
+                    }
+                    MavenArtifact parentArtifact = new MavenArtifact(
+                            text(parent, "groupId"), text(parent, "artifactId"), text(parent, "version"), null);
+                    return pom(parentArtifact, repository, depth + 1).handle((parentPom, failure) -> {
+                        if (failure != null) {
+                            status.accept("Could not read the parent POM of " + artifact.coordinates()
+                                    + ", some of its dependency versions may be missing.");
+                            return pom;
+                        }
+                        return merge(parentPom, pom);
+                    });
+                })
+                .whenComplete((pom, failure) -> {
+                    if (failure == null) {
+                        result.complete(pom);
+                    } else {
+                        result.completeExceptionally(
+                                failure instanceof CompletionException ? failure.getCause() : failure);
+                    }
+                });
+        return result;
+    }
+
+    private static Pom merge(Pom parent, Pom child) {
+        Map<String, String> properties = new HashMap<>(parent.properties());
+        properties.putAll(child.properties());
+        // the child's managed versions are looked up first
+        List<Dependency> managed = new ArrayList<>(child.managed());
+        managed.addAll(parent.managed());
+        List<Dependency> dependencies = new ArrayList<>(parent.dependencies());
+        dependencies.addAll(child.dependencies());
+        return new Pom(properties, managed, dependencies);
+    }
+
+    private CompletableFuture<String> fetch(MavenArtifact pomArtifact, List<String> mirrors, int index) {
+        String url = pomArtifact.url(mirrors.get(index), "pom");
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create(url)).build();
+        return cancellation
+                .track(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()))
+                .handle((response, failure) -> {
+                    if (failure == null && response.statusCode() == 200) {
+                        return CompletableFuture.completedFuture(response.body());
+                    }
+                    if (index + 1 < mirrors.size() && !cancellation.isCancelled()) {
+                        return fetch(pomArtifact, mirrors, index + 1);
+                    }
+                    return CompletableFuture.<String>failedFuture(
+                            failure != null
+                                    ? failure
+                                    : new IOException("Status " + response.statusCode() + " from " + url));
+                })
+                .thenCompose(result -> result);
+    }
+
+    private static Element parse(String xml) {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            // POMs never need a DTD, and resolving one would be an XXE hole
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            factory.setExpandEntityReferences(false);
+            return factory.newDocumentBuilder()
+                    .parse(new InputSource(new StringReader(xml)))
+                    .getDocumentElement();
+        } catch (ParserConfigurationException | SAXException | IOException e) {
+            throw new IllegalArgumentException("Malformed POM: " + e.getMessage(), e);
+        }
+    }
+
+    private static Map<String, String> properties(Element project) {
+        Map<String, String> properties = new HashMap<>();
+        Element parent = child(project, "parent");
+        String groupId = text(project, "groupId");
+        String version = text(project, "version");
+        if (parent != null) {
+            if (groupId == null) groupId = text(parent, "groupId");
+            if (version == null) version = text(parent, "version");
+            properties.put("project.parent.groupId", text(parent, "groupId"));
+            properties.put("project.parent.version", text(parent, "version"));
+        }
+        if (groupId != null) properties.put("project.groupId", groupId);
+        if (version != null) properties.put("project.version", version);
+        Element declared = child(project, "properties");
+        if (declared != null) {
+            for (Element property : children(declared)) {
+                properties.put(property.getTagName(), property.getTextContent().trim());
+            }
+        }
+        properties.values().removeIf(Objects::isNull);
+        return properties;
+    }
+
+    private static List<Dependency> dependencies(Element parent, String name) {
+        Element dependencies = parent != null ? child(parent, name) : null;
+        if (dependencies == null) return List.of();
+        List<Dependency> result = new ArrayList<>();
+        for (Element dependency : children(dependencies)) {
+            if (!dependency.getTagName().equals("dependency")) continue;
+            Set<String> exclusions = new HashSet<>();
+            Element exclusionsElement = child(dependency, "exclusions");
+            if (exclusionsElement != null) {
+                for (Element exclusion : children(exclusionsElement)) {
+                    exclusions.add(text(exclusion, "groupId") + ":" + text(exclusion, "artifactId"));
+                }
+            }
+            result.add(new Dependency(
+                    text(dependency, "groupId"),
+                    text(dependency, "artifactId"),
+                    text(dependency, "version"),
+                    text(dependency, "classifier"),
+                    text(dependency, "scope"),
+                    text(dependency, "type"),
+                    text(dependency, "optional"),
+                    exclusions));
+        }
+        return result;
+    }
+
+    private static List<Element> children(Element element) {
+        List<Element> children = new ArrayList<>();
+        for (Node node = element.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element child) children.add(child);
+        }
+        return children;
+    }
+
+    private static Element child(Element element, String name) {
+        for (Element child : children(element)) {
+            if (child.getTagName().equals(name)) return child;
+        }
+        return null;
+    }
+
+    private static String text(Element element, String name) {
+        Element child = child(element, name);
+        return child != null ? child.getTextContent().trim() : null;
+    }
+
+    private static String cacheKey(JsonObject fabricJson) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(fabricJson.toString().getBytes(StandardCharsets.UTF_8));
+            digest.update(String.join(",", SECTIONS).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private List<Library> readCache(String cacheKey) {
+        if (cacheDir == null) return null;
+        Path file = cacheDir.resolve(cacheKey + ".json");
+        if (!Files.isRegularFile(file)) return null;
+        try {
+            JsonObject json = Json.parse(Files.readString(file)).asObject();
+            if (json.getInt("version", -1) != CACHE_FORMAT_VERSION) return null;
+            List<Library> libraries = new ArrayList<>();
+            for (JsonValue value : json.get("libraries").asArray()) {
+                JsonObject library = value.asObject();
+                libraries.add(new Library(
+                        MavenArtifact.parse(library.get("name").asString()),
+                        library.get("url").asString()));
+            }
+            return libraries;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring unreadable dependency graph " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeCache(String cacheKey, List<Library> libraries) {
+        if (cacheDir == null) return;
+        JsonArray array = Json.array();
+        for (Library library : libraries) {
+            array.add(Json.object()
+                    .add("name", library.artifact().coordinates())
+                    .add("url", library.repository()));
+        }
+        JsonObject json = Json.object().add("version", CACHE_FORMAT_VERSION).add("libraries", array);
+        try {
+            Files.createDirectories(cacheDir);
+            Path tempFile = Files.createTempFile(cacheDir, cacheKey, ".tmp");
+            try {
+                Files.writeString(tempFile, json.toString());
+                Files.move(
+                        tempFile,
+                        cacheDir.resolve(cacheKey + ".json"),
+                        StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not cache the dependency graph: " + e.getMessage());
+        }
+    }
+}
@@ -19,25 +19,32 @@ import com.eclipsesource.json.Json;
 import com.eclipsesource.json.JsonArray;
 import com.eclipsesource.json.JsonObject;
 import com.eclipsesource.json.JsonValue;
-import java.awt.*;
-import java.awt.datatransfer.StringSelection;
 import java.io.*;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
+import java.time.Duration;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
 import java.util.stream.Stream;
-import javax.swing.*;
-import javax.swing.border.EmptyBorder;
+import java.util.zip.ZipFile;
 import org.jetbrains.annotations.VisibleForTesting;
 
 public class Main {
@@ -65,7 +72,25 @@ public class Main {
 
     public static final String SILK_LOADER_FIXED_JAR_NAME = "silk-loader.jar";
 
+    // sizes mirrors are ranked for when the actual size is not known yet
+    static final long METADATA_SIZE_ESTIMATE = 16 * 1024;
+    static final long JAR_SIZE_ESTIMATE = 512 * 1024;
+    // --help must not hang while offline, an installation can wait for its versions a bit longer
+    private static final Duration HELP_LOOKUP_DEADLINE = Duration.ofSeconds(3);
+    private static final Duration INSTALL_LOOKUP_DEADLINE = Duration.ofSeconds(30);
+
     private static HttpClient httpClient;
+    private static volatile GitHubReleases gitHubReleases;
+    private static volatile ArtifactPrefetcher prefetcher;
+    // created on first use, commands that download nothing do not need them
+    private static volatile MirrorStats mirrorStats;
+    private static volatile SharedDownloads sharedDownloads;
+    // set when the user configured the order of the mavens, which then wins over the mirror statistics
+    private static boolean mirrorOrderFixed;
+    // set when downloads are throttled, which makes them no measure of how fast a mirror is
+    private static volatile boolean bandwidthLimited;
+    // where GitHub answers are cached, only changed so test runs stay out of the user's cache
+    private static Path gitHubCacheDir = GitHubReleases.defaultCacheDir();
 
     // only so testing is easier
     static {
@@ -74,79 +99,227 @@ public class Main {
 
     public static void setHttpClient(HttpClient client) {
         Main.httpClient = client;
+        Main.gitHubReleases = new GitHubReleases(
+                client,
+                SILK_LOADER_RELEASES_URL,
+                gitHubCacheDir,
+                GitHubReleases.tokenFromEnvironment());
+    }
+
+    /**
+     * @param cacheDir where GitHub answers are cached from now on, or null to not cache them
+     */
+    @VisibleForTesting
+    static void setGitHubCacheDir(Path cacheDir) {
+        gitHubCacheDir = cacheDir;
+        setHttpClient(httpClient);
+    }
+
+    static HttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    static GitHubReleases getGitHubReleases() {
+        return gitHubReleases;
+    }
+
+    private static MirrorStats mirrorStats() {
+        MirrorStats stats = mirrorStats;
+        if (stats != null) return stats;
+        synchronized (Main.class) {
+            if (mirrorStats == null) {
+                stats = MirrorStats.load(MirrorStats.defaultFile());
+                stats.setThroughputLimited(bandwidthLimited);
+                mirrorStats = stats;
+            }
+            return mirrorStats;
+        }
     }
 
-    public static void main(String[] args)
-            throws UnsupportedLookAndFeelException, ClassNotFoundException, InstantiationException,
-                    IllegalAccessException {
-        UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
+    private static SharedDownloads sharedDownloads() {
+        SharedDownloads downloads = sharedDownloads;
+        if (downloads != null) return downloads;
+        synchronized (Main.class) {
+            if (sharedDownloads == null) {
+                sharedDownloads = new SharedDownloads(SharedDownloads.defaultCacheDir());
+            }
+            return sharedDownloads;
+        }
+    }
+
+    @VisibleForTesting
+    static void setMirrorStats(MirrorStats mirrorStats) {
+        mirrorStats.setThroughputLimited(bandwidthLimited);
+        Main.mirrorStats = mirrorStats;
+    }
+
+    @VisibleForTesting
+    static void setSharedDownloads(SharedDownloads sharedDownloads) {
+        Main.sharedDownloads = sharedDownloads;
+    }
+
+    /**
+     * Applies the user's repository configuration to all following downloads.
+     */
+    static void configureRepositories(RepositoryConfig config) {
+        if (!config.mavens().isEmpty()) {
+            FABRIC_MAVENS = config.mavens();
+            mirrorOrderFixed = true;
+        }
+        if (!config.isDefault()) {
+            setHttpClient(config.createHttpClient());
+        }
+        bandwidthLimited = config.maxRate() > 0;
+        MirrorStats stats = mirrorStats;
+        if (stats != null) stats.setThroughputLimited(bandwidthLimited);
+    }
+
+    /**
+     * @return {@code repository} and the Fabric mavens, which mirror each other, fastest expected first. Configured
+     * mavens come first in their configured order instead.
+     */
+    static List<String> rankedMirrors(String repository, long expectedBytes) {
+        String ownRepository = repository.endsWith("/") ? repository : repository + "/";
+        Set<String> mirrors = new LinkedHashSet<>();
+        if (mirrorOrderFixed) {
+            mirrors.addAll(FABRIC_MAVENS);
+            mirrors.add(ownRepository);
+            return List.copyOf(mirrors);
+        }
+        mirrors.add(ownRepository);
+        mirrors.addAll(FABRIC_MAVENS);
+        return mirrorStats().rank(mirrors, expectedBytes);
+    }
+
+    private static void saveMirrorStats() {
+        MirrorStats stats = mirrorStats;
+        // nothing was downloaded, so there is nothing new to save
+        if (stats == null) return;
+        try {
+            stats.save();
+        } catch (IOException e) {
+            System.err.println("Could not save mirror statistics: " + e.getMessage());
+        }
+    }
+
+    private static void pruneSharedDownloads() {
+        SharedDownloads downloads = sharedDownloads;
+        // nothing was downloaded, so nothing was added to the cache
+        if (downloads != null) downloads.prune();
+    }
+
+    /**
+     * Lets installations copy files from {@code prefetcher} instead of downloading them, pass null to stop.
+     */
+    public static void setPrefetcher(ArtifactPrefetcher prefetcher) {
+        Main.prefetcher = prefetcher;
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = args.length == 0 ? Map.of() : CommandLine.parse(args).options();
+        try {
+            configureRepositories(RepositoryConfig.load(options));
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Invalid repository configuration: " + e.getMessage());
+            if (args.length > 0) System.exit(1);
+        }
 
         if (args.length == 0) {
             System.out.println("Run with --help for cli usage.");
-            SwingUtilities.invokeLater(() -> {
-                InstallerWindow window = new InstallerWindow();
-                window.setVisible(true);
-            });
+            // the only place that reaches AWT and Swing, commands must not pay for loading them
+            InstallerWindow.launch();
         } else {
             handleCommandLineArgs(args);
         }
     }
 
     private static void handleCommandLineArgs(String[] args) {
-        switch (args[0]) {
+        CommandLine commandLine = CommandLine.parse(args);
+        List<String> arguments = commandLine.arguments();
+        switch (commandLine.command()) {
             case "--help" -> printHelp();
             case "install" -> {
-                if (args.length < 3 || args.length > 4) {
-                    System.err.println("Usage: install <silk-release-tag> <fabric-loader-version> [game-path]");
-                    return;
-                }
-                String silkReleaseTag = args[1];
-                String fabricVersion = args[2];
-                Path gamePath = null;
-                if (args.length == 4) {
-                    gamePath = Paths.get(args[3]);
-                } else {
-                    System.out.println("Game path not provided. Attempting to find Equilinox installation...");
+                if (commandLine.hasOption("locked")) {
+                    if (arguments.size() > 1) {
+                        System.err.println(
+                                "Usage: install --locked[=<lock-file>] [game-path] [--packed] [--warm [--cds]]");
+                        return;
+                    }
+                    Path gamePath = resolveGamePath(commandLine, 0, "installation");
+                    String lockOption = commandLine.option("locked");
+                    Path lockFile =
+                            lockOption.isEmpty() ? gamePath.resolve(InstallLock.FILE_NAME) : Path.of(lockOption);
+
                     try {
-                        String stringGamePath = EquilinoxGameFinder.tryFindGame();
-                        if (stringGamePath == null) {
-                            System.err.println(
-                                    "Could not automatically find Equilinox installation. Please specify the game path manually for uninstallation.");
+                        InstallLock lock = InstallLock.read(lockFile);
+                        // the lock pins the transitive dependencies as well, there is nothing left to resolve
+                        InstallOptions options = new InstallOptions(commandLine.hasOption("packed"), false);
+                        if (!installInterruptibly(
+                                cancellation -> installLocked(lock, gamePath, options, null, cancellation))) {
                             System.exit(1);
+                        } else if (commandLine.hasOption("warm")) {
+                            GameWarmup.run(
+                                    gamePath,
+                                    List.of(),
+                                    GameWarmup.DEFAULT_TIMEOUT,
+                                    commandLine.hasOption("cds"),
+                                    null);
                         }
-                        gamePath = Path.of(stringGamePath);
-                        System.out.println("Found Equilinox at: " + gamePath);
                     } catch (Exception e) {
-                        System.err.println("Error while searching for game path: " + e.getMessage());
+                        System.err.println("Installation failed: " + e.getMessage());
                         e.printStackTrace(System.err);
                         System.exit(1);
                     }
+                    break;
                 }
+                if (arguments.size() < 2 || arguments.size() > 3) {
+                    System.err.println(
+                            "Usage: install <silk-release-tag> <fabric-loader-version> [game-path] [--packed] [--transitive] [--warm [--cds]] [--plan]");
+                    return;
+                }
+                String requestedSilkTag = arguments.get(0);
+                String fabricVersion = arguments.get(1);
+                Path gamePath = resolveGamePath(commandLine, 2, "installation");
 
                 try {
-                    HttpRequest request = HttpRequest.newBuilder()
-                            .uri(URI.create(FABRIC_LOADER_VERSIONS_URL))
-                            .build();
-                    HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-                    if (response.statusCode() == 200) {
-                        // very unoptimized
-                        JsonArray versions = Json.parse(response.body()).asArray();
-                        if (!versions.isEmpty()) {
-                            Path finalGamePath = gamePath;
-                            versions.stream()
-                                    .filter(JsonValue::isObject)
-                                    .map(JsonValue::asObject)
-                                    .filter(o -> o.contains("version"))
-                                    .filter(o -> fabricVersion.equals(
-                                            o.get("version").asString()))
-                                    .findFirst()
-                                    .ifPresentOrElse(
-                                            (obj) -> install(
-                                                    obj.get("maven").asString(), silkReleaseTag, finalGamePath, null),
-                                            () -> System.out.println(
-                                                    "Could not find version '" + fabricVersion + "'."));
-                        }
+                    boolean wantsLatest = requestedSilkTag.equals("latest")
+                            || fabricVersion.equals("latest")
+                            || fabricVersion.equals("stable");
+                    LatestVersions.Versions latest =
+                            wantsLatest ? latestVersions().resolve(INSTALL_LOOKUP_DEADLINE) : null;
+                    String silkReleaseTag =
+                            requestedSilkTag.equals("latest") ? latest.silkLoader() : requestedSilkTag;
+                    if (silkReleaseTag == null) {
+                        System.out.println("Could not find the latest Silk Loader version.");
+                        return;
+                    }
+                    LatestVersions.FabricLoader latestFabricLoader = latest == null
+                            ? null
+                            : switch (fabricVersion) {
+                                case "latest" -> latest.fabricLoader();
+                                case "stable" -> latest.stableFabricLoader();
+                                default -> null;
+                            };
+                    // the latest versions come with their coordinates, the whole version list is not needed then
+                    Optional<String> fabricMaven = latestFabricLoader != null
+                            ? Optional.of(latestFabricLoader.maven())
+                            : findFabricMaven(fetchFabricLoaderVersions(), fabricVersion);
+                    if (fabricMaven.isEmpty()) {
+                        System.out.println("Could not find version '" + fabricVersion + "'.");
+                    } else if (commandLine.hasOption("plan")) {
+                        printInstallPlan(
+                                fabricMaven.get(), silkReleaseTag, gamePath, commandLine.hasOption("transitive"));
+                    } else if (!installInterruptibly(cancellation -> install(
+                            fabricMaven.get(),
+                            silkReleaseTag,
+                            gamePath,
+                            new InstallOptions(commandLine.hasOption("packed"), commandLine.hasOption("transitive")),
+                            null,
+                            cancellation))) {
+                        System.exit(1);
+                    } else if (commandLine.hasOption("warm")) {
+                        GameWarmup.run(
+                                gamePath, List.of(), GameWarmup.DEFAULT_TIMEOUT, commandLine.hasOption("cds"), null);
                     }
                 } catch (Exception e) {
                     System.err.println("Installation failed: " + e.getMessage());
@@ -155,36 +328,89 @@ public class Main {
                 }
             }
             case "uninstall" -> {
-                if (args.length > 2) {
+                if (arguments.size() > 1) {
                     System.err.println("Usage: uninstall [game-path]");
                     return;
                 }
-                Path gamePath = null;
-                if (args.length == 2) {
-                    gamePath = Paths.get(args[1]);
-                } else {
-                    System.out.println(
-                            "Game path not provided. Attempting to find Equilinox installation for uninstallation...");
-                    try {
-                        String stringGamePath = EquilinoxGameFinder.tryFindGame();
-                        if (stringGamePath == null) {
-                            System.err.println(
-                                    "Could not automatically find Equilinox installation. Please specify the game path manually for uninstallation.");
-                            System.exit(1);
-                        }
-                        gamePath = Path.of(stringGamePath);
-                        System.out.println("Found Equilinox at: " + gamePath);
-                    } catch (Exception e) {
-                        System.err.println("Error while searching for game path: " + e.getMessage());
-                        e.printStackTrace(System.err);
+                Path gamePath = resolveGamePath(commandLine, 0, "uninstallation");
+
+                try {
+                    uninstall(gamePath, null, false);
+                } catch (Exception e) {
+                    System.err.println("Uninstallation failed: " + e.getMessage());
+                    e.printStackTrace(System.err);
+                    System.exit(1);
+                }
+            }
+            case "verify" -> {
+                if (arguments.size() > 1) {
+                    System.err.println("Usage: verify [game-path]");
+                    return;
+                }
+                Path gamePath = resolveGamePath(commandLine, 0, "verification");
+
+                try {
+                    if (!verifyInstallation(gamePath, null).isEmpty()) {
                         System.exit(1);
                     }
+                } catch (Exception e) {
+                    System.err.println("Verification failed: " + e.getMessage());
+                    e.printStackTrace(System.err);
+                    System.exit(1);
+                }
+            }
+            case "serve" -> {
+                try {
+                    int port = commandLine.hasOption("port")
+                            ? Integer.parseInt(commandLine.option("port"))
+                            : InstallerDaemon.DEFAULT_PORT;
+                    InstallerDaemon daemon = InstallerDaemon.start(port);
+                    System.out.println("Installer daemon listening on " + daemon.url() + ", POST /shutdown to stop it.");
+                    daemon.awaitShutdown();
+                } catch (Exception e) {
+                    System.err.println("Daemon failed: " + e.getMessage());
+                    e.printStackTrace(System.err);
+                    System.exit(1);
+                }
+            }
+            case "switch" -> {
+                if (arguments.size() > 3 || (arguments.size() == 1 && !Files.isDirectory(Path.of(arguments.get(0))))) {
+                    System.err.println("Usage: switch [<silk-release-tag> <fabric-loader-version>] [game-path]");
+                    return;
                 }
+                boolean list = arguments.size() < 2;
+                Path gamePath = resolveGamePath(commandLine, list ? 0 : 2, "version switch");
 
                 try {
-                    uninstall(gamePath, null, false);
+                    if (list) {
+                        printStoredVersions(gamePath);
+                    } else if (!switchVersion(gamePath, arguments.get(0), arguments.get(1), null)) {
+                        printStoredVersions(gamePath);
+                        System.exit(1);
+                    }
                 } catch (Exception e) {
-                    System.err.println("Uninstallation failed: " + e.getMessage());
+                    System.err.println("Switching versions failed: " + e.getMessage());
+                    e.printStackTrace(System.err);
+                    System.exit(1);
+                }
+            }
+            case "warm" -> {
+                if (arguments.size() > 1) {
+                    System.err.println("Usage: warm [game-path] [--timeout=<seconds>] [--cds] [-- <game command>]");
+                    return;
+                }
+                Path gamePath = resolveGamePath(commandLine, 0, "warm-up");
+
+                try {
+                    Duration timeout = commandLine.hasOption("timeout")
+                            ? Duration.ofSeconds(Long.parseLong(commandLine.option("timeout")))
+                            : GameWarmup.DEFAULT_TIMEOUT;
+                    if (!GameWarmup.run(
+                            gamePath, commandLine.trailing(), timeout, commandLine.hasOption("cds"), null)) {
+                        System.exit(1);
+                    }
+                } catch (Exception e) {
+                    System.err.println("Warm-up failed: " + e.getMessage());
                     e.printStackTrace(System.err);
                     System.exit(1);
                 }
@@ -194,262 +420,638 @@ public class Main {
                 System.exit(1);
             }
         }
+        DirectoryDeleter.awaitPendingDeletions();
+    }
+
+    /**
+     * Runs a command line installation that is cancelled and rolled back if the installer is interrupted, e.g. with
+     * Ctrl+C, instead of leaving a half-written staging directory behind.
+     */
+    private static boolean installInterruptibly(Predicate<CancellationToken> installation) {
+        CancellationToken cancellation = new CancellationToken();
+        CountDownLatch finished = new CountDownLatch(1);
+        Thread interruptHook = new Thread(
+                () -> {
+                    System.err.println("Interrupted, cancelling the installation...");
+                    cancellation.cancel();
+                    try {
+                        // keeps the JVM alive until the installation has rolled back
+                        finished.await(30, TimeUnit.SECONDS);
+                    } catch (InterruptedException ignored) {
+                    }
+                },
+                "silk-installer-interrupt");
+        Runtime.getRuntime().addShutdownHook(interruptHook);
+        try {
+            return installation.test(cancellation);
+        } finally {
+            finished.countDown();
+            try {
+                Runtime.getRuntime().removeShutdownHook(interruptHook);
+            } catch (IllegalStateException ignored) {
+                // the JVM is already shutting down
+            }
+        }
+    }
+
+    /**
+     * Returns the game path given at {@code index}, or searches for the game if it was omitted. With
+     * {@code --deep-search}, whole directory trees are searched if the usual places do not contain the game. Exits if
+     * the game cannot be found.
+     */
+    private static Path resolveGamePath(CommandLine commandLine, int index, String purpose) {
+        List<String> arguments = commandLine.arguments();
+        if (arguments.size() > index) {
+            return Paths.get(arguments.get(index));
+        }
+        System.out.println("Game path not provided. Attempting to find Equilinox installation for " + purpose + "...");
+        try {
+            String stringGamePath = EquilinoxGameFinder.tryFindGame();
+            if (stringGamePath == null && commandLine.hasOption("deep-search")) {
+                stringGamePath = deepSearch(commandLine);
+            }
+            if (stringGamePath == null) {
+                System.err.println("Could not automatically find Equilinox installation. Please specify the game path"
+                        + " manually for " + purpose
+                        + (commandLine.hasOption("deep-search") ? "." : " or use --deep-search."));
+                System.exit(1);
+            }
+            Path gamePath = Path.of(stringGamePath);
+            System.out.println("Found Equilinox at: " + gamePath);
+            return gamePath;
+        } catch (Exception e) {
+            System.err.println("Error while searching for game path: " + e.getMessage());
+            e.printStackTrace(System.err);
+            System.exit(1);
+            return null;
+        }
+    }
+
+    private static String deepSearch(CommandLine commandLine) throws InterruptedException {
+        String rootsOption = commandLine.option("deep-search");
+        List<Path> roots = rootsOption.isEmpty()
+                ? GameCrawler.defaultRoots()
+                : Arrays.stream(rootsOption.split(",")).map(Path::of).toList();
+        String depthOption = commandLine.option("search-depth");
+        int maxDepth = depthOption == null ? GameCrawler.DEFAULT_MAX_DEPTH : Integer.parseInt(depthOption);
+        System.out.println("Searching " + roots + " for Equilinox, this may take a while...");
+        AtomicReference<Path> found = new AtomicReference<>();
+        new GameCrawler(maxDepth, GameCrawler.DEFAULT_DIRECTORY_TIMEOUT, new CancellationToken())
+                .crawl(roots, gamePath -> {
+                    found.set(gamePath);
+                    return false;
+                });
+        return found.get() != null ? found.get().toString() : null;
+    }
+
+    /**
+     * A command followed by positional arguments and {@code --name} or {@code --name=value} options, in any order.
+     * Everything after a lone {@code --} is passed through untouched.
+     */
+    private record CommandLine(
+            String command, List<String> arguments, Map<String, String> options, List<String> trailing) {
+        static CommandLine parse(String[] args) {
+            List<String> arguments = new ArrayList<>();
+            Map<String, String> options = new HashMap<>();
+            List<String> trailing = new ArrayList<>();
+            for (int i = 1; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("--")) {
+                    trailing.addAll(Arrays.asList(args).subList(i + 1, args.length));
+                    break;
+                } else if (arg.startsWith("--")) {
+                    int equals = arg.indexOf('=');
+                    if (equals < 0) {
+                        options.put(arg.substring(2), "");
+                    } else {
+                        options.put(arg.substring(2, equals), arg.substring(equals + 1));
+                    }
+                } else {
+                    arguments.add(arg);
+                }
+            }
+            return new CommandLine(args[0], arguments, options, trailing);
+        }
+
+        boolean hasOption(String name) {
+            return options.containsKey(name);
+        }
+
+        String option(String name) {
+            return options.get(name);
+        }
+    }
+
+    /**
+     * The jar attached to a Silk Loader release.
+     *
+     * @param sha256 the digest GitHub publishes for newer uploads, or null
+     */
+    record SilkJarAsset(String name, String url, String sha256) {
+        static SilkJarAsset find(JsonObject releaseJson, String silkReleaseTag) throws IOException {
+            JsonValue assets = releaseJson.get("assets");
+            if (assets == null || !assets.isArray()) {
+                throw new IOException("No assets found in Silk Loader release " + silkReleaseTag);
+            }
+            for (JsonValue value : assets.asArray()) {
+                JsonObject asset = value.asObject();
+                String name = asset.get("name").asString();
+                if (name.toLowerCase().endsWith(".jar")) {
+                    String url = asset.getString("browser_download_url", "");
+                    if (url.isEmpty()) break;
+                    String digest = asset.getString("digest", "");
+                    return new SilkJarAsset(
+                            name, url, digest.startsWith("sha256:") ? digest.substring("sha256:".length()) : null);
+                }
+            }
+            throw new IOException("No JAR file download URL found in Silk Loader release " + silkReleaseTag);
+        }
     }
 
     private static void printHelp() {
         System.out.println("Silk Loader Installer Command Line Usage:");
         System.out.println("  --help                          Show this help message.");
-        System.out.println("  install <silk-release-tag> <fabric-loader-version> [game-path]");
+        System.out.println(
+                "  install <silk-release-tag> <fabric-loader-version> [game-path] [--packed] [--transitive] [--warm [--cds]] [--plan]");
         System.out.println("                                  Install Silk Loader and Fabric Loader.");
-        System.out.println("                                  <silk-release-tag> e.g., v1.0.0");
-        System.out.println("                                  <fabric-loader-version> e.g., 0.15.7");
+        System.out.println("                                  <silk-release-tag> e.g., v1.0.0, or latest");
+        System.out.println("                                  <fabric-loader-version> e.g., 0.15.7, latest or stable");
         System.out.println(
                 "                                  [game-path] Optional. e.g., /path/to/Equilinox. If omitted, the installer will try to find it automatically.");
+        System.out.println(
+                "                                  --packed Merge all libraries into one jar for faster class loading.");
+        System.out.println(
+                "                                  --transitive Also install dependencies Fabric does not list, from their POMs.");
+        System.out.println(
+                "                                  --warm Launch the game once afterwards to build Fabric's cache.");
+        System.out.println(
+                "                                  --plan Only print the downloads with their sizes and estimated time.");
+        System.out.println("  install --locked[=<lock-file>] [game-path] [--packed] [--warm [--cds]]");
+        System.out.println(
+                "                                  Reinstall exactly the files pinned by an earlier install, skipping");
+        System.out.println(
+                "                                  all version lookups. Defaults to silk-installer.lock in the game path.");
         System.out.println("  uninstall [game-path]           Uninstall Silk Loader and Fabric Loader.");
         System.out.println(
                 "                                  [game-path] Optional. e.g., /path/to/Equilinox. If omitted, the installer will try to find it automatically.");
+        System.out.println("  verify [game-path]              Check the installed files against the lock file.");
+        System.out.println("  serve [--port=<port>]           Keep running and accept installations over a local HTTP/JSON");
+        System.out.println("                                  API on 127.0.0.1, port " + InstallerDaemon.DEFAULT_PORT
+                + " by default.");
+        System.out.println("  switch [<silk-release-tag> <fabric-loader-version>] [game-path]");
+        System.out.println(
+                "                                  Activate a version installed before, without downloading anything.");
+        System.out.println(
+                "                                  Without versions, lists the installed ones. Every install is kept.");
+        System.out.println("  warm [game-path] [--timeout=<seconds>] [--cds] [-- <game command>]");
+        System.out.println("                                  Launch the modded game until Fabric's cache is built.");
+        System.out.println(
+                "                                  --cds Also record a class data sharing archive for faster startups.");
+        System.out.println(
+                "                                  <game command> Optional. Defaults to java -jar with the Equilinox jar.");
+        System.out.println("\nGame search options (any command without a game path):");
+        System.out.println("  --deep-search[=<dir>[,<dir>...]] If the game is not in a Steam library, search these directories,");
+        System.out.println("                                  by default the home directory and every drive.");
+        System.out.println("  --search-depth=<levels>         How deep --deep-search descends, default "
+                + GameCrawler.DEFAULT_MAX_DEPTH + ".");
+        System.out.println("\nRepository options (any command, also read from ~/.silk-installer/"
+                + RepositoryConfig.FILE_NAME + " and SILK_INSTALLER_* variables):");
+        System.out.println("  --mavens=<url>[,<url>...]       Fabric mavens to try in this order, e.g. a LAN mirror.");
+        System.out.println("  --rewrite=<prefix>=<url>[,...]  Fetch URLs starting with <prefix> from <url> first.");
+        System.out.println("  --silk-releases-url=<url>       Silk Loader releases API to use before GitHub's.");
+        System.out.println("  --fabric-meta-url=<url>         Fabric meta server to use before meta.fabricmc.net.");
+        System.out.println("  --proxy=<host>:<port>           Send all requests through this HTTP proxy.");
+        System.out.println("  --max-rate=<bytes/s>            Limit all downloads together, e.g. 500k or 2M. Metadata goes");
+        System.out.println("                                  first, concurrent downloads share the rest evenly.");
+        System.out.println("  --repositories=<file>           Read the repository configuration from <file>.");
+        System.out.println("  GITHUB_TOKEN=<token>            Authenticate with GitHub, which raises its rate limit.");
         System.out.println("\nVersion Information:");
 
         String packageVersion = Main.class.getPackage().getImplementationVersion();
         System.out.println("  Installer Version: " + (packageVersion != null ? packageVersion : "Unknown"));
 
         try {
-            String latestSilkLoader = getLatestSilkLoaderVersion();
-            System.out.println("  Latest Silk Loader: " + (latestSilkLoader != null ? latestSilkLoader : "N/A"));
-        } catch (IOException | InterruptedException e) {
-            System.err.println("  Could not fetch latest Silk Loader version: " + e.getMessage());
-        }
-
-        try {
-            String latestFabricLoader = getLatestFabricLoaderVersion();
-            System.out.println("  Latest Fabric Loader: " + (latestFabricLoader != null ? latestFabricLoader : "N/A"));
-        } catch (IOException | InterruptedException e) {
-            System.err.println("  Could not fetch latest Fabric Loader version: " + e.getMessage());
+            LatestVersions.Versions latest = latestVersions().resolve(HELP_LOOKUP_DEADLINE);
+            System.out.println("  Latest Silk Loader: " + Objects.requireNonNullElse(latest.silkLoader(), "N/A"));
+            System.out.println("  Latest Fabric Loader: "
+                    + (latest.fabricLoader() != null ? latest.fabricLoader().version() : "N/A"));
+            System.out.println("  Latest stable Fabric Loader: "
+                    + (latest.stableFabricLoader() != null ? latest.stableFabricLoader().version() : "N/A"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
-    private static String getLatestSilkLoaderVersion() throws IOException, InterruptedException {
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(Main.SILK_LOADER_RELEASES_URL))
-                .header("Accept", "application/vnd.github.v3+json")
-                .build();
-        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-        if (response.statusCode() == 200) {
-            JsonArray releases = Json.parse(response.body()).asArray();
-            if (!releases.isEmpty()) {
-                JsonObject latestRelease = releases.get(0).asObject();
-                return latestRelease.get("tag_name").asString();
-            }
-        }
-        return null;
+    static LatestVersions latestVersions() {
+        return new LatestVersions(httpClient, gitHubReleases, LatestVersions.defaultFile());
     }
 
-    private static String getLatestFabricLoaderVersion() throws IOException, InterruptedException {
+    /**
+     * @return every Fabric Loader version Fabric's meta server knows, newest first
+     */
+    static JsonArray fetchFabricLoaderVersions() throws IOException, InterruptedException {
         HttpRequest request = HttpRequest.newBuilder()
                 .uri(URI.create(FABRIC_LOADER_VERSIONS_URL))
                 .build();
         HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-        if (response.statusCode() == 200) {
-            JsonArray versions = Json.parse(response.body()).asArray();
-            if (!versions.isEmpty()) {
-                JsonObject latestLoader = versions.get(0).asObject();
-                return latestLoader.get("version").asString();
-            }
+        if (response.statusCode() != 200) {
+            throw new IOException("Failed to fetch Fabric Loader versions. Status: " + response.statusCode());
         }
-        return null;
+        return Json.parse(response.body()).asArray();
+    }
+
+    /**
+     * @return the Maven coordinates of {@code fabricVersion}
+     */
+    static Optional<String> findFabricMaven(JsonArray versions, String fabricVersion) {
+        return versions.values().stream()
+                .filter(JsonValue::isObject)
+                .map(JsonValue::asObject)
+                .filter(o -> o.contains("version") && o.contains("maven"))
+                .filter(o -> fabricVersion.equals(o.get("version").asString()))
+                .map(o -> o.get("maven").asString())
+                .findFirst();
     }
 
     @VisibleForTesting
-    static void updateStatus(JLabel statusLabel, String message) {
+    static void updateStatus(StatusListener status, String message) {
         System.out.println(message);
-        if (statusLabel != null) {
-            SwingUtilities.invokeLater(() -> statusLabel.setText(message));
+        if (status != null) {
+            status.status(message);
         }
     }
 
-    @VisibleForTesting
-    static void downloadFile(String url, Path outputPath, String fileDescription, JLabel statusLabel)
+    /**
+     * Downloads {@code url} to {@code target}, recording how fast the mirror was.
+     */
+    private static void transfer(String url, Path target, String fileDescription, CancellationToken cancellation)
             throws IOException, InterruptedException {
-        updateStatus(statusLabel, "Downloading " + fileDescription + "...");
         HttpRequest request = HttpRequest.newBuilder().uri(URI.create(url)).build();
-
-        Path tempFile = Files.createTempFile(
-                outputPath.getParent(), outputPath.getFileName().toString(), ".tmp");
+        MirrorStats.Sample sample = mirrorStats().start(url);
         try {
-            HttpResponse<Path> response = httpClient.send(request, HttpResponse.BodyHandlers.ofFile(tempFile));
-            if (response.statusCode() == 200) {
-                Files.move(tempFile, outputPath, StandardCopyOption.REPLACE_EXISTING);
-                updateStatus(statusLabel, fileDescription + " downloaded successfully.");
-            } else {
+            HttpResponse<Path> response = cancellation.await(
+                    httpClient.sendAsync(request, sample.timing(HttpResponse.BodyHandlers.ofFile(target))));
+            if (response.statusCode() != 200) {
                 throw new IOException("Failed to download " + fileDescription + ". Status: " + response.statusCode()
                         + " from " + url);
             }
-        } finally {
-            Files.deleteIfExists(tempFile);
+            sample.succeeded(Files.size(target));
+        } catch (IOException e) {
+            sample.failed();
+            throw e;
         }
     }
 
+    /**
+     * Downloads a jar, copying the entries that did not change from {@code previousJar} instead of downloading them
+     * again if the server supports range requests.
+     *
+     * @param previousJar    an installed older version of the jar, or null. It is only used if {@code expectedSha256}
+     *                       is known, since a jar rebuilt from a delta must be checked as a whole.
+     * @param expectedSha256 the SHA-256 of the jar, or null if unknown
+     */
     @VisibleForTesting
-    static void deleteDirectoryRecursively(Path path, JLabel statusLabel) throws IOException {
-        if (Files.exists(path) && Files.isDirectory(path)) {
-            updateStatus(statusLabel, "Deleting directory: " + path);
-            try (Stream<Path> walk = Files.walk(path)) {
-                walk.sorted(Comparator.reverseOrder()).forEach((p) -> {
+    static void downloadJar(
+            String url,
+            Path outputPath,
+            Path previousJar,
+            String expectedSha256,
+            String fileDescription,
+            StatusListener status,
+            CancellationToken cancellation)
+            throws IOException, InterruptedException {
+        if (copyPrefetched(url, outputPath, expectedSha256)) {
+            updateStatus(status, fileDescription + " was already prefetched.");
+            return;
+        }
+        Path deltaBase = expectedSha256 != null ? previousJar : null;
+        if (previousJar != null && deltaBase == null) {
+            updateStatus(status, "No SHA-256 is published for " + fileDescription + ", downloading it in full.");
+        }
+        updateStatus(status, "Downloading " + fileDescription + "...");
+        JarDeltaUpdater.Result[] result = new JarDeltaUpdater.Result[1];
+        SharedDownloads.Entry download = sharedDownloads().fetch(
+                url,
+                expectedSha256,
+                Main::checkJar,
+                target -> {
+                    // a delta is many small requests, it only tells whether the mirror works, not how fast it is
+                    MirrorStats.Sample sample = mirrorStats().start(url);
                     try {
-                        Files.delete(p);
+                        result[0] = JarDeltaUpdater.download(
+                                httpClient, cancellation, url, target, deltaBase, expectedSha256);
                     } catch (IOException e) {
-                        updateStatus(statusLabel, "Failed to delete: " + p);
-                        e.printStackTrace(System.err);
+                        sample.failed();
+                        throw e;
                     }
-                });
+                    sample.succeeded(result[0].bytesDownloaded());
+                    return url;
+                },
+                status,
+                cancellation);
+        download.copyTo(outputPath);
+        if (download.reused()) {
+            updateStatus(status, fileDescription + " was reused.");
+        } else if (result[0].isDelta()) {
+            updateStatus(
+                    status,
+                    fileDescription + " updated from the installed version, downloaded "
+                            + result[0].bytesDownloaded() / 1024 + " KiB and reused " + result[0].bytesReused() / 1024
+                            + " KiB.");
+        } else {
+            updateStatus(status, fileDescription + " downloaded successfully.");
+        }
+    }
+
+    /**
+     * Checks that {@code jar} is a readable zip file, which catches truncated downloads and error pages that were
+     * served with a success status.
+     */
+    private static void checkJar(Path jar) throws IOException {
+        try {
+            // opening reads the central directory, which is at the very end of the file
+            new ZipFile(jar.toFile()).close();
+        } catch (IOException e) {
+            throw new IOException("Downloaded file is not a valid jar", e);
+        }
+    }
+
+    /**
+     * @return true if {@code url} was prefetched and copied to {@code outputPath}
+     */
+    private static boolean copyPrefetched(String url, Path outputPath, String expectedSha256) {
+        ArtifactPrefetcher currentPrefetcher = prefetcher;
+        Path prefetched = currentPrefetcher != null ? currentPrefetcher.lookup(url) : null;
+        if (prefetched == null) return false;
+        try {
+            if (expectedSha256 != null && !InstallFingerprint.sha256(prefetched).equalsIgnoreCase(expectedSha256)) {
+                return false;
+            }
+            Files.copy(prefetched, outputPath, StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } catch (IOException e) {
+            // the prefetch was discarded in the meantime, download it after all
+            return false;
+        }
+    }
+
+    /**
+     * @return the prefetched response body for {@code url}, or null if it was not prefetched
+     */
+    private static String readPrefetched(String url) {
+        ArtifactPrefetcher currentPrefetcher = prefetcher;
+        Path prefetched = currentPrefetcher != null ? currentPrefetcher.lookup(url) : null;
+        if (prefetched == null) return null;
+        try {
+            return Files.readString(prefetched);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Downloads the jar of {@code artifact} from the first of {@code mirrors} that has it.
+     *
+     * @return the URL it was downloaded from
+     */
+    private static String downloadFromMirrors(
+            List<String> mirrors,
+            MavenArtifact artifact,
+            Path outputPath,
+            String fileDescription,
+            StatusListener status,
+            CancellationToken cancellation)
+            throws IOException, InterruptedException {
+        // the prefetcher may have ranked the mirrors differently
+        for (String mirror : mirrors) {
+            String url = artifact.url(mirror, "jar");
+            if (copyPrefetched(url, outputPath, null)) {
+                updateStatus(status, fileDescription + " was already prefetched.");
+                return url;
+            }
+        }
+        updateStatus(status, "Downloading " + fileDescription + "...");
+        // keyed by coordinates, every mirror has the same released jar
+        SharedDownloads.Entry download = sharedDownloads().fetch(
+                artifact.coordinates() + "@jar",
+                null,
+                Main::checkJar,
+                target -> {
+                    IOException lastException = null;
+                    for (String mirror : mirrors) {
+                        String url = artifact.url(mirror, "jar");
+                        try {
+                            transfer(url, target, fileDescription, cancellation);
+                            return url;
+                        } catch (IOException e) {
+                            lastException = e;
+                            updateStatus(status, "Downloading " + fileDescription + " from " + mirror + " failed.");
+                        }
+                    }
+                    throw lastException;
+                },
+                status,
+                cancellation);
+        download.copyTo(outputPath);
+        updateStatus(status, fileDescription + (download.reused() ? " was reused." : " downloaded successfully."));
+        return download.sourceUrl();
+    }
+
+    /**
+     * @return an installed version of {@code artifact} in {@code libDir}, or null if there is none
+     */
+    private static Path findInstalledJar(Path libDir, String artifact) throws IOException {
+        if (!Files.isDirectory(libDir)) return null;
+        String prefix = artifact + "-";
+        try (Stream<Path> files = Files.list(libDir)) {
+            return files.filter(p -> {
+                        String name = p.getFileName().toString();
+                        // the version has to follow directly, fabric-loader must not match fabric-loader-junit
+                        return name.startsWith(prefix)
+                                && name.endsWith(".jar")
+                                && name.length() > prefix.length()
+                                && Character.isDigit(name.charAt(prefix.length()));
+                    })
+                    .findFirst()
+                    .orElse(null);
+        }
+    }
+
+    @VisibleForTesting
+    static void deleteDirectoryRecursively(Path path, StatusListener status) throws IOException {
+        if (Files.exists(path) && Files.isDirectory(path)) {
+            updateStatus(status, "Deleting directory: " + path);
+            for (Path failure : DirectoryDeleter.deleteRecursively(path)) {
+                updateStatus(status, "Failed to delete: " + failure);
             }
-            updateStatus(statusLabel, "Directory deleted: " + path);
+            updateStatus(status, "Directory deleted: " + path);
         } else if (Files.exists(path) && !Files.isDirectory(path)) {
-            updateStatus(statusLabel, "Path exists but is not a directory (will attempt to delete as file): " + path);
+            updateStatus(status, "Path exists but is not a directory (will attempt to delete as file): " + path);
             Files.deleteIfExists(path);
         }
     }
 
-    public static void uninstall(Path gamePath, JLabel statusLabel, boolean asCleanup) throws IOException {
+    public static void uninstall(Path gamePath, StatusListener status, boolean asCleanup)
+            throws IOException, InterruptedException {
+        uninstall(gamePath, status, asCleanup, new CancellationToken());
+    }
+
+    /**
+     * Removes Silk Loader and Fabric Loader from {@code gamePath}, after waiting for any installer that is working on
+     * it.
+     */
+    public static void uninstall(
+            Path gamePath, StatusListener status, boolean asCleanup, CancellationToken cancellation)
+            throws IOException, InterruptedException {
         if (!asCleanup) {
-            updateStatus(statusLabel, "Uninstallation process started...");
+            updateStatus(status, "Uninstallation process started...");
         }
         boolean somethingWasUninstalled = false;
-        try {
+        try (FileChannel ignored = StagedInstall.lock(gamePath, cancellation)) {
+            DirectoryDeleter.purgeTrash(gamePath);
             Path silkJarFixedPath = gamePath.resolve(SILK_LOADER_FIXED_JAR_NAME);
             Path libDirPath = gamePath.resolve("lib");
             Path fabricDirPath = gamePath.resolve(".fabric");
 
-            updateStatus(statusLabel, "Attempting to delete " + SILK_LOADER_FIXED_JAR_NAME + "...");
+            updateStatus(status, "Attempting to delete " + SILK_LOADER_FIXED_JAR_NAME + "...");
             if (Files.exists(silkJarFixedPath)) {
                 Files.delete(silkJarFixedPath);
-                updateStatus(statusLabel, SILK_LOADER_FIXED_JAR_NAME + " deleted successfully.");
+                updateStatus(status, SILK_LOADER_FIXED_JAR_NAME + " deleted successfully.");
                 somethingWasUninstalled = true;
             } else {
-                updateStatus(statusLabel, SILK_LOADER_FIXED_JAR_NAME + " not found, nothing to delete.");
+                updateStatus(status, SILK_LOADER_FIXED_JAR_NAME + " not found, nothing to delete.");
             }
 
-            updateStatus(statusLabel, "Attempting to delete 'lib' directory...");
+            updateStatus(status, "Attempting to delete 'lib' directory...");
             if (Files.exists(libDirPath) && Files.isDirectory(libDirPath)) {
-                deleteDirectoryRecursively(libDirPath, statusLabel);
-                updateStatus(statusLabel, "'lib' directory deleted successfully.");
+                DirectoryDeleter.moveToTrash(gamePath, libDirPath);
+                updateStatus(status, "'lib' directory removed, deleting its contents in the background.");
                 somethingWasUninstalled = true;
             } else {
-                updateStatus(statusLabel, "'lib' directory not found, nothing to delete.");
+                updateStatus(status, "'lib' directory not found, nothing to delete.");
             }
 
-            updateStatus(statusLabel, "Attempting to delete '.fabric' directory...");
+            updateStatus(status, "Attempting to delete '.fabric' directory...");
             if (Files.exists(fabricDirPath) && Files.isDirectory(fabricDirPath)) {
-                deleteDirectoryRecursively(fabricDirPath, statusLabel);
-                updateStatus(statusLabel, "'.fabric' directory deleted successfully.");
+                DirectoryDeleter.moveToTrash(gamePath, fabricDirPath);
+                updateStatus(status, "'.fabric' directory removed, deleting its contents in the background.");
                 somethingWasUninstalled = true;
             } else {
-                updateStatus(statusLabel, "'.fabric' directory not found, nothing to delete.");
+                updateStatus(status, "'.fabric' directory not found, nothing to delete.");
+            }
+
+            Files.deleteIfExists(gamePath.resolve(InstallFingerprint.FILE_NAME));
+            Files.deleteIfExists(gamePath.resolve(LaunchProfile.ARGFILE_NAME));
+            DirectoryDeleter.deleteIfExists(gamePath.resolve(LaunchProfile.CDS_ARCHIVE_NAME));
+            Files.deleteIfExists(gamePath.resolve(JarPacker.PACKED_JAR_NAME));
+            // the lock file is kept, it pins the versions for the next install --locked
+
+            Path versionStorePath = gamePath.resolve(VersionStore.DIR_NAME);
+            if (Files.isDirectory(versionStorePath)) {
+                DirectoryDeleter.moveToTrash(gamePath, versionStorePath);
+                updateStatus(status, "Removed the kept versions, deleting them in the background.");
+                somethingWasUninstalled = true;
             }
 
             if (!asCleanup) {
                 if (somethingWasUninstalled) {
                     updateStatus(
-                            statusLabel,
+                            status,
                             "Uninstallation completed. Please manually remove Steam launch options if set.");
                 } else {
-                    updateStatus(statusLabel, "No mod files found to uninstall. Directory seems clean.");
+                    updateStatus(status, "No mod files found to uninstall. Directory seems clean.");
                 }
-                SwingUtilities.invokeLater(() -> showUninstallInstructionsPopup(statusLabel));
+                if (status != null) status.uninstalled();
             }
 
         } catch (IOException e) {
             String errorMessage = "Uninstallation failed: " + e.getMessage();
-            updateStatus(statusLabel, errorMessage);
+            updateStatus(status, errorMessage);
             System.err.println(errorMessage);
             e.printStackTrace(System.err);
             throw e;
         }
     }
 
-    public static void install(String fabricMaven, String silkReleaseTag, Path gamePath, JLabel statusLabel) {
-        updateStatus(statusLabel, "Installation process started...");
-        ExecutorService executorService =
-                Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+    public static boolean install(String fabricMaven, String silkReleaseTag, Path gamePath, StatusListener status) {
+        return install(
+                fabricMaven, silkReleaseTag, gamePath, InstallOptions.DEFAULT, status, new CancellationToken());
+    }
+
+    /**
+     * @param cancellation cancelling it aborts the running downloads and rolls the installation back
+     * @return true if the installation succeeded, false if it failed or was cancelled and the previous installation
+     * was kept
+     */
+    public static boolean install(
+            String fabricMaven,
+            String silkReleaseTag,
+            Path gamePath,
+            InstallOptions options,
+            StatusListener status,
+            CancellationToken cancellation) {
+        updateStatus(status, "Installation process started...");
+        ExecutorService executorService = Executors.newFixedThreadPool(downloadThreads());
+        cancellation.onCancel(executorService::shutdownNow);
         List<Future<?>> downloadTasks = new ArrayList<>();
+        Queue<String> failedLibraries = new ConcurrentLinkedQueue<>();
+        Map<String, String> libraryUrls = new ConcurrentHashMap<>();
+        StagedInstall staging = null;
 
         try {
-            uninstall(gamePath, statusLabel, true);
-            updateStatus(statusLabel, "Starting Silk Loader installation for " + silkReleaseTag + "...");
-            String silkReleaseApiUrl = SILK_LOADER_RELEASES_URL + "/tags/" + silkReleaseTag;
-            HttpRequest silkApiRequest = HttpRequest.newBuilder()
-                    .uri(URI.create(silkReleaseApiUrl))
-                    .header("Accept", "application/vnd.github.v3+json")
-                    .build();
-            HttpResponse<String> silkApiResponse =
-                    httpClient.send(silkApiRequest, HttpResponse.BodyHandlers.ofString());
-            if (silkApiResponse.statusCode() != 200) {
-                throw new IOException("Failed to fetch Silk Loader release info for " + silkReleaseTag + ". Status: "
-                        + silkApiResponse.statusCode() + " Body: " + silkApiResponse.body());
-            }
-            JsonObject releaseJson = Json.parse(silkApiResponse.body()).asObject();
-            JsonArray assets = releaseJson.get("assets").asArray();
-            if (assets == null) {
-                throw new IOException("No assets found in Silk Loader release " + silkReleaseTag);
-            }
-            String silkJarDownloadUrl = null;
-            String originalSilkJarName = null;
-            for (int i = 0; i < assets.size(); i++) {
-                JsonObject asset = assets.get(i).asObject();
-                String name = asset.get("name").asString();
-                if (name.toLowerCase().endsWith(".jar")) {
-                    silkJarDownloadUrl = asset.get("browser_download_url").asString();
-                    originalSilkJarName = name;
-                    break;
-                }
-            }
-            if (silkJarDownloadUrl == null || silkJarDownloadUrl.isEmpty() || originalSilkJarName.isEmpty()) {
-                throw new IOException("No JAR file download URL found in Silk Loader release " + silkReleaseTag);
-            }
+            DirectoryDeleter.purgeTrash(gamePath);
+            staging = StagedInstall.begin(gamePath, cancellation);
+            updateStatus(status, "Starting Silk Loader installation for " + silkReleaseTag + "...");
+            SilkJarAsset silkJar = fetchSilkJar(silkReleaseTag, cancellation);
+            String silkJarDownloadUrl = silkJar.url();
 
-            Path silkJarFixedPath = gamePath.resolve(SILK_LOADER_FIXED_JAR_NAME);
-            downloadFile(
+            downloadJar(
                     silkJarDownloadUrl,
-                    silkJarFixedPath,
-                    "Silk Loader (" + originalSilkJarName + " as " + SILK_LOADER_FIXED_JAR_NAME + ")",
-                    statusLabel);
-            updateStatus(statusLabel, "Silk Loader (" + SILK_LOADER_FIXED_JAR_NAME + ") installed successfully.");
-
-            updateStatus(statusLabel, "Starting Fabric Loader installation (" + fabricMaven + ")...");
-            Path libDir = gamePath.resolve("lib");
+                    staging.resolve(SILK_LOADER_FIXED_JAR_NAME),
+                    gamePath.resolve(SILK_LOADER_FIXED_JAR_NAME),
+                    silkJar.sha256(),
+                    "Silk Loader (" + silkJar.name() + " as " + SILK_LOADER_FIXED_JAR_NAME + ")",
+                    status,
+                    cancellation);
+            updateStatus(status, "Silk Loader (" + SILK_LOADER_FIXED_JAR_NAME + ") installed successfully.");
+
+            updateStatus(status, "Starting Fabric Loader installation (" + fabricMaven + ")...");
+            Path libDir = staging.resolve("lib");
             Files.createDirectories(libDir);
 
-            String[] mavenParts = fabricMaven.split(":");
-            if (mavenParts.length != 3) {
+            if (fabricMaven.split(":").length != 3) {
                 throw new IllegalArgumentException("Invalid Fabric Maven coordinates: " + fabricMaven
                         + ". Expected format: group:artifact:version");
             }
-            String fabricGroup = mavenParts[0];
-            String fabricArtifact = mavenParts[1];
-            String fabricVersion = mavenParts[2];
-            String fabricGroupPath = fabricGroup.replace('.', '/');
+            MavenArtifact fabricLoader = MavenArtifact.parse(fabricMaven);
 
-            String fabricJarFileName = fabricArtifact + "-" + fabricVersion + ".jar";
+            String fabricJarFileName = fabricLoader.fileName("jar");
             Path fabricJarOutputPath = libDir.resolve(fabricJarFileName);
+            // where every artifact came from, in the lookup order of the generated launch profile: loader jars
+            // first, then libraries as listed by Fabric
+            Map<String, String> sourceUrls = new LinkedHashMap<>();
+            sourceUrls.put(SILK_LOADER_FIXED_JAR_NAME, silkJarDownloadUrl);
+            Path previousFabricJar = findInstalledJar(gamePath.resolve("lib"), fabricLoader.artifact());
             boolean fabricJarDownloaded = false;
             Exception lastFabricJarDownloadException = null;
-            for (String mavenRepoUrl : FABRIC_MAVENS) {
-                String fullFabricJarUrl = mavenRepoUrl + (mavenRepoUrl.endsWith("/") ? "" : "/") + fabricGroupPath + "/"
-                        + fabricArtifact + "/" + fabricVersion + "/" + fabricJarFileName;
+            for (String mavenRepoUrl : rankedMirrors(FABRIC_MAVENS.get(0), JAR_SIZE_ESTIMATE)) {
+                String fullFabricJarUrl = fabricLoader.url(mavenRepoUrl, "jar");
                 try {
-                    downloadFile(
+                    downloadJar(
                             fullFabricJarUrl,
                             fabricJarOutputPath,
+                            previousFabricJar,
+                            fetchPublishedSha256(fullFabricJarUrl, cancellation),
                             "Fabric Loader JAR (" + fabricJarFileName + ")",
-                            statusLabel);
+                            status,
+                            cancellation);
+                    sourceUrls.put("lib/" + fabricJarFileName, fullFabricJarUrl);
                     fabricJarDownloaded = true;
                     break;
                 } catch (IOException e) {
                     lastFabricJarDownloadException = e;
                     updateStatus(
-                            statusLabel,
+                            status,
                             "Attempt to download Fabric JAR from " + mavenRepoUrl + " failed. Trying next...");
                 }
             }
@@ -458,156 +1060,592 @@ public class Main {
                         "Failed to download Fabric Loader JAR from all configured repositories.",
                         lastFabricJarDownloadException);
             }
-            updateStatus(statusLabel, "Fabric Loader JAR (" + fabricJarFileName + ") installed successfully.");
-
-            String fabricJsonMetaFileName = fabricArtifact + "-" + fabricVersion + ".json";
-            boolean fabricJsonMetaFetched = false;
-            Exception lastFabricJsonMetaFetchException = null;
-            String fabricLoaderJsonContent = null;
-
-            updateStatus(statusLabel, "Fetching Fabric Loader JSON metadata...");
-            for (String mavenRepoUrl : FABRIC_MAVENS) {
-                String fullFabricJsonUrl = mavenRepoUrl + (mavenRepoUrl.endsWith("/") ? "" : "/") + fabricGroupPath
-                        + "/" + fabricArtifact + "/" + fabricVersion + "/" + fabricJsonMetaFileName;
-                try {
-                    updateStatus(
-                            statusLabel, "Attempting to fetch Fabric Loader JSON from " + fullFabricJsonUrl + "...");
-                    HttpRequest jsonRequest = HttpRequest.newBuilder()
-                            .uri(URI.create(fullFabricJsonUrl))
-                            .build();
-                    HttpResponse<String> jsonResponse =
-                            httpClient.send(jsonRequest, HttpResponse.BodyHandlers.ofString());
-
-                    if (jsonResponse.statusCode() >= 200 && jsonResponse.statusCode() < 300) {
-                        fabricLoaderJsonContent = jsonResponse.body();
-                        updateStatus(
-                                statusLabel,
-                                "Fabric Loader JSON metadata fetched successfully from " + fullFabricJsonUrl);
-                        fabricJsonMetaFetched = true;
-                        break;
-                    } else {
-                        lastFabricJsonMetaFetchException =
-                                new IOException("Status: " + jsonResponse.statusCode() + " from " + fullFabricJsonUrl);
-                        updateStatus(
-                                statusLabel,
-                                "Failed to fetch Fabric JSON from " + fullFabricJsonUrl + ". Status: "
-                                        + jsonResponse.statusCode() + ". Trying next...");
-                    }
-                } catch (IOException | InterruptedException e) {
-                    lastFabricJsonMetaFetchException = e;
-                    updateStatus(
-                            statusLabel,
-                            "Error fetching Fabric JSON metadata from " + fullFabricJsonUrl + ": " + e.getMessage()
-                                    + ". Trying next...");
-                }
+            updateStatus(status, "Fabric Loader JAR (" + fabricJarFileName + ") installed successfully.");
+
+            String fabricLoaderJsonContent = fetchFabricJson(fabricLoader, status, cancellation);
+
+            updateStatus(status, "Parsing Fabric Loader JSON and downloading common libraries...");
+            Map<String, LibraryDownload> libraries = readLibraries(
+                    Json.parse(fabricLoaderJsonContent).asObject(), options.transitive(), status, cancellation);
+            Map<String, String> plannedUrls = new LinkedHashMap<>();
+            libraries.forEach((path, library) -> plannedUrls.put(path, library.url()));
+            plannedUrls.forEach(sourceUrls::putIfAbsent);
+            List<String> downloadOrder = new ArrayList<>(plannedUrls.keySet());
+            // with more libraries than threads, a large jar started last would hold up the whole installation
+            if (libraries.size() > downloadThreads()) {
+                updateStatus(status, "Planning " + libraries.size() + " library downloads...");
+                downloadOrder = planDownloads(plannedUrls, gamePath, cancellation).entries().stream()
+                        .map(DownloadPlan.Entry::path)
+                        .toList();
             }
 
-            if (!fabricJsonMetaFetched || fabricLoaderJsonContent == null) {
-                throw new IOException(
-                        "Failed to fetch Fabric Loader JSON metadata from all configured repositories.",
-                        lastFabricJsonMetaFetchException);
-            }
-
-            updateStatus(statusLabel, "Parsing Fabric Loader JSON and downloading common libraries...");
-            JsonObject fabricMetaJson = Json.parse(fabricLoaderJsonContent).asObject();
-            JsonObject librariesSection = fabricMetaJson.get("libraries").asObject();
-            if (librariesSection != null) {
-                JsonArray commonLibraries = librariesSection.get("common").asArray();
-                if (commonLibraries != null) {
-                    for (int i = 0; i < commonLibraries.size(); i++) {
-                        JsonObject libInfo = commonLibraries.get(i).asObject();
-                        String libNameFull = libInfo.get("name").asString();
-                        String libRepoUrl = libInfo.getString("url", FABRIC_MAVENS.get(0));
-
-                        String[] libParts = libNameFull.split(":");
-                        if (libParts.length < 3) {
-                            updateStatus(statusLabel, "Skipping library with invalid coordinates: " + libNameFull);
-                            System.err.println("Skipping library with invalid coordinates: " + libNameFull);
-                            continue;
-                        }
-                        String libGroup = libParts[0];
-                        String libArtifact = libParts[1];
-                        String libVersion = libParts[2];
-                        String libClassifier = null;
-                        if (libParts.length > 3) {
-                            libClassifier = libParts[3];
-                        }
-
-                        String libGroupPath = libGroup.replace('.', '/');
-                        String libFileName = libArtifact + "-" + libVersion
-                                + (libClassifier != null ? "-" + libClassifier : "") + ".jar";
-                        Path libOutputPath = libDir.resolve(libFileName);
-
-                        String repoBase = libRepoUrl.endsWith("/") ? libRepoUrl : libRepoUrl + "/";
-
-                        final String finalFullLibUrl =
-                                repoBase + libGroupPath + "/" + libArtifact + "/" + libVersion + "/" + libFileName;
-                        final Path finalLibOutputPath = libOutputPath;
-                        final String finalLibFileName = libFileName;
-                        final JLabel finalStatusLabel = statusLabel;
-
-                        Future<?> task = executorService.submit(() -> {
-                            try {
-                                downloadFile(
-                                        finalFullLibUrl,
-                                        finalLibOutputPath,
-                                        "Library (" + finalLibFileName + ")",
-                                        finalStatusLabel);
-                            } catch (IOException | InterruptedException e) {
-                                updateStatus(
-                                        finalStatusLabel,
-                                        "Failed to download " + finalLibFileName + ": " + e.getMessage());
-                                System.err.println("Error downloading common library " + finalLibFileName + " from "
-                                        + finalFullLibUrl + ": " + e.getMessage());
-                            }
-                        });
-                        downloadTasks.add(task);
+            for (String path : downloadOrder) {
+                LibraryDownload library = libraries.get(path);
+                String libFileName = library.artifact().fileName("jar");
+                Path libOutputPath = staging.resolve(path);
+                Future<?> task = cancellation.track(executorService.submit(() -> {
+                    try {
+                        String downloadedFrom = downloadFromMirrors(
+                                library.mirrors(),
+                                library.artifact(),
+                                libOutputPath,
+                                "Library (" + libFileName + ")",
+                                status,
+                                cancellation);
+                        libraryUrls.put(path, downloadedFrom);
+                    } catch (IOException | InterruptedException e) {
+                        if (cancellation.isCancelled()) return;
+                        failedLibraries.add(libFileName);
+                        updateStatus(status, "Failed to download " + libFileName + ": " + e.getMessage());
+                        System.err.println("Error downloading common library " + libFileName + " from "
+                                + library.url() + ": " + e.getMessage());
                     }
-                } else {
-                    updateStatus(statusLabel, "No 'common' libraries found in Fabric JSON.");
-                }
-            } else {
-                updateStatus(statusLabel, "No 'libraries' section found in Fabric JSON.");
+                }));
+                downloadTasks.add(task);
             }
 
-            updateStatus(statusLabel, "Waiting for common library downloads to complete...");
+            updateStatus(status, "Waiting for common library downloads to complete...");
             for (Future<?> task : downloadTasks) {
                 try {
                     task.get();
-                } catch (Exception e) {
-                    updateStatus(statusLabel, "An error occurred during a library download task: " + e.getMessage());
+                } catch (ExecutionException e) {
+                    failedLibraries.add("<unknown>");
+                    updateStatus(status, "An error occurred during a library download task: " + e.getMessage());
                     System.err.println("Exception in library download task: "
                             + (e.getCause() != null ? e.getCause().getMessage() : e.getMessage()));
                 }
             }
-            updateStatus(statusLabel, "All common library downloads attempted.");
-            updateStatus(statusLabel, "Installation completed successfully!");
-            System.out.println();
-            System.out.println(
-                    "To make the mod loader automatically launch when you start Equilinox on Steam, set your launch options to this:");
-            System.out.printf(
-                    "java -cp \"%s" + File.pathSeparator + "lib" + File.separator + "*\" %s %%command%%%n",
-                    SILK_LOADER_FIXED_JAR_NAME,
-                    getMainClassFromJar(silkJarFixedPath));
-
-            SwingUtilities.invokeLater(() -> showInstallInstructionsPopup(statusLabel, silkJarFixedPath));
+            cancellation.throwIfCancelled();
+            if (!failedLibraries.isEmpty()) {
+                throw new IOException(failedLibraries.size() + " librar" + (failedLibraries.size() == 1 ? "y" : "ies")
+                        + " failed to download: " + String.join(", ", failedLibraries));
+            }
+            updateStatus(status, "All common libraries downloaded.");
+            // keeps the classpath order, only records the mirrors the libraries actually came from
+            sourceUrls.putAll(libraryUrls);
+
+            InstallLock lock = InstallLock.create(
+                    silkReleaseTag,
+                    fabricMaven,
+                    getMainClassFromJar(staging.resolve(SILK_LOADER_FIXED_JAR_NAME)),
+                    staging.stagingDir(),
+                    sourceUrls);
+            commitInstall(staging, gamePath, lock, options, status, cancellation);
+            return true;
+        } catch (CancellationException e) {
+            updateStatus(status, "Installation cancelled.");
+            return false;
         } catch (IOException | InterruptedException | IllegalArgumentException e) {
             String errorMessage = "Installation failed: " + e.getMessage();
-            updateStatus(statusLabel, errorMessage);
+            updateStatus(status, errorMessage);
             System.err.println(errorMessage);
             e.printStackTrace(System.err);
+            return false;
         } finally {
             executorService.shutdown();
             try {
                 if (!executorService.awaitTermination(60, TimeUnit.SECONDS)) {
                     executorService.shutdownNow();
-                    updateStatus(statusLabel, "Library download tasks timed out and were forced to stop.");
+                    updateStatus(status, "Library download tasks timed out and were forced to stop.");
                 }
             } catch (InterruptedException ie) {
                 executorService.shutdownNow();
                 Thread.currentThread().interrupt();
             }
+            if (staging != null) {
+                staging.close();
+                if (!staging.isCommitted()) updateStatus(status, "Previous installation was left untouched.");
+            }
+            saveMirrorStats();
+            pruneSharedDownloads();
+        }
+    }
+
+    /**
+     * Installs exactly the artifacts pinned in {@code lock}, downloading them in parallel straight from the locked
+     * URLs. Nothing is resolved, a mismatching size or hash fails the installation.
+     *
+     * @param cancellation cancelling it aborts the running downloads and rolls the installation back
+     * @return true if the installation succeeded, false if it failed or was cancelled and the previous installation
+     * was kept
+     */
+    public static boolean installLocked(
+            InstallLock lock,
+            Path gamePath,
+            InstallOptions options,
+            StatusListener status,
+            CancellationToken cancellation) {
+        updateStatus(
+                status,
+                "Installing " + lock.artifacts().size() + " locked artifacts of Silk Loader " + lock.silkTag()
+                        + " and " + lock.fabricLoader() + "...");
+        ExecutorService executorService = Executors.newFixedThreadPool(downloadThreads());
+        List<Future<?>> downloadTasks = new ArrayList<>();
+        Queue<String> failedArtifacts = new ConcurrentLinkedQueue<>();
+        StagedInstall staging = null;
+        cancellation.onCancel(executorService::shutdownNow);
+
+        try {
+            DirectoryDeleter.purgeTrash(gamePath);
+            staging = StagedInstall.begin(gamePath, cancellation);
+            Files.createDirectories(staging.resolve("lib"));
+
+            String fabricArtifact = MavenArtifact.parse(lock.fabricLoader()).artifact();
+            Path previousFabricJar = findInstalledJar(gamePath.resolve("lib"), fabricArtifact);
+            // largest first, so that no large jar is left to download alone at the end
+            List<InstallLock.Artifact> artifacts = lock.artifacts().stream()
+                    .sorted(Comparator.comparingLong(InstallLock.Artifact::size).reversed())
+                    .toList();
+            for (InstallLock.Artifact artifact : artifacts) {
+                Path outputPath = staging.resolve(artifact.path());
+                Path installedPath = gamePath.resolve(artifact.path());
+                // only the loader jars are updated in place often enough to make a delta worth it
+                Path previousJar;
+                if (artifact.path().equals(SILK_LOADER_FIXED_JAR_NAME)) {
+                    previousJar = installedPath;
+                } else if (artifact.path().startsWith("lib/" + fabricArtifact + "-")) {
+                    previousJar = previousFabricJar;
+                } else {
+                    previousJar = null;
+                }
+                downloadTasks.add(cancellation.track(executorService.submit(() -> {
+                    try {
+                        if (isInstalled(artifact, installedPath)) {
+                            Files.copy(installedPath, outputPath);
+                            updateStatus(status, artifact.path() + " is already installed, reusing it.");
+                        } else {
+                            downloadJar(
+                                    artifact.url(),
+                                    outputPath,
+                                    previousJar,
+                                    artifact.sha256(),
+                                    artifact.path(),
+                                    status,
+                                    cancellation);
+                        }
+                        artifact.verify(outputPath);
+                    } catch (IOException | InterruptedException e) {
+                        if (cancellation.isCancelled()) return;
+                        failedArtifacts.add(artifact.path());
+                        updateStatus(status, "Failed to install " + artifact.path() + ": " + e.getMessage());
+                    }
+                })));
+            }
+            for (Future<?> task : downloadTasks) {
+                try {
+                    task.get();
+                } catch (ExecutionException e) {
+                    failedArtifacts.add("<unknown>");
+                    updateStatus(status, "An error occurred during a download task: " + e.getMessage());
+                }
+            }
+            cancellation.throwIfCancelled();
+            if (!failedArtifacts.isEmpty()) {
+                throw new IOException(failedArtifacts.size() + " locked artifact"
+                        + (failedArtifacts.size() == 1 ? "" : "s") + " could not be installed: "
+                        + String.join(", ", failedArtifacts));
+            }
+            updateStatus(status, "All locked artifacts downloaded and verified.");
+
+            commitInstall(staging, gamePath, lock, options, status, cancellation);
+            return true;
+        } catch (CancellationException e) {
+            updateStatus(status, "Installation cancelled.");
+            return false;
+        } catch (IOException | InterruptedException e) {
+            String errorMessage = "Installation failed: " + e.getMessage();
+            updateStatus(status, errorMessage);
+            System.err.println(errorMessage);
+            e.printStackTrace(System.err);
+            return false;
+        } finally {
+            executorService.shutdownNow();
+            if (staging != null) {
+                staging.close();
+                if (!staging.isCommitted()) updateStatus(status, "Previous installation was left untouched.");
+            }
+            saveMirrorStats();
+            pruneSharedDownloads();
+        }
+    }
+
+    static int downloadThreads() {
+        return Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+    }
+
+    /**
+     * A library to download and the repositories that have it, fastest expected first.
+     */
+    record LibraryDownload(MavenArtifact artifact, List<String> mirrors) {
+        String url() {
+            return artifact.url(mirrors.get(0), "jar");
+        }
+    }
+
+    private static SilkJarAsset fetchSilkJar(String silkReleaseTag, CancellationToken cancellation)
+            throws IOException, InterruptedException {
+        try {
+            return SilkJarAsset.find(gitHubReleases.release(silkReleaseTag, cancellation), silkReleaseTag);
+        } catch (IOException e) {
+            throw new IOException(
+                    "Failed to fetch Silk Loader release info for " + silkReleaseTag + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return the SHA-256 a maven publishes next to the artifact at {@code url}, or null if it publishes none
+     */
+    private static String fetchPublishedSha256(String url, CancellationToken cancellation)
+            throws IOException, InterruptedException {
+        String checksumUrl = url + ".sha256";
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create(checksumUrl)).build();
+        HttpResponse<String> response =
+                cancellation.await(httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+        if (response.statusCode() == 404) return null;
+        if (response.statusCode() != 200) {
+            throw new IOException("Failed to fetch " + checksumUrl + ". Status: " + response.statusCode());
+        }
+        // some mavens put the file name after the hash
+        String sha256 = response.body().trim().split("\\s+", 2)[0];
+        if (!sha256.matches("[0-9a-fA-F]{64}")) throw new IOException("Malformed SHA-256 in " + checksumUrl);
+        return sha256;
+    }
+
+    private static String fetchFabricJson(
+            MavenArtifact fabricLoader, StatusListener status, CancellationToken cancellation)
+            throws IOException, InterruptedException {
+        Exception lastFabricJsonMetaFetchException = null;
+
+        updateStatus(status, "Fetching Fabric Loader JSON metadata...");
+        for (String mavenRepoUrl : rankedMirrors(FABRIC_MAVENS.get(0), METADATA_SIZE_ESTIMATE)) {
+            String fullFabricJsonUrl = fabricLoader.url(mavenRepoUrl, "json");
+            String prefetched = readPrefetched(fullFabricJsonUrl);
+            if (prefetched != null) {
+                updateStatus(status, "Fabric Loader JSON metadata was already prefetched.");
+                return prefetched;
+            }
+            try {
+                updateStatus(status, "Attempting to fetch Fabric Loader JSON from " + fullFabricJsonUrl + "...");
+                HttpRequest jsonRequest =
+                        HttpRequest.newBuilder().uri(URI.create(fullFabricJsonUrl)).build();
+                MirrorStats.Sample sample = mirrorStats().start(fullFabricJsonUrl);
+                HttpResponse<String> jsonResponse;
+                try {
+                    jsonResponse = cancellation.await(
+                            httpClient.sendAsync(jsonRequest, sample.timing(HttpResponse.BodyHandlers.ofString())));
+                } catch (IOException e) {
+                    sample.failed();
+                    throw e;
+                }
+
+                if (jsonResponse.statusCode() >= 200 && jsonResponse.statusCode() < 300) {
+                    sample.succeeded(jsonResponse.body().length());
+                    updateStatus(
+                            status, "Fabric Loader JSON metadata fetched successfully from " + fullFabricJsonUrl);
+                    return jsonResponse.body();
+                } else {
+                    sample.failed();
+                    lastFabricJsonMetaFetchException =
+                            new IOException("Status: " + jsonResponse.statusCode() + " from " + fullFabricJsonUrl);
+                    updateStatus(
+                            status,
+                            "Failed to fetch Fabric JSON from " + fullFabricJsonUrl + ". Status: "
+                                    + jsonResponse.statusCode() + ". Trying next...");
+                }
+            } catch (IOException e) {
+                lastFabricJsonMetaFetchException = e;
+                updateStatus(
+                        status,
+                        "Error fetching Fabric JSON metadata from " + fullFabricJsonUrl + ": " + e.getMessage()
+                                + ". Trying next...");
+            }
+        }
+        throw new IOException(
+                "Failed to fetch Fabric Loader JSON metadata from all configured repositories.",
+                lastFabricJsonMetaFetchException);
+    }
+
+    /**
+     * @param transitive whether to walk the libraries' POMs for dependencies Fabric does not list
+     * @return the libraries of a Fabric Loader JSON by installation path, in classpath order
+     */
+    private static Map<String, LibraryDownload> readLibraries(
+            JsonObject fabricMetaJson, boolean transitive, StatusListener status, CancellationToken cancellation)
+            throws InterruptedException {
+        Consumer<String> resolverStatus = message -> updateStatus(status, message);
+        List<LibraryResolver.Library> resolved = transitive
+                ? new LibraryResolver(httpClient, cancellation, LibraryResolver.defaultCacheDir(), resolverStatus)
+                        .resolve(fabricMetaJson)
+                : LibraryResolver.declared(fabricMetaJson, resolverStatus);
+        Map<String, LibraryDownload> libraries = new LinkedHashMap<>();
+        for (LibraryResolver.Library library : resolved) {
+            // the library's own repository is not necessarily the fastest one that has it
+            libraries.putIfAbsent(
+                    "lib/" + library.artifact().fileName("jar"),
+                    new LibraryDownload(
+                            library.artifact(), rankedMirrors(library.repository(), JAR_SIZE_ESTIMATE)));
         }
+        return libraries;
+    }
+
+    /**
+     * Sizes the downloads, taking the sizes of files that an earlier installation in {@code gamePath} already
+     * locked, and orders them largest first.
+     *
+     * @param urls the URL of every download by installation path, in the order they are listed in
+     */
+    private static DownloadPlan planDownloads(Map<String, String> urls, Path gamePath, CancellationToken cancellation)
+            throws InterruptedException {
+        Map<String, Long> knownSizes = new HashMap<>();
+        Path lockFile = gamePath.resolve(InstallLock.FILE_NAME);
+        if (Files.isRegularFile(lockFile)) {
+            try {
+                // the version is part of the file name, so the same path means the same file on any mirror
+                for (InstallLock.Artifact artifact : InstallLock.read(lockFile).artifacts()) {
+                    knownSizes.put(artifact.path(), artifact.size());
+                }
+            } catch (IOException e) {
+                System.err.println("Ignoring unreadable lock file " + lockFile + ": " + e.getMessage());
+            }
+        }
+        return DownloadPlan.create(httpClient, urls, knownSizes, downloadThreads(), cancellation);
+    }
+
+    /**
+     * Resolves an installation like {@link #install} and prints what it would download, without touching the game
+     * directory.
+     */
+    private static void printInstallPlan(String fabricMaven, String silkReleaseTag, Path gamePath, boolean transitive)
+            throws IOException, InterruptedException {
+        CancellationToken cancellation = new CancellationToken();
+        SilkJarAsset silkJar = fetchSilkJar(silkReleaseTag, cancellation);
+        MavenArtifact fabricLoader = MavenArtifact.parse(fabricMaven);
+        String fabricJson = fetchFabricJson(fabricLoader, null, cancellation);
+
+        Map<String, String> urls = new LinkedHashMap<>();
+        readLibraries(Json.parse(fabricJson).asObject(), transitive, null, cancellation)
+                .forEach((path, library) -> urls.put(path, library.url()));
+        DownloadPlan plan = planDownloads(urls, gamePath, cancellation);
+
+        System.out.println("Silk Loader " + silkReleaseTag + " (" + silkJar.name() + ") and Fabric Loader "
+                + fabricLoader.version() + " would be installed to " + gamePath + ".");
+        System.out.println("The loader jars are downloaded first, then the libraries in parallel:\n");
+        plan.print(System.out, downloadThreads(), mirrorStats());
+    }
+
+    private static boolean isInstalled(InstallLock.Artifact artifact, Path installedPath) {
+        if (!Files.isRegularFile(installedPath)) return false;
+        try {
+            artifact.verify(installedPath);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Checks every file the lock file of the active installation pins against its size and SHA-256.
+     *
+     * @return a description of every file that is missing or differs, empty if the installation is intact
+     * @throws IOException if there is no readable lock file
+     */
+    public static List<String> verifyInstallation(Path gamePath, StatusListener status) throws IOException {
+        InstallLock lock = InstallLock.read(gamePath.resolve(InstallLock.FILE_NAME));
+        updateStatus(
+                status, "Verifying " + lock.artifacts().size() + " files of Silk Loader " + lock.silkTag() + "...");
+        List<String> problems = new ArrayList<>();
+        for (InstallLock.Artifact artifact : lock.artifacts()) {
+            Path installedPath = gamePath.resolve(artifact.path());
+            try {
+                if (!Files.isRegularFile(installedPath)) throw new IOException(artifact.path() + " is missing");
+                artifact.verify(installedPath);
+            } catch (IOException e) {
+                problems.add(e.getMessage());
+                updateStatus(status, e.getMessage());
+            }
+        }
+        updateStatus(
+                status,
+                problems.isEmpty()
+                        ? "All installed files match the lock file."
+                        : problems.size() + " installed files do not match the lock file.");
+        return problems;
+    }
+
+    /**
+     * Makes a version that is kept in the {@link VersionStore} the active installation, without any network access.
+     * The active installation is kept first, so that switching back is just as fast.
+     *
+     * @return true if the version is active now
+     */
+    public static boolean switchVersion(Path gamePath, String silkTag, String fabricVersion, StatusListener status) {
+        long start = System.nanoTime();
+        String id = VersionStore.id(silkTag, fabricVersion);
+        StagedInstall staging = null;
+        try {
+            DirectoryDeleter.purgeTrash(gamePath);
+            staging = StagedInstall.begin(gamePath, new CancellationToken());
+            String activeId = VersionStore.keep(gamePath);
+            if (id.equals(activeId)) {
+                updateStatus(status, "Silk Loader " + silkTag + " and Fabric Loader " + fabricVersion
+                        + " are already active.");
+                return true;
+            }
+            // the stored files were verified when they were installed
+            VersionStore.stage(gamePath, id, staging);
+            InstallFingerprint previousFingerprint = InstallFingerprint.read(gamePath);
+            InstallFingerprint fingerprint = InstallFingerprint.read(staging.stagingDir());
+            staging.commit();
+
+            if (activeId != null) {
+                if (VersionStore.swapFabricCache(gamePath, activeId, id)) {
+                    updateStatus(status, "Restored the Fabric cache of " + id + ".");
+                }
+            } else if (fingerprint != null) {
+                InstallFingerprint.invalidateFabricCache(gamePath, previousFingerprint, fingerprint);
+            }
+            updateStatus(
+                    status,
+                    "Switched to Silk Loader " + silkTag + " and Fabric Loader " + fabricVersion + " in "
+                            + (System.nanoTime() - start) / 1_000_000 + " ms.");
+            return true;
+        } catch (NoSuchFileException e) {
+            updateStatus(
+                    status,
+                    "Silk Loader " + silkTag + " and Fabric Loader " + fabricVersion
+                            + " are not installed, install them once first.");
+            return false;
+        } catch (IOException e) {
+            String errorMessage = "Switching versions failed: " + e.getMessage();
+            updateStatus(status, errorMessage);
+            System.err.println(errorMessage);
+            e.printStackTrace(System.err);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            updateStatus(status, "Switching versions was interrupted.");
+            return false;
+        } finally {
+            if (staging != null) {
+                staging.close();
+            }
+        }
+    }
+
+    private static void printStoredVersions(Path gamePath) throws IOException {
+        List<InstallLock> versions = VersionStore.list(gamePath);
+        if (versions.isEmpty()) {
+            System.out.println("No versions are kept in " + gamePath.resolve(VersionStore.DIR_NAME) + " yet.");
+            return;
+        }
+        InstallFingerprint active = InstallFingerprint.read(gamePath);
+        System.out.println("Installed versions (switch <silk-release-tag> <fabric-loader-version>):");
+        for (InstallLock version : versions) {
+            boolean isActive = active != null
+                    && version.silkTag().equals(active.silkTag())
+                    && version.fabricLoader().equals(active.fabricLoader());
+            System.out.printf(
+                    "  %-20s %s%s%n",
+                    version.silkTag(),
+                    MavenArtifact.parse(version.fabricLoader()).version(),
+                    isActive ? " (active)" : "");
+        }
+    }
+
+    /**
+     * Turns the downloaded artifacts in {@code staging} into a complete installation and swaps it into the game
+     * directory. Once the swap has started, the installation can no longer be cancelled.
+     */
+    private static void commitInstall(
+            StagedInstall staging,
+            Path gamePath,
+            InstallLock lock,
+            InstallOptions options,
+            StatusListener status,
+            CancellationToken cancellation)
+            throws IOException {
+        updateStatus(status, "Verifying staged installation...");
+        staging.verify(lock.classpath().toArray(String[]::new));
+        InstallFingerprint fingerprint = InstallFingerprint.create(
+                lock.silkTag(), staging.resolve(SILK_LOADER_FIXED_JAR_NAME), lock.fabricLoader());
+        fingerprint.write(staging.stagingDir());
+        lock.write(staging.stagingDir());
+
+        List<String> launchClasspath = lock.classpath();
+        if (options.packed()) {
+            cancellation.throwIfCancelled();
+            updateStatus(status, "Packing libraries into " + JarPacker.PACKED_JAR_NAME + "...");
+            List<Path> libraryJars = new ArrayList<>();
+            // mods stay on the classpath, the packed jar takes the place of the first library that goes into it
+            List<String> packedClasspath = new ArrayList<>();
+            int modJars = 0;
+            for (String entry : launchClasspath) {
+                if (entry.equals(SILK_LOADER_FIXED_JAR_NAME)) {
+                    packedClasspath.add(entry);
+                } else if (!JarPacker.isPackable(staging.resolve(entry))) {
+                    packedClasspath.add(entry);
+                    modJars++;
+                } else {
+                    if (libraryJars.isEmpty()) packedClasspath.add(JarPacker.PACKED_JAR_NAME);
+                    libraryJars.add(staging.resolve(entry));
+                }
+            }
+            if (!libraryJars.isEmpty()) {
+                int duplicates = JarPacker.pack(libraryJars, staging.resolve(JarPacker.PACKED_JAR_NAME));
+                updateStatus(
+                        status,
+                        "Packed " + libraryJars.size() + " jars, kept " + modJars + " mod jars separate, dropped "
+                                + duplicates + " duplicate entries.");
+                staging.verify(JarPacker.PACKED_JAR_NAME);
+                launchClasspath = packedClasspath;
+            }
+        }
+        LaunchProfile.write(staging.stagingDir(), launchClasspath, lock.mainClass(), false);
+        InstallFingerprint previousFingerprint = InstallFingerprint.read(gamePath);
+
+        cancellation.throwIfCancelled();
+        // the previous version is kept first, so that its Fabric cache can be stashed with it like when switching
+        String previousId;
+        try {
+            previousId = VersionStore.keep(gamePath);
+        } catch (IOException e) {
+            System.err.println("Could not keep a copy of the previous installation: " + e.getMessage());
+            previousId = null;
+        }
+        updateStatus(status, "Swapping in the new installation...");
+        staging.commit();
+
+        String id = VersionStore.id(lock);
+        if (previousId != null && !previousId.equals(id)) {
+            boolean hadFabricCache = Files.isDirectory(gamePath.resolve(VersionStore.FABRIC_CACHE_DIR));
+            if (VersionStore.swapFabricCache(gamePath, previousId, id)) {
+                updateStatus(status, "Restored the Fabric cache of " + id + ".");
+            } else if (hadFabricCache) {
+                updateStatus(status, "Kept the Fabric cache with " + previousId + " for switching back.");
+            }
+        } else {
+            List<String> invalidated =
+                    InstallFingerprint.invalidateFabricCache(gamePath, previousFingerprint, fingerprint);
+            if (invalidated.isEmpty()) {
+                updateStatus(status, "Fabric cache is still valid and was kept.");
+            } else {
+                updateStatus(status, "Invalidated Fabric cache: " + String.join(", ", invalidated));
+            }
+        }
+        try {
+            VersionStore.keep(gamePath);
+            updateStatus(status, "Kept this version as " + id + ", switch back to it with the switch command.");
+        } catch (IOException e) {
+            // the installation itself is complete
+            System.err.println("Could not keep a copy of the installation: " + e.getMessage());
+        }
+        Path silkJarFixedPath = gamePath.resolve(SILK_LOADER_FIXED_JAR_NAME);
+        updateStatus(status, "Installation completed successfully!");
+        System.out.println();
+        System.out.println(
+                "To make the mod loader automatically launch when you start Equilinox on Steam, set your launch options to this:");
+        System.out.println(LaunchProfile.launchCommand(gamePath));
+        if (status != null) status.installed(silkJarFixedPath);
     }
 
     @VisibleForTesting
@@ -630,88 +1668,4 @@ public class Main {
         }
         return "de.rhm176.loader.Main"; // main class prior to including it in manifest
     }
-
-    @VisibleForTesting
-    static void showInstallInstructionsPopup(Component parentComponent, Path silkLoaderPath) {
-        String title = "Installation Successful!";
-        String headerMessage = "To make the mod loader automatically launch when you start Equilinox on Steam:";
-
-        JPanel panel = new JPanel(new BorderLayout(10, 10));
-        panel.setBorder(new EmptyBorder(10, 10, 10, 10));
-
-        JLabel headerLabel = new JLabel("<html><body style='width: 350px;'>" + headerMessage + "</body></html>");
-        panel.add(headerLabel, BorderLayout.NORTH);
-
-        JTextArea instructionsArea = new JTextArea();
-        instructionsArea.setEditable(false);
-        instructionsArea.setLineWrap(true);
-        instructionsArea.setWrapStyleWord(true);
-        instructionsArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
-        instructionsArea.setText(
-                """
-                        1. Right-click Equilinox in your Steam library.
-                        2. Click on 'Properties...'.
-                        3. In the 'General' tab, find the 'LAUNCH OPTIONS' text box.
-                        4. Paste the following line into the text box:""");
-        instructionsArea.setRows(5);
-        instructionsArea.setColumns(0);
-        instructionsArea.setBackground(panel.getBackground());
-
-        String launchCommand = String.format(
-                "java -cp \"%s" + File.pathSeparator + "lib" + File.separator + "*\" %s %%command%%",
-                SILK_LOADER_FIXED_JAR_NAME,
-                getMainClassFromJar(silkLoaderPath));
-        JTextArea commandArea = new JTextArea(launchCommand);
-        commandArea.setEditable(false);
-        commandArea.setFont(new Font("Monospaced", Font.BOLD, 13));
-        commandArea.setLineWrap(true);
-        commandArea.setWrapStyleWord(true);
-        commandArea.setToolTipText("Click to select, or use the button to copy.");
-        commandArea.setRows(3);
-        commandArea.setColumns(0);
-
-        JScrollPane commandScrollPane = new JScrollPane(commandArea);
-        commandScrollPane.setBorder(BorderFactory.createTitledBorder("Launch Option:"));
-
-        JButton copyButton = new JButton("Copy Launch Option to Clipboard");
-        copyButton.addActionListener(e -> {
-            StringSelection stringSelection = new StringSelection(launchCommand);
-            java.awt.Toolkit.getDefaultToolkit().getSystemClipboard().setContents(stringSelection, null);
-            JOptionPane.showMessageDialog(
-                    panel, "Launch option copied to clipboard!", "Copied!", JOptionPane.INFORMATION_MESSAGE);
-        });
-
-        JPanel centerPanel = new JPanel(new BorderLayout(5, 5));
-        centerPanel.add(instructionsArea, BorderLayout.NORTH);
-        centerPanel.add(commandScrollPane, BorderLayout.CENTER);
-
-        panel.add(centerPanel, BorderLayout.CENTER);
-        panel.add(copyButton, BorderLayout.SOUTH);
-
-        Window windowAncestor = null;
-        if (parentComponent != null) {
-            windowAncestor = SwingUtilities.getWindowAncestor(parentComponent);
-        }
-
-        JOptionPane.showMessageDialog(windowAncestor, panel, title, JOptionPane.INFORMATION_MESSAGE);
-    }
-
-    @VisibleForTesting
-    static void showUninstallInstructionsPopup(Component parentComponent) {
-        String title = "Uninstallation Information";
-        String message = "<html><body style='width: 350px;'>" + "The uninstallation process has finished.<br><br>"
-                + "<b>Important:</b> If you previously set <b>Steam launch options</b> for Equilinox to use the mod loader, "
-                + "you should now remove them to ensure the game launches normally.<br><br>"
-                + "To do this:<br>"
-                + "1. Right-click Equilinox in your Steam library.<br>"
-                + "2. Click on 'Properties...'.<br>"
-                + "3. In the 'General' tab, clear the 'LAUNCH OPTIONS' text box.</body></html>";
-
-        Window windowAncestor = null;
-        if (parentComponent != null) {
-            windowAncestor = SwingUtilities.getWindowAncestor(parentComponent);
-        }
-
-        JOptionPane.showMessageDialog(windowAncestor, message, title, JOptionPane.INFORMATION_MESSAGE);
-    }
 }
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2025 Silk Loader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.rhm176.silk.installer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Maven coordinates in the {@code group:artifact:version[:classifier]} form used by Fabric's metadata.
+ */
+public record MavenArtifact(String group, String artifact, String version, String classifier) {
+    // pre-release qualifiers sort before the release, everything else after it
+    private static final List<String> PRE_RELEASE_QUALIFIERS = List.of("alpha", "beta", "milestone", "rc", "snapshot");
+
+    /**
+     * @throws IllegalArgumentException if {@code coordinates} has less than three or more than four parts, or an
+     *                                  empty one
+     */
+    public static MavenArtifact parse(String coordinates) {
+        String[] parts = coordinates.split(":", -1);
+        if (parts.length < 3 || parts.length > 4) {
+            throw new IllegalArgumentException(
+                    "Invalid Maven coordinates: " + coordinates + ". Expected format: group:artifact:version");
+        }
+        for (String part : parts) {
+            if (part.isBlank()) {
+                throw new IllegalArgumentException("Invalid Maven coordinates: " + coordinates + ". Empty part");
+            }
+        }
+        return new MavenArtifact(parts[0], parts[1], parts[2], parts.length > 3 ? parts[3] : null);
+    }
+
+    public String fileName(String extension) {
+        return artifact + "-" + version + (classifier != null ? "-" + classifier : "") + "." + extension;
+    }
+
+    public String url(String repository, String extension) {
+        return (repository.endsWith("/") ? repository : repository + "/") + group.replace('.', '/') + "/" + artifact
+                + "/" + version + "/" + fileName(extension);
+    }
+
+    /**
+     * @return the coordinates without the version, two artifacts with the same key are versions of the same library
+     */
+    public String key() {
+        return group + ":" + artifact + (classifier != null ? ":" + classifier : "");
+    }
+
+    public String coordinates() {
+        return group + ":" + artifact + ":" + version + (classifier != null ? ":" + classifier : "");
+    }
+
+    /**
+     * Compares versions the way Maven roughly does: numbers numerically, {@code 1.0-rc1} before {@code 1.0} before
+     * {@code 1.0.1}.
+     */
+    public static int compareVersions(String a, String b) {
+        List<String> left = versionTokens(a);
+        List<String> right = versionTokens(b);
+        for (int i = 0; i < Math.max(left.size(), right.size()); i++) {
+            int comparison = compareTokens(
+                    i < left.size() ? left.get(i) : null, i < right.size() ? right.get(i) : null);
+            if (comparison != 0) return comparison;
+        }
+        return 0;
+    }
+
+    private static List<String> versionTokens(String version) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder token = new StringBuilder();
+        for (char c : version.toLowerCase(Locale.ROOT).toCharArray()) {
+            boolean separator = c == '.' || c == '-' || c == '_' || c == '+';
+            // 1.0rc1 splits into 1, 0, rc, 1 like 1.0-rc-1
+            boolean switchesKind = !token.isEmpty()
+                    && Character.isDigit(c) != Character.isDigit(token.charAt(token.length() - 1));
+            if ((separator || switchesKind) && !token.isEmpty()) {
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+            if (!separator) token.append(c);
+        }
+        if (!token.isEmpty()) tokens.add(token.toString());
+        tokens.replaceAll(t -> switch (t) {
+            case "a" -> "alpha";
+            case "b" -> "beta";
+            case "m" -> "milestone";
+            case "cr" -> "rc";
+            default -> t;
+        });
+        return tokens;
+    }
+
+    /**
+     * @param a a token, or null if the version has no more tokens
+     * @param b a token, or null if the version has no more tokens
+     */
+    private static int compareTokens(String a, String b) {
+        if (a == null) return -compareTokens(b, null);
+        boolean numeric = Character.isDigit(a.charAt(0));
+        if (b == null) {
+            if (numeric) return a.chars().allMatch(c -> c == '0') ? 0 : 1;
+            return PRE_RELEASE_QUALIFIERS.contains(a) ? -1 : 1;
+        }
+        boolean otherNumeric = Character.isDigit(b.charAt(0));
+        if (numeric && otherNumeric) {
+            String left = a.replaceFirst("^0+(?=.)", "");
+            String right = b.replaceFirst("^0+(?=.)", "");
+            return left.length() != right.length()
+                    ? Integer.compare(left.length(), right.length())
+                    : left.compareTo(right);
+        }
+        if (numeric != otherNumeric) return numeric ? 1 : -1;
+        int leftRank = PRE_RELEASE_QUALIFIERS.indexOf(a);
+        int rightRank = PRE_RELEASE_QUALIFIERS.indexOf(b);
+        if (leftRank >= 0 && rightRank >= 0) return Integer.compare(leftRank, rightRank);
+        if (leftRank >= 0 || rightRank >= 0) return leftRank >= 0 ? -1 : 1;
+        return a.compareTo(b);
+    }
+}
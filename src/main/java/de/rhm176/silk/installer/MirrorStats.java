@@ -0,0 +1,245 @@
+/*
+ * Copyright 2025 Silk Loader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.rhm176.silk.installer;
+
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonObject;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Remembers how fast and how reliable each mirror was across installer runs, so that downloads can try the mirror
+ * that is expected to finish first.
+ * <p>
+ * Mirrors are identified by scheme and host. Latency, throughput and error rate are exponentially weighted moving
+ * averages, so a mirror that gets faster or recovers moves up again after a few downloads. Mirrors without any
+ * history get optimistic defaults, which makes sure they are tried at least once.
+ */
+public final class MirrorStats {
+    public static final String FILE_NAME = "mirror-stats.json";
+
+    private static final int FORMAT_VERSION = 1;
+    // weight of the newest sample in the moving averages
+    private static final double SMOOTHING = 0.3;
+    private static final double DEFAULT_LATENCY_MILLIS = 200;
+    private static final double DEFAULT_BYTES_PER_SECOND = 1024 * 1024;
+    // a mirror that never answers still gets a chance every now and then
+    private static final double MAX_ERROR_RATE = 0.9;
+    // failures are forgotten with this half-life, mirrors that were down yesterday are likely up again
+    private static final double ERROR_HALF_LIFE_MILLIS = 24 * 60 * 60 * 1000.0;
+    // too small transfers say nothing about throughput, only about latency
+    private static final long MIN_THROUGHPUT_SAMPLE_BYTES = 16 * 1024;
+
+    private final Path file;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private volatile boolean throughputLimited;
+
+    private static final class Entry {
+        private double latencyMillis = DEFAULT_LATENCY_MILLIS;
+        private double bytesPerSecond = DEFAULT_BYTES_PER_SECOND;
+        private double errorRate;
+        private long lastFailure;
+        private long samples;
+    }
+
+    /**
+     * @param file where the statistics are saved, or null to keep them in memory only
+     */
+    public MirrorStats(Path file) {
+        this.file = file;
+    }
+
+    public static Path defaultFile() {
+        return Path.of(System.getProperty("user.home"), ".silk-installer", FILE_NAME);
+    }
+
+    /**
+     * Loads the statistics from {@code file}, starting over if it is missing or unreadable.
+     */
+    public static MirrorStats load(Path file) {
+        MirrorStats stats = new MirrorStats(file);
+        if (!Files.isRegularFile(file)) return stats;
+        try {
+            JsonObject json = Json.parse(Files.readString(file)).asObject();
+            if (json.getInt("version", -1) != FORMAT_VERSION) return stats;
+            for (JsonObject.Member member : json.get("mirrors").asObject()) {
+                JsonObject values = member.getValue().asObject();
+                Entry entry = new Entry();
+                entry.latencyMillis = values.getDouble("latencyMillis", DEFAULT_LATENCY_MILLIS);
+                entry.bytesPerSecond = values.getDouble("bytesPerSecond", DEFAULT_BYTES_PER_SECOND);
+                entry.errorRate = values.getDouble("errorRate", 0);
+                entry.lastFailure = values.getLong("lastFailure", 0);
+                entry.samples = values.getLong("samples", 0);
+                stats.entries.put(member.getName(), entry);
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring unreadable mirror statistics " + file + ": " + e.getMessage());
+            stats.entries.clear();
+        }
+        return stats;
+    }
+
+    public synchronized void save() throws IOException {
+        if (file == null) return;
+        JsonObject mirrors = Json.object();
+        for (Map.Entry<String, Entry> mirror : new TreeMap<>(entries).entrySet()) {
+            Entry entry = mirror.getValue();
+            mirrors.add(
+                    mirror.getKey(),
+                    Json.object()
+                            .add("latencyMillis", Math.round(entry.latencyMillis))
+                            .add("bytesPerSecond", Math.round(entry.bytesPerSecond))
+                            .add("errorRate", entry.errorRate)
+                            .add("lastFailure", entry.lastFailure)
+                            .add("samples", entry.samples));
+        }
+        JsonObject json = Json.object().add("version", FORMAT_VERSION).add("mirrors", mirrors);
+
+        Files.createDirectories(file.getParent());
+        Path tempFile = Files.createTempFile(file.getParent(), FILE_NAME, ".tmp");
+        try {
+            Files.writeString(tempFile, json.toString());
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * @return the mirrors, fastest expected first. Mirrors that are expected to be equally fast keep their order.
+     */
+    public List<String> rank(Collection<String> mirrors, long expectedBytes) {
+        Map<String, Double> expected = new HashMap<>();
+        for (String mirror : mirrors) {
+            expected.put(mirror, expectedMillis(mirror, expectedBytes));
+        }
+        List<String> ranked = new ArrayList<>(mirrors);
+        ranked.sort(Comparator.comparingDouble(expected::get));
+        return ranked;
+    }
+
+    /**
+     * @return the expected time to download {@code bytes} from the mirror serving {@code url}, including retries
+     * after failures
+     */
+    public synchronized double expectedMillis(String url, long bytes) {
+        Entry entry = entries.get(mirrorOf(url));
+        if (entry == null) {
+            return DEFAULT_LATENCY_MILLIS + bytes * 1000.0 / DEFAULT_BYTES_PER_SECOND;
+        }
+        double age = System.currentTimeMillis() - entry.lastFailure;
+        double errorRate = Math.min(MAX_ERROR_RATE, entry.errorRate * Math.pow(0.5, age / ERROR_HALF_LIFE_MILLIS));
+        double attemptMillis = entry.latencyMillis + bytes * 1000.0 / entry.bytesPerSecond;
+        return attemptMillis / (1 - errorRate);
+    }
+
+    /**
+     * @param throughputLimited whether downloads are slowed down on purpose, e.g. by a {@link BandwidthLimiter}. Their
+     *                          transfer times then only tell how fast the limit is, so only latencies are recorded.
+     */
+    public void setThroughputLimited(boolean throughputLimited) {
+        this.throughputLimited = throughputLimited;
+    }
+
+    /**
+     * Starts timing a request to {@code url}.
+     */
+    public Sample start(String url) {
+        return new Sample(mirrorOf(url));
+    }
+
+    public synchronized void recordFailure(String url) {
+        Entry entry = entries.computeIfAbsent(mirrorOf(url), mirror -> new Entry());
+        entry.errorRate = average(entry.errorRate, 1);
+        entry.lastFailure = System.currentTimeMillis();
+        entry.samples++;
+    }
+
+    private synchronized void recordSuccess(String mirror) {
+        Entry entry = entries.computeIfAbsent(mirror, m -> new Entry());
+        entry.errorRate = average(entry.errorRate, 0);
+        entry.samples++;
+    }
+
+    private synchronized void recordTiming(String mirror, double latencyMillis, long bytes, double transferMillis) {
+        Entry entry = entries.computeIfAbsent(mirror, m -> new Entry());
+        boolean first = entry.samples == 0;
+        entry.latencyMillis = first ? latencyMillis : average(entry.latencyMillis, latencyMillis);
+        if (!throughputLimited && bytes >= MIN_THROUGHPUT_SAMPLE_BYTES && transferMillis > 0) {
+            double bytesPerSecond = bytes * 1000.0 / transferMillis;
+            entry.bytesPerSecond = first ? bytesPerSecond : average(entry.bytesPerSecond, bytesPerSecond);
+        }
+        recordSuccess(mirror);
+    }
+
+    private static double average(double current, double sample) {
+        return current + SMOOTHING * (sample - current);
+    }
+
+    /**
+     * @return the scheme and host of {@code url}, mirrors are told apart by them
+     */
+    static String mirrorOf(String url) {
+        URI uri = URI.create(url);
+        return uri.getScheme() + "://" + uri.getAuthority();
+    }
+
+    /**
+     * Times one request, from sending it over receiving the response headers to the end of the body.
+     */
+    public final class Sample {
+        private final String mirror;
+        private final long startNanos = System.nanoTime();
+        private volatile long headersNanos;
+
+        private Sample(String mirror) {
+            this.mirror = mirror;
+        }
+
+        /**
+         * @return {@code handler}, noting when the response headers arrive
+         */
+        public <T> HttpResponse.BodyHandler<T> timing(HttpResponse.BodyHandler<T> handler) {
+            return responseInfo -> {
+                headersNanos = System.nanoTime();
+                return handler.apply(responseInfo);
+            };
+        }
+
+        /**
+         * @param bytes the size of the response body. Requests whose body handler was not {@link #timing timed} only
+         *              count as a success, without any timing.
+         */
+        public void succeeded(long bytes) {
+            long endNanos = System.nanoTime();
+            long headers = headersNanos;
+            if (headers == 0) {
+                recordSuccess(mirror);
+            } else {
+                recordTiming(mirror, (headers - startNanos) / 1e6, bytes, (endNanos - headers) / 1e6);
+            }
+        }
+
+        public void failed() {
+            recordFailure(mirror);
+        }
+    }
+}
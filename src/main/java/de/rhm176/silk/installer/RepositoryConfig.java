@@ -0,0 +1,223 @@
+/*
+ * Copyright 2025 Silk Loader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.rhm176.silk.installer;
+
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.JsonValue;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Where the installer downloads from, for installing through a local Maven mirror or an HTTP proxy.
+ * <p>
+ * Every setting can come from a JSON file, from environment variables or from command line options. Command line
+ * options win over environment variables, which win over the file:
+ * <pre>
+ * {
+ *   "mavens": ["http://nexus.lan/repository/fabric/", "https://maven.fabricmc.net/"],
+ *   "silkReleasesUrl": "http://nexus.lan/repository/github-api/repos/SilkLoader/silk-loader/releases",
+ *   "fabricMetaUrl": "http://nexus.lan/repository/fabric-meta/",
+ *   "rewrites": {"https://github.com/": ["http://nexus.lan/repository/github/"]},
+ *   "proxy": "proxy.lan:3128",
+ *   "maxRate": "2M"
+ * }
+ * </pre>
+ * {@code mavens} replaces {@link Main#FABRIC_MAVENS} and is tried in the given order, before the repository a library
+ * names itself. A rewrite replaces the prefix of any requested URL. Its replacements are tried in order and the
+ * original URL is tried last, so an unreachable mirror only costs a failed request. {@code maxRate} limits how fast all
+ * downloads together may receive data, see {@link BandwidthLimiter#parseRate}.
+ *
+ * @param mavens   the Fabric mavens in the order to try them, or empty to keep the defaults
+ * @param rewrites URL prefixes and their replacements
+ * @param proxy    the HTTP proxy for all requests, or null to connect directly
+ * @param maxRate  the bandwidth limit in bytes per second, or 0 for none
+ */
+public record RepositoryConfig(
+        List<String> mavens, Map<String, List<String>> rewrites, InetSocketAddress proxy, long maxRate) {
+    public static final String FILE_NAME = "repositories.json";
+
+    static final String FABRIC_META_URL = "https://meta.fabricmc.net/";
+
+    /**
+     * Reads the configuration from the file, the environment and the given command line options.
+     *
+     * @throws IOException              if the configuration file cannot be read
+     * @throws IllegalArgumentException if a setting is malformed
+     */
+    public static RepositoryConfig load(Map<String, String> options) throws IOException {
+        Map<String, String> environment = System.getenv();
+        String fileSetting = setting(options, "repositories", environment, "SILK_INSTALLER_REPOSITORIES");
+        Path file = fileSetting != null
+                ? Path.of(fileSetting)
+                : Path.of(System.getProperty("user.home"), ".silk-installer", FILE_NAME);
+        JsonObject json = Json.object();
+        if (Files.isRegularFile(file)) {
+            try {
+                json = Json.parse(Files.readString(file)).asObject();
+            } catch (RuntimeException e) {
+                throw new IOException("Malformed repository configuration " + file + ": " + e.getMessage(), e);
+            }
+        } else if (fileSetting != null) {
+            throw new IOException("Repository configuration " + file + " does not exist");
+        }
+
+        List<String> mavens = new ArrayList<>();
+        String mavensSetting = setting(options, "mavens", environment, "SILK_INSTALLER_MAVENS");
+        if (mavensSetting != null) {
+            mavens.addAll(split(mavensSetting));
+        } else if (json.get("mavens") != null) {
+            for (JsonValue maven : json.get("mavens").asArray()) {
+                mavens.add(maven.asString());
+            }
+        }
+
+        Map<String, List<String>> rewrites = new LinkedHashMap<>();
+        JsonValue rewritesJson = json.get("rewrites");
+        if (rewritesJson != null) {
+            for (JsonObject.Member rewrite : rewritesJson.asObject()) {
+                JsonValue targets = rewrite.getValue();
+                List<String> replacements = new ArrayList<>();
+                if (targets.isArray()) {
+                    targets.asArray().forEach(target -> replacements.add(target.asString()));
+                } else {
+                    replacements.add(targets.asString());
+                }
+                rewrites.put(rewrite.getName(), replacements);
+            }
+        }
+        for (String source : new String[] {environment.get("SILK_INSTALLER_REWRITES"), options.get("rewrite")}) {
+            if (source == null) continue;
+            for (String rule : split(source)) {
+                int equals = rule.indexOf('=');
+                if (equals <= 0) {
+                    throw new IllegalArgumentException(
+                            "Invalid rewrite '" + rule + "', expected <prefix>=<replacement>");
+                }
+                rewrites.put(rule.substring(0, equals), List.of(rule.substring(equals + 1)));
+            }
+        }
+        String silkReleasesUrl =
+                setting(options, "silk-releases-url", environment, "SILK_INSTALLER_SILK_RELEASES_URL");
+        if (silkReleasesUrl == null) silkReleasesUrl = json.getString("silkReleasesUrl", null);
+        if (silkReleasesUrl != null) {
+            rewrites.put(Main.SILK_LOADER_RELEASES_URL, List.of(silkReleasesUrl));
+        }
+        String fabricMetaUrl = setting(options, "fabric-meta-url", environment, "SILK_INSTALLER_FABRIC_META_URL");
+        if (fabricMetaUrl == null) fabricMetaUrl = json.getString("fabricMetaUrl", null);
+        if (fabricMetaUrl != null) {
+            rewrites.put(FABRIC_META_URL, List.of(withTrailingSlash(fabricMetaUrl)));
+        }
+
+        String proxySetting = setting(options, "proxy", environment, "SILK_INSTALLER_PROXY");
+        if (proxySetting == null) proxySetting = json.getString("proxy", null);
+
+        String maxRateSetting = setting(options, "max-rate", environment, "SILK_INSTALLER_MAX_RATE");
+        if (maxRateSetting == null) maxRateSetting = json.getString("maxRate", null);
+
+        for (String maven : mavens) {
+            checkUrl(maven);
+        }
+        rewrites.values().forEach(replacements -> replacements.forEach(RepositoryConfig::checkUrl));
+        return new RepositoryConfig(
+                mavens.stream().map(RepositoryConfig::withTrailingSlash).toList(),
+                Collections.unmodifiableMap(rewrites),
+                proxySetting != null ? parseProxy(proxySetting) : null,
+                maxRateSetting != null ? BandwidthLimiter.parseRate(maxRateSetting) : 0);
+    }
+
+    public boolean isDefault() {
+        return mavens.isEmpty() && rewrites.isEmpty() && proxy == null && maxRate == 0;
+    }
+
+    /**
+     * @return the URLs to try for {@code uri} in order, ending with {@code uri} itself
+     */
+    public List<URI> candidates(URI uri) {
+        String url = uri.toString();
+        String longestPrefix = null;
+        for (String prefix : rewrites.keySet()) {
+            if (url.startsWith(prefix) && (longestPrefix == null || prefix.length() > longestPrefix.length())) {
+                longestPrefix = prefix;
+            }
+        }
+        if (longestPrefix == null) return List.of(uri);
+        List<URI> candidates = new ArrayList<>();
+        for (String replacement : rewrites.get(longestPrefix)) {
+            candidates.add(URI.create(replacement + url.substring(longestPrefix.length())));
+        }
+        candidates.add(uri);
+        return candidates;
+    }
+
+    /**
+     * @return a client that connects through the configured proxy, applies the rewrites and keeps to the bandwidth
+     * limit
+     */
+    public HttpClient createHttpClient() {
+        HttpClient.Builder builder = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NORMAL);
+        if (proxy != null) {
+            builder.proxy(ProxySelector.of(proxy));
+        }
+        HttpClient client = builder.build();
+        if (maxRate > 0) {
+            // below the rewrites, so that fallbacks to another mirror share the same limit
+            client = new ThrottlingHttpClient(client, new BandwidthLimiter(maxRate));
+        }
+        return rewrites.isEmpty() ? client : new RewritingHttpClient(client, this);
+    }
+
+    private static String setting(
+            Map<String, String> options, String option, Map<String, String> environment, String variable) {
+        String value = options.get(option);
+        if (value == null || value.isEmpty()) value = environment.get(variable);
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    private static List<String> split(String list) {
+        return Arrays.stream(list.split(",")).map(String::trim).filter(s -> !s.isEmpty()).toList();
+    }
+
+    private static String withTrailingSlash(String url) {
+        return url.endsWith("/") ? url : url + "/";
+    }
+
+    private static void checkUrl(String url) {
+        URI uri = URI.create(url);
+        if (!"http".equals(uri.getScheme()) && !"https".equals(uri.getScheme())) {
+            throw new IllegalArgumentException("Repository URL '" + url + "' must use http or https");
+        }
+    }
+
+    private static InetSocketAddress parseProxy(String proxy) {
+        String address = proxy.replaceFirst("^https?://", "").replaceFirst("/$", "");
+        int colon = address.lastIndexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("Invalid proxy '" + proxy + "', expected <host>:<port>");
+        }
+        try {
+            return new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid proxy port in '" + proxy + "'");
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2025 Silk Loader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.rhm176.silk.installer;
+
+import java.io.IOException;
+import java.net.Authenticator;
+import java.net.CookieHandler;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+
+/**
+ * {@link HttpClient} that sends every request to the URLs a {@link RepositoryConfig} rewrites it to, one after the
+ * other, until one of them answers. Callers keep working with the original URLs, so lock files and prefetched files
+ * stay the same with and without a local mirror.
+ */
+class RewritingHttpClient extends HttpClient {
+    private final HttpClient delegate;
+    private final RepositoryConfig config;
+
+    RewritingHttpClient(HttpClient delegate, RepositoryConfig config) {
+        this.delegate = delegate;
+        this.config = config;
+    }
+
+    // a mirror that does not have a file, or is broken, falls through to the next candidate
+    private static boolean isFallbackStatus(int statusCode) {
+        return statusCode == 404 || statusCode >= 500;
+    }
+
+    private static HttpRequest withUri(HttpRequest request, URI uri) {
+        // credentials for e.g. the GitHub API are not meant for the mirrors standing in for it
+        boolean sameHost = uri.getHost() != null && uri.getHost().equalsIgnoreCase(request.uri().getHost());
+        return HttpRequest.newBuilder(request, (name, value) -> sameHost || !name.equalsIgnoreCase("Authorization"))
+                .uri(uri)
+                .build();
+    }
+
+    @Override
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler)
+            throws IOException, InterruptedException {
+        CompletableFuture<HttpResponse<T>> response = sendAsync(request, responseBodyHandler);
+        try {
+            return response.get();
+        } catch (InterruptedException e) {
+            response.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) throw ioException;
+            if (cause instanceof RuntimeException runtimeException) throw runtimeException;
+            throw new IOException(cause);
+        }
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(
+            HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler) {
+        List<URI> candidates = config.candidates(request.uri());
+        if (candidates.size() == 1) {
+            return delegate.sendAsync(request, responseBodyHandler);
+        }
+        CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+        AtomicReference<CompletableFuture<?>> current = new AtomicReference<>();
+        // cancelling the result has to abort the exchange that is running right now
+        result.whenComplete((response, failure) -> {
+            CompletableFuture<?> running = current.get();
+            if (result.isCancelled() && running != null) running.cancel(true);
+        });
+        attempt(request, responseBodyHandler, candidates, 0, result, current);
+        return result;
+    }
+
+    private <T> void attempt(
+            HttpRequest request,
+            HttpResponse.BodyHandler<T> responseBodyHandler,
+            List<URI> candidates,
+            int index,
+            CompletableFuture<HttpResponse<T>> result,
+            AtomicReference<CompletableFuture<?>> current) {
+        if (result.isDone()) return;
+        boolean last = index == candidates.size() - 1;
+        // only the body of the answer that is used may reach the caller's handler, it may be writing to a file
+        HttpResponse.BodyHandler<T> handler = last
+                ? responseBodyHandler
+                : responseInfo -> isFallbackStatus(responseInfo.statusCode())
+                        ? HttpResponse.BodySubscribers.replacing(null)
+                        : responseBodyHandler.apply(responseInfo);
+        CompletableFuture<HttpResponse<T>> response =
+                delegate.sendAsync(withUri(request, candidates.get(index)), handler);
+        current.set(response);
+        if (result.isCancelled()) response.cancel(true);
+        response.whenComplete((answer, failure) -> {
+            Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+            if (last || (cause == null && !isFallbackStatus(answer.statusCode()))) {
+                if (cause == null) {
+                    result.complete(answer);
+                } else {
+                    result.completeExceptionally(cause);
+                }
+            } else if (cause != null && !(cause instanceof IOException)) {
+                result.completeExceptionally(cause);
+            } else {
+                System.err.println(
+                        "Could not fetch " + candidates.get(index) + ", trying " + candidates.get(index + 1));
+                attempt(request, responseBodyHandler, candidates, index + 1, result, current);
+            }
+        });
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(
+            HttpRequest request,
+            HttpResponse.BodyHandler<T> responseBodyHandler,
+            HttpResponse.PushPromiseHandler<T> pushPromiseHandler) {
+        // pushed responses cannot fall back, so these only go to the first candidate
+        URI uri = config.candidates(request.uri()).get(0);
+        return delegate.sendAsync(withUri(request, uri), responseBodyHandler, pushPromiseHandler);
+    }
+
+    @Override
+    public Optional<CookieHandler> cookieHandler() {
+        return delegate.cookieHandler();
+    }
+
+    @Override
+    public Optional<Duration> connectTimeout() {
+        return delegate.connectTimeout();
+    }
+
+    @Override
+    public Redirect followRedirects() {
+        return delegate.followRedirects();
+    }
+
+    @Override
+    public Optional<ProxySelector> proxy() {
+        return delegate.proxy();
+    }
+
+    @Override
+    public SSLContext sslContext() {
+        return delegate.sslContext();
+    }
+
+    @Override
+    public SSLParameters sslParameters() {
+        return delegate.sslParameters();
+    }
+
+    @Override
+    public Optional<Authenticator> authenticator() {
+        return delegate.authenticator();
+    }
+
+    @Override
+    public Version version() {
+        return delegate.version();
+    }
+
+    @Override
+    public Optional<Executor> executor() {
+        return delegate.executor();
+    }
+}
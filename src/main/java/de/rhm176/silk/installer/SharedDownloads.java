@@ -0,0 +1,316 @@
+/*
+ * Copyright 2025 Silk Loader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.rhm176.silk.installer;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Makes installers that run at the same time download every file only once, whether they run in this process, e.g.
+ * jobs of the {@link InstallerDaemon}, or in other processes on the same machine.
+ * <p>
+ * Downloads go to a cache directory shared by all installers of the user. Within a process, requests for a file that
+ * is already being downloaded wait for that download. Across processes, a {@link FileLock} on a lock file next to the
+ * cached file is held while downloading it, so that another installer waits for the lock and then finds the file
+ * instead of downloading it again. A download is written to a {@code .part} file only its lock holder touches and
+ * moved into place once it is complete and intact, so the cache never contains a partial file. A cached file that
+ * turns out to be broken when it is reused is downloaded again.
+ * <p>
+ * Cached files are kept for later installations, within limits: {@link #prune} evicts the files that were not used
+ * for {@link #MAX_UNUSED_DAYS} days, then the least recently used ones until the cache fits in {@link #MAX_BYTES}.
+ * Installed jars that are hard links to evicted files keep their contents. Deleting the cache directory while no
+ * installer runs is safe.
+ */
+public final class SharedDownloads {
+    static final long MAX_BYTES = 1024L * 1024 * 1024;
+    static final long MAX_UNUSED_DAYS = 90;
+
+    private static final long LOCK_POLL_MILLIS = 50;
+    // a file fetched this recently may still be about to be copied into an installation
+    private static final long MIN_UNUSED_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * @param file      the cached file, which must not be modified
+     * @param sourceUrl the URL the file was downloaded from
+     * @param reused    true if the file was downloaded by an earlier or concurrent request
+     */
+    public record Entry(Path file, String sourceUrl, boolean reused) {
+        /**
+         * Puts the cached file at {@code target}, as a hard link where possible since installations never modify a
+         * jar in place.
+         */
+        public void copyTo(Path target) throws IOException {
+            Files.deleteIfExists(target);
+            try {
+                Files.createLink(target, file);
+            } catch (UnsupportedOperationException | FileSystemException e) {
+                Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    /**
+     * Downloads a file that is not cached yet.
+     */
+    @FunctionalInterface
+    public interface Download {
+        /**
+         * @param target where to write the file, nothing else writes to it
+         * @return the URL the file was downloaded from
+         */
+        String to(Path target) throws IOException, InterruptedException;
+    }
+
+    /**
+     * Checks a file whose SHA-256 is unknown, e.g. that a jar is a readable zip file and not an error page.
+     */
+    @FunctionalInterface
+    public interface Check {
+        /**
+         * @throws IOException if the file is broken
+         */
+        void verify(Path file) throws IOException;
+    }
+
+    private final Path cacheDir;
+    private final Map<String, CompletableFuture<Entry>> inFlight = new ConcurrentHashMap<>();
+
+    public SharedDownloads(Path cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    public static Path defaultCacheDir() {
+        return Path.of(System.getProperty("user.home"), ".silk-installer", "downloads");
+    }
+
+    /**
+     * Returns the cached file for {@code key}, downloading it first unless it is cached already. If it is being
+     * downloaded by this or another process, waits for that download instead.
+     *
+     * @param key            identifies the file, requests with the same key get the same file
+     * @param expectedSha256 the SHA-256 the file must have, or null if unknown. A cached file that does not match is
+     *                       downloaded again.
+     * @param check          checks the file instead if {@code expectedSha256} is null. A cached file that fails it is
+     *                       downloaded again.
+     * @param status         told when the file is being downloaded by another process, or null
+     */
+    public Entry fetch(
+            String key,
+            String expectedSha256,
+            Check check,
+            Download download,
+            StatusListener status,
+            CancellationToken cancellation)
+            throws IOException, InterruptedException {
+        while (true) {
+            CompletableFuture<Entry> mine = new CompletableFuture<>();
+            CompletableFuture<Entry> running = inFlight.putIfAbsent(key, mine);
+            if (running != null) {
+                try {
+                    // a copy, so that cancelling this request does not cancel the download others wait for
+                    Entry entry = cancellation.await(running.copy());
+                    return new Entry(entry.file(), entry.sourceUrl(), true);
+                } catch (CancellationException e) {
+                    // the request that was downloading it was cancelled, this one takes over
+                    cancellation.throwIfCancelled();
+                    continue;
+                }
+            }
+            try {
+                Entry entry = fetchLocked(key, expectedSha256, check, download, status, cancellation);
+                mine.complete(entry);
+                return entry;
+            } catch (Throwable t) {
+                mine.completeExceptionally(t);
+                throw t;
+            } finally {
+                inFlight.remove(key, mine);
+            }
+        }
+    }
+
+    private Entry fetchLocked(
+            String key,
+            String expectedSha256,
+            Check check,
+            Download download,
+            StatusListener status,
+            CancellationToken cancellation)
+            throws IOException, InterruptedException {
+        Files.createDirectories(cacheDir);
+        String name = fileName(key);
+        Path cached = cacheDir.resolve(name);
+        Path source = cacheDir.resolve(name + ".source");
+        // lock files are never deleted, another process may be waiting for a lock on it
+        try (FileChannel channel = FileChannel.open(
+                cacheDir.resolve(name + ".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // closing the channel releases the lock
+            lock(channel, key, status, cancellation);
+            if (Files.isRegularFile(cached) && Files.isRegularFile(source)) {
+                if (isIntact(cached, expectedSha256, check)) {
+                    // the source file, since the cached file's times are shared with its hard links
+                    Files.setLastModifiedTime(source, FileTime.fromMillis(System.currentTimeMillis()));
+                    return new Entry(cached, Files.readString(source), true);
+                }
+                Main.updateStatus(status, "The cached copy of " + key + " is broken, downloading it again.");
+                Files.delete(cached);
+            }
+            Path part = cacheDir.resolve(name + ".part");
+            Files.deleteIfExists(part);
+            try {
+                String sourceUrl = download.to(part);
+                if (expectedSha256 == null) {
+                    check.verify(part);
+                } else if (!InstallFingerprint.sha256(part).equalsIgnoreCase(expectedSha256)) {
+                    throw new IOException(
+                            "Downloaded " + key + " does not have the expected SHA-256 " + expectedSha256);
+                }
+                Files.writeString(source, sourceUrl);
+                Files.move(part, cached, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                return new Entry(cached, sourceUrl, false);
+            } finally {
+                Files.deleteIfExists(part);
+            }
+        }
+    }
+
+    private static boolean isIntact(Path file, String expectedSha256, Check check) throws IOException {
+        if (expectedSha256 != null) return InstallFingerprint.sha256(file).equalsIgnoreCase(expectedSha256);
+        try {
+            check.verify(file);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Evicts cached files that were not used for {@link #MAX_UNUSED_DAYS} days, then the least recently used ones
+     * until the cache fits in {@link #MAX_BYTES}. Files that are being downloaded or were used within the last hour
+     * are kept.
+     */
+    public void prune() {
+        record Cached(String name, long lastUsed, long size) {}
+        List<Cached> cached = new ArrayList<>();
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            for (Path source : files.filter(p -> p.getFileName().toString().endsWith(".source")).toList()) {
+                String fileName = source.getFileName().toString();
+                String name = fileName.substring(0, fileName.length() - ".source".length());
+                try {
+                    cached.add(new Cached(
+                            name,
+                            Files.getLastModifiedTime(source).toMillis(),
+                            Files.size(cacheDir.resolve(name))));
+                } catch (IOException e) {
+                    // replaced or evicted by another installer in the meantime
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (IOException e) {
+            System.err.println("Could not clean up the download cache " + cacheDir + ": " + e.getMessage());
+            return;
+        }
+
+        cached.sort(Comparator.comparingLong(Cached::lastUsed));
+        long totalBytes = cached.stream().mapToLong(Cached::size).sum();
+        long now = System.currentTimeMillis();
+        for (Cached entry : cached) {
+            long unusedMillis = now - entry.lastUsed();
+            // least recently used first, so all that follow are kept as well
+            if (unusedMillis < MIN_UNUSED_MILLIS) break;
+            if (totalBytes <= MAX_BYTES && unusedMillis < TimeUnit.DAYS.toMillis(MAX_UNUSED_DAYS)) break;
+            if (evict(entry.name())) totalBytes -= entry.size();
+        }
+    }
+
+    /**
+     * @return true if the cached file was deleted, false if it is in use
+     */
+    private boolean evict(String name) {
+        try (FileChannel channel = FileChannel.open(
+                cacheDir.resolve(name + ".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            try {
+                if (channel.tryLock() == null) return false;
+            } catch (OverlappingFileLockException e) {
+                return false;
+            }
+            Path source = cacheDir.resolve(name + ".source");
+            // it may have been used since it was listed
+            if (System.currentTimeMillis() - Files.getLastModifiedTime(source).toMillis() < MIN_UNUSED_MILLIS) {
+                return false;
+            }
+            // a cached file without a source file is downloaded again, so the source file goes first
+            Files.delete(source);
+            Files.deleteIfExists(cacheDir.resolve(name));
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Waits for the lock on {@code channel} while staying cancellable, which {@link FileChannel#lock()} is not.
+     */
+    private static void lock(FileChannel channel, String key, StatusListener status, CancellationToken cancellation)
+            throws IOException, InterruptedException {
+        boolean announced = false;
+        while (true) {
+            cancellation.throwIfCancelled();
+            try {
+                if (channel.tryLock() != null) return;
+            } catch (OverlappingFileLockException e) {
+                // held by another SharedDownloads of this process, which does not share this one's in-flight requests
+            }
+            if (!announced) {
+                Main.updateStatus(status, "Waiting for another installer that is downloading " + key + "...");
+                announced = true;
+            }
+            Thread.sleep(LOCK_POLL_MILLIS);
+        }
+    }
+
+    /**
+     * @return a file name that is unique for {@code key} and still tells which file it is
+     */
+    private static String fileName(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            String readable = key.substring(key.lastIndexOf('/') + 1).replaceAll("[^A-Za-z0-9._+-]", "-");
+            if (readable.length() > 80) readable = readable.substring(readable.length() - 80);
+            return HexFormat.of().formatHex(digest, 0, 8) + "-" + readable;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright 2025 Silk Loader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.rhm176.silk.installer;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.zip.ZipFile;
+
+/**
+ * Builds a complete installation layout in a staging directory next to the game files and swaps it in with a
+ * handful of renames, so the game directory is never left half-installed.
+ * <p>
+ * The previous layout is moved into a backup directory first. If any rename fails, everything is moved back. The
+ * backup directory records which entries a swap replaces and whether it got to swap in every staged entry. If the
+ * installer dies before that, the next run puts the whole previous layout back before it starts. If it dies after
+ * that, the backup is discarded and the new layout stays.
+ * <p>
+ * From {@link #begin} until {@link #close}, a lock on a lock file in the game directory is held, so installers in
+ * this and other processes work on the same game directory one after another. Staging and backup directories are
+ * only treated as left over by a crash while holding the lock, since otherwise they may be another installer's.
+ */
+public final class StagedInstall implements AutoCloseable {
+    static final String STAGING_DIR_PREFIX = ".silk-staging-";
+    static final String BACKUP_DIR_PREFIX = ".silk-backup-";
+    static final String LOCK_FILE_NAME = ".silk-staging.lock";
+    // written into the backup directory before the first rename, one line per entry the swap touches
+    static final String SWAP_PLAN_FILE_NAME = ".silk-swap-plan";
+    // written into the backup directory once every staged entry is in place
+    static final String SWAP_DONE_FILE_NAME = ".silk-swap-done";
+
+    // swap plan line prefixes, for entries that existed before the swap and for those that did not
+    private static final String REPLACED = "replace ";
+    private static final String ADDED = "add ";
+
+    private static final long LOCK_POLL_MILLIS = 100;
+
+    /**
+     * Top level entries of the game directory that belong to an installation. Existing entries with these names are
+     * replaced as a whole on commit, even if the new layout does not contain them.
+     */
+    static final List<String> LAYOUT_ENTRIES = List.of(
+            Main.SILK_LOADER_FIXED_JAR_NAME,
+            "lib",
+            InstallFingerprint.FILE_NAME,
+            LaunchProfile.ARGFILE_NAME,
+            LaunchProfile.CDS_ARCHIVE_NAME,
+            JarPacker.PACKED_JAR_NAME,
+            InstallLock.FILE_NAME);
+
+    private final Path gamePath;
+    private final Path stagingDir;
+    // closing it releases the lock on the game directory
+    private final FileChannel lockChannel;
+    private boolean committed;
+
+    private StagedInstall(Path gamePath, Path stagingDir, FileChannel lockChannel) {
+        this.gamePath = gamePath;
+        this.stagingDir = stagingDir;
+        this.lockChannel = lockChannel;
+    }
+
+    /**
+     * Waits until no other installer works on {@code gamePath}, cleans up after an earlier run that did not finish
+     * and creates an empty staging directory.
+     */
+    public static StagedInstall begin(Path gamePath, CancellationToken cancellation)
+            throws IOException, InterruptedException {
+        FileChannel lockChannel = lock(gamePath, cancellation);
+        try {
+            recover(gamePath);
+            Path stagingDir = gamePath.resolve(STAGING_DIR_PREFIX + UUID.randomUUID());
+            Files.createDirectory(stagingDir);
+            return new StagedInstall(gamePath, stagingDir, lockChannel);
+        } catch (Throwable t) {
+            lockChannel.close();
+            throw t;
+        }
+    }
+
+    /**
+     * Waits until no other installer works on {@code gamePath}, for changes to the installation that do not go
+     * through a staging directory. Unlike {@link FileChannel#lock()}, waiting stays cancellable.
+     *
+     * @return the channel holding the lock, closing it releases the lock
+     */
+    public static FileChannel lock(Path gamePath, CancellationToken cancellation)
+            throws IOException, InterruptedException {
+        // the lock file is never deleted, another installer may be waiting for a lock on it
+        FileChannel channel = FileChannel.open(
+                gamePath.resolve(LOCK_FILE_NAME), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            boolean announced = false;
+            while (true) {
+                cancellation.throwIfCancelled();
+                try {
+                    if (channel.tryLock() != null) return channel;
+                } catch (OverlappingFileLockException e) {
+                    // held by another installation into the same directory in this process
+                }
+                if (!announced) {
+                    System.out.println("Waiting for another installer that is working on " + gamePath + "...");
+                    announced = true;
+                }
+                Thread.sleep(LOCK_POLL_MILLIS);
+            }
+        } catch (Throwable t) {
+            channel.close();
+            throw t;
+        }
+    }
+
+    /**
+     * Cleans up after an earlier run that did not finish, which the caller must hold the lock for. Leftover staging
+     * directories are discarded. A leftover backup directory is {@link #restore restored} unless its swap finished,
+     * then it is discarded.
+     */
+    private static void recover(Path gamePath) throws IOException {
+        List<Path> leftovers;
+        try (Stream<Path> entries = Files.list(gamePath)) {
+            leftovers = entries.filter(p -> {
+                        String name = p.getFileName().toString();
+                        return name.startsWith(STAGING_DIR_PREFIX) || name.startsWith(BACKUP_DIR_PREFIX);
+                    })
+                    .toList();
+        }
+        for (Path leftover : leftovers) {
+            if (leftover.getFileName().toString().startsWith(BACKUP_DIR_PREFIX)) {
+                restore(gamePath, leftover);
+            }
+            DirectoryDeleter.moveToTrash(gamePath, leftover);
+        }
+    }
+
+    /**
+     * Undoes the interrupted swap recorded in {@code backupDir}, so the game directory holds exactly the layout from
+     * before the swap again. Swaps that got to swap in every staged entry are kept, as are swaps that were
+     * interrupted before they moved anything.
+     */
+    private static void restore(Path gamePath, Path backupDir) throws IOException {
+        Path planFile = backupDir.resolve(SWAP_PLAN_FILE_NAME);
+        if (Files.exists(backupDir.resolve(SWAP_DONE_FILE_NAME)) || !Files.exists(planFile)) return;
+        System.out.println("Restoring the installation an earlier run left half-swapped in " + gamePath + "...");
+        for (String line : Files.readAllLines(planFile)) {
+            boolean replaced = line.startsWith(REPLACED);
+            String entry = line.substring(replaced ? REPLACED.length() : ADDED.length());
+            Path current = gamePath.resolve(entry);
+            Path backedUp = backupDir.resolve(entry);
+            if (Files.exists(backedUp, LinkOption.NOFOLLOW_LINKS)) {
+                // whatever is in the game directory now was swapped in
+                if (Files.exists(current, LinkOption.NOFOLLOW_LINKS)) DirectoryDeleter.moveToTrash(gamePath, current);
+                Files.move(backedUp, current, StandardCopyOption.ATOMIC_MOVE);
+            } else if (!replaced && Files.exists(current, LinkOption.NOFOLLOW_LINKS)) {
+                DirectoryDeleter.moveToTrash(gamePath, current);
+            }
+            // a replaced entry without a backup was not moved out yet or was already moved back
+        }
+    }
+
+    public Path stagingDir() {
+        return stagingDir;
+    }
+
+    public Path resolve(String entry) {
+        return stagingDir.resolve(entry);
+    }
+
+    /**
+     * Checks that every jar in the staged layout is a readable zip file, which catches truncated downloads.
+     *
+     * @param requiredEntries top level entries that must be present in the staged layout
+     */
+    public void verify(String... requiredEntries) throws IOException {
+        for (String entry : requiredEntries) {
+            if (!Files.exists(resolve(entry))) {
+                throw new IOException("Staged installation is missing " + entry);
+            }
+        }
+        List<Path> jars;
+        try (Stream<Path> walk = Files.walk(stagingDir)) {
+            jars = walk.filter(p -> p.getFileName().toString().endsWith(".jar"))
+                    .filter(Files::isRegularFile)
+                    .toList();
+        }
+        for (Path jar : jars) {
+            try {
+                // opening reads the central directory, which is at the very end of the file
+                new ZipFile(jar.toFile()).close();
+            } catch (IOException e) {
+                throw new IOException("Staged file " + stagingDir.relativize(jar) + " is not a valid jar", e);
+            }
+        }
+    }
+
+    /**
+     * Swaps the staged layout into the game directory. On failure the previous layout is restored before the
+     * exception is rethrown.
+     */
+    public void commit() throws IOException {
+        Set<String> entries = new LinkedHashSet<>(LAYOUT_ENTRIES);
+        try (Stream<Path> staged = Files.list(stagingDir)) {
+            staged.map(p -> p.getFileName().toString()).forEach(entries::add);
+        }
+
+        Path backupDir = gamePath.resolve(BACKUP_DIR_PREFIX + UUID.randomUUID());
+        Files.createDirectory(backupDir);
+        List<String> plan = new ArrayList<>();
+        for (String entry : entries) {
+            plan.add((Files.exists(gamePath.resolve(entry), LinkOption.NOFOLLOW_LINKS) ? REPLACED : ADDED) + entry);
+        }
+        writeMarker(backupDir.resolve(SWAP_PLAN_FILE_NAME), plan);
+        List<String> backedUp = new ArrayList<>();
+        List<String> swappedIn = new ArrayList<>();
+        try {
+            for (String entry : entries) {
+                Path current = gamePath.resolve(entry);
+                if (Files.exists(current, LinkOption.NOFOLLOW_LINKS)) {
+                    Files.move(current, backupDir.resolve(entry), StandardCopyOption.ATOMIC_MOVE);
+                    backedUp.add(entry);
+                }
+            }
+            for (String entry : entries) {
+                Path staged = resolve(entry);
+                if (Files.exists(staged, LinkOption.NOFOLLOW_LINKS)) {
+                    Files.move(staged, gamePath.resolve(entry), StandardCopyOption.ATOMIC_MOVE);
+                    swappedIn.add(entry);
+                }
+            }
+            writeMarker(backupDir.resolve(SWAP_DONE_FILE_NAME), List.of());
+        } catch (IOException e) {
+            rollback(backupDir, backedUp, swappedIn, e);
+            throw e;
+        }
+
+        committed = true;
+        try {
+            DirectoryDeleter.moveToTrash(gamePath, backupDir);
+            Files.deleteIfExists(stagingDir);
+        } catch (IOException e) {
+            // the new layout is in place, the next run discards what is left
+            System.err.println("Could not discard the previous installation in " + backupDir + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes {@code lines} to {@code file} so that it either exists with all of them or not at all.
+     */
+    private static void writeMarker(Path file, List<String> lines) throws IOException {
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tempFile, lines);
+        Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return whether the staged layout was swapped into the game directory
+     */
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    private void rollback(Path backupDir, List<String> backedUp, List<String> swappedIn, IOException cause) {
+        try {
+            for (String entry : swappedIn) {
+                Files.move(gamePath.resolve(entry), resolve(entry), StandardCopyOption.ATOMIC_MOVE);
+            }
+            for (String entry : backedUp) {
+                Files.move(backupDir.resolve(entry), gamePath.resolve(entry), StandardCopyOption.ATOMIC_MOVE);
+            }
+            Files.deleteIfExists(backupDir.resolve(SWAP_DONE_FILE_NAME));
+            Files.deleteIfExists(backupDir.resolve(SWAP_PLAN_FILE_NAME));
+            Files.deleteIfExists(backupDir);
+        } catch (IOException e) {
+            // the backup directory is kept and restored by recover() on the next run
+            cause.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Discards the staged layout without touching the game directory unless it was committed, and lets the next
+     * installer have the game directory.
+     */
+    @Override
+    public void close() {
+        try {
+            if (!committed && Files.exists(stagingDir)) {
+                DirectoryDeleter.moveToTrash(gamePath, stagingDir);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not discard staging directory " + stagingDir + ": " + e.getMessage());
+        } finally {
+            try {
+                lockChannel.close();
+            } catch (IOException e) {
+                System.err.println("Could not release the lock on " + gamePath + ": " + e.getMessage());
+            }
+        }
+    }
+}
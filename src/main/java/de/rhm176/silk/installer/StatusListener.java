@@ -0,0 +1,40 @@
+/*
+ * Copyright 2025 Silk Loader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.rhm176.silk.installer;
+
+import java.nio.file.Path;
+
+/**
+ * Receives the progress of an operation, e.g. to show it in the installer window or to stream it to a client of the
+ * {@link InstallerDaemon}. Every message is printed to the console as well, see {@link Main#updateStatus}.
+ * <p>
+ * Listeners are called from the thread doing the work and have to hand messages over to their own thread themselves.
+ */
+public interface StatusListener {
+    void status(String message);
+
+    /**
+     * Called once an installation was committed.
+     *
+     * @param silkLoaderJar the jar the game has to be launched with
+     */
+    default void installed(Path silkLoaderJar) {}
+
+    /**
+     * Called once an uninstallation removed the mod files.
+     */
+    default void uninstalled() {}
+}
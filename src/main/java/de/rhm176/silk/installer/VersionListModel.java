@@ -0,0 +1,145 @@
+/*
+ * Copyright 2025 Silk Loader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.rhm176.silk.installer;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+import javax.swing.AbstractListModel;
+import javax.swing.ComboBoxModel;
+
+/**
+ * {@link ComboBoxModel} for the version dropdowns, which can hold every version ever published without slowing the
+ * window down.
+ * <p>
+ * The versions live in one array and the dropdown sees a filtered view of it, an array of indices. Replacing all
+ * versions fires a single change event instead of one per {@code addItem}. The view can be narrowed to the versions
+ * containing a text and to stable versions. Typing more of the filter text only searches the versions that are still
+ * visible.
+ */
+final class VersionListModel<E> extends AbstractListModel<E> implements ComboBoxModel<E> {
+    private static final int[] NO_INDICES = new int[0];
+
+    private final Predicate<E> stable;
+    private Object[] versions = new Object[0];
+    // lower case names, so that filtering does not convert every version on every keystroke
+    private String[] names = new String[0];
+    private int[] visible = NO_INDICES;
+    private int visibleCount;
+    private String filter = "";
+    private boolean stableOnly;
+    private Object selected;
+
+    /**
+     * @param stable tells which versions are stable, for {@link #setStableOnly}
+     */
+    VersionListModel(Predicate<E> stable) {
+        this.stable = stable;
+    }
+
+    /**
+     * Replaces all versions and selects the first visible one.
+     */
+    void setAll(List<? extends E> newVersions) {
+        int oldSize = visibleCount;
+        versions = newVersions.toArray();
+        names = new String[versions.length];
+        for (int i = 0; i < versions.length; i++) {
+            names[i] = versions[i].toString().toLowerCase(Locale.ROOT);
+        }
+        refilter(false);
+        selected = visibleCount > 0 ? getElementAt(0) : null;
+        fireContentsChanged(this, 0, Math.max(oldSize, visibleCount) - 1);
+    }
+
+    /**
+     * Only shows versions whose name contains {@code text}, ignoring case.
+     */
+    void setFilter(String text) {
+        String newFilter = text.trim().toLowerCase(Locale.ROOT);
+        if (newFilter.equals(filter)) return;
+        boolean narrowing = newFilter.startsWith(filter);
+        filter = newFilter;
+        updateView(narrowing);
+    }
+
+    void setStableOnly(boolean stableOnly) {
+        if (this.stableOnly == stableOnly) return;
+        this.stableOnly = stableOnly;
+        updateView(stableOnly);
+    }
+
+    private void updateView(boolean narrowing) {
+        int oldSize = visibleCount;
+        refilter(narrowing);
+        // a version that is filtered out cannot stay selected without the dropdown looking empty
+        if (visibleCount > 0 && !isVisible(selected)) {
+            selected = getElementAt(0);
+        }
+        fireContentsChanged(this, 0, Math.max(oldSize, visibleCount) - 1);
+    }
+
+    /**
+     * @param narrowing whether the filter only got stricter, so that only visible versions need to be checked
+     */
+    @SuppressWarnings("unchecked")
+    private void refilter(boolean narrowing) {
+        int[] candidates = narrowing ? visible : null;
+        int candidateCount = narrowing ? visibleCount : versions.length;
+        int[] matches = new int[candidateCount];
+        int count = 0;
+        for (int i = 0; i < candidateCount; i++) {
+            int index = candidates != null ? candidates[i] : i;
+            if (stableOnly && !stable.test((E) versions[index])) continue;
+            if (!filter.isEmpty() && !names[index].contains(filter)) continue;
+            matches[count++] = index;
+        }
+        visible = count == matches.length ? matches : Arrays.copyOf(matches, count);
+        visibleCount = count;
+    }
+
+    private boolean isVisible(Object version) {
+        for (int i = 0; i < visibleCount; i++) {
+            if (versions[visible[i]].equals(version)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public int getSize() {
+        return visibleCount;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E getElementAt(int index) {
+        return (E) versions[visible[index]];
+    }
+
+    @Override
+    public void setSelectedItem(Object item) {
+        if (item == null ? selected == null : item.equals(selected)) return;
+        selected = item;
+        // the same event DefaultComboBoxModel fires for a new selection
+        fireContentsChanged(this, -1, -1);
+    }
+
+    @Override
+    public Object getSelectedItem() {
+        return selected;
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2025 Silk Loader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.rhm176.silk.installer;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Keeps every installed combination of Silk Loader and Fabric Loader in {@code .silk-versions/<id>/} under the game,
+ * so that switching back to one of them needs no downloads.
+ * <p>
+ * A stored version is a copy of the installation layout, see {@link StagedInstall#LAYOUT_ENTRIES}. Jars are hard
+ * links wherever the file system supports them, since installations never modify a jar in place, which makes keeping
+ * a version practically free. The small files next to them are copied, the argument file is rewritten in place when
+ * the CDS archive is enabled.
+ * <p>
+ * Fabric's cache in {@code .fabric} only fits the version it was built for. Switching moves it into the stored
+ * version it belongs to and moves the cache of the version switched to back, so that the game does not have to
+ * rebuild it either.
+ * <p>
+ * Only the {@link #RETAINED_VERSIONS} versions that were active most recently are kept, in case jars could not be
+ * hard linked and every stored version is a full copy.
+ */
+public final class VersionStore {
+    public static final String DIR_NAME = ".silk-versions";
+    static final String FABRIC_CACHE_DIR = ".fabric";
+    static final int RETAINED_VERSIONS = 5;
+
+    private static final String TEMP_PREFIX = ".tmp-";
+
+    private VersionStore() {}
+
+    /**
+     * @return the directory name of a stored version
+     */
+    public static String id(String silkTag, String fabricVersion) {
+        return (silkTag + "_" + fabricVersion).replaceAll("[^A-Za-z0-9._+-]", "-");
+    }
+
+    /**
+     * @return the id of the version {@code lock} describes
+     */
+    public static String id(InstallLock lock) {
+        return id(lock.silkTag(), MavenArtifact.parse(lock.fabricLoader()).version());
+    }
+
+    public static Path directory(Path gamePath, String id) {
+        return gamePath.resolve(DIR_NAME).resolve(id);
+    }
+
+    /**
+     * Stores the installation that is active in {@code gamePath}, replacing an earlier copy of the same version, and
+     * discards the versions that were active least recently beyond {@link #RETAINED_VERSIONS}.
+     *
+     * @return the id it was stored as, or null if no installation with a lock file is active
+     */
+    public static String keep(Path gamePath) throws IOException {
+        Path lockFile = gamePath.resolve(InstallLock.FILE_NAME);
+        if (!Files.isRegularFile(lockFile) || !Files.isRegularFile(gamePath.resolve(Main.SILK_LOADER_FIXED_JAR_NAME))) {
+            return null;
+        }
+        String id = id(InstallLock.read(lockFile));
+        Path storeDir = gamePath.resolve(DIR_NAME);
+        Files.createDirectories(storeDir);
+        Path tempDir = storeDir.resolve(TEMP_PREFIX + UUID.randomUUID());
+        Files.createDirectory(tempDir);
+        try {
+            for (String entry : StagedInstall.LAYOUT_ENTRIES) {
+                Path source = gamePath.resolve(entry);
+                if (Files.exists(source)) {
+                    linkTree(source, tempDir.resolve(entry));
+                }
+            }
+            Path target = storeDir.resolve(id);
+            if (Files.exists(target)) {
+                // a stashed Fabric cache is still valid for the same version
+                Path fabricCache = target.resolve(FABRIC_CACHE_DIR);
+                if (Files.isDirectory(fabricCache)) {
+                    Files.move(fabricCache, tempDir.resolve(FABRIC_CACHE_DIR), StandardCopyOption.ATOMIC_MOVE);
+                }
+                DirectoryDeleter.moveToTrash(gamePath, target);
+            }
+            Files.move(tempDir, target, StandardCopyOption.ATOMIC_MOVE);
+            markActive(target);
+        } finally {
+            if (Files.exists(tempDir)) {
+                DirectoryDeleter.moveToTrash(gamePath, tempDir);
+            }
+        }
+        prune(gamePath, id);
+        return id;
+    }
+
+    /**
+     * Discards the stored versions that were active least recently, keeping {@link #RETAINED_VERSIONS} including
+     * {@code activeId}.
+     */
+    static void prune(Path gamePath, String activeId) throws IOException {
+        List<Path> versions;
+        try (Stream<Path> entries = Files.list(gamePath.resolve(DIR_NAME))) {
+            versions = entries.filter(p -> {
+                        String name = p.getFileName().toString();
+                        return !name.startsWith(TEMP_PREFIX) && !name.equals(activeId);
+                    })
+                    .sorted(Comparator.comparing(VersionStore::lastActive).reversed())
+                    .toList();
+        }
+        for (Path version : versions.subList(Math.min(versions.size(), RETAINED_VERSIONS - 1), versions.size())) {
+            DirectoryDeleter.moveToTrash(gamePath, version);
+        }
+    }
+
+    private static void markActive(Path version) throws IOException {
+        Files.setLastModifiedTime(version, FileTime.fromMillis(System.currentTimeMillis()));
+    }
+
+    private static FileTime lastActive(Path version) {
+        try {
+            return Files.getLastModifiedTime(version);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /**
+     * Fills {@code staging} with the stored version {@code id}, ready to be committed. Its Fabric cache stays in the
+     * store, see {@link #swapFabricCache}.
+     *
+     * @throws NoSuchFileException if the version is not stored
+     */
+    public static void stage(Path gamePath, String id, StagedInstall staging) throws IOException {
+        Path stored = directory(gamePath, id);
+        if (!Files.isRegularFile(stored.resolve(InstallLock.FILE_NAME))) {
+            throw new NoSuchFileException(stored.toString(), null, "version " + id + " is not stored");
+        }
+        try (Stream<Path> entries = Files.list(stored)) {
+            for (Path entry : entries.toList()) {
+                String name = entry.getFileName().toString();
+                if (name.equals(FABRIC_CACHE_DIR)) continue;
+                linkTree(entry, staging.resolve(name));
+            }
+        }
+        markActive(stored);
+    }
+
+    /**
+     * Moves the Fabric cache of the game into the stored version {@code fromId}, and the one stashed with the stored
+     * version {@code toId}, if there is one, into the game. Both are renames within the game directory.
+     *
+     * @return true if the cache of {@code toId} was restored
+     */
+    public static boolean swapFabricCache(Path gamePath, String fromId, String toId) throws IOException {
+        Path fabricCache = gamePath.resolve(FABRIC_CACHE_DIR);
+        if (Files.isDirectory(fabricCache)) {
+            Path stash = directory(gamePath, fromId).resolve(FABRIC_CACHE_DIR);
+            if (Files.exists(stash)) {
+                DirectoryDeleter.moveToTrash(gamePath, stash);
+            }
+            Files.move(fabricCache, stash, StandardCopyOption.ATOMIC_MOVE);
+        }
+        Path stashed = directory(gamePath, toId).resolve(FABRIC_CACHE_DIR);
+        if (!Files.isDirectory(stashed)) return false;
+        Files.move(stashed, fabricCache, StandardCopyOption.ATOMIC_MOVE);
+        return true;
+    }
+
+    /**
+     * @return the locks of all stored versions, sorted by id
+     */
+    public static List<InstallLock> list(Path gamePath) throws IOException {
+        Path storeDir = gamePath.resolve(DIR_NAME);
+        List<InstallLock> locks = new ArrayList<>();
+        if (!Files.isDirectory(storeDir)) return locks;
+        List<Path> versions;
+        try (Stream<Path> entries = Files.list(storeDir)) {
+            versions = entries.filter(p -> !p.getFileName().toString().startsWith(TEMP_PREFIX))
+                    .sorted()
+                    .toList();
+        }
+        for (Path version : versions) {
+            Path lockFile = version.resolve(InstallLock.FILE_NAME);
+            if (!Files.isRegularFile(lockFile)) continue;
+            try {
+                locks.add(InstallLock.read(lockFile));
+            } catch (IOException e) {
+                System.err.println("Ignoring unreadable stored version " + version + ": " + e.getMessage());
+            }
+        }
+        return locks;
+    }
+
+    /**
+     * Recreates {@code source} at {@code target}, hard linking jars and copying everything else.
+     */
+    private static void linkTree(Path source, Path target) throws IOException {
+        try (Stream<Path> walk = Files.walk(source)) {
+            for (Path path : walk.toList()) {
+                Path copy = target.resolve(source.relativize(path).toString());
+                if (Files.isDirectory(path)) {
+                    Files.createDirectories(copy);
+                } else if (path.getFileName().toString().endsWith(".jar")) {
+                    try {
+                        Files.createLink(copy, path);
+                    } catch (UnsupportedOperationException | FileSystemException e) {
+                        Files.copy(path, copy, StandardCopyOption.COPY_ATTRIBUTES);
+                    }
+                } else {
+                    Files.copy(path, copy, StandardCopyOption.COPY_ATTRIBUTES);
+                }
+            }
+        }
+    }
+}
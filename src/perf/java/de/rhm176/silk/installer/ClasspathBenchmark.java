@@ -0,0 +1,95 @@
+/*
+ * Copyright 2025 Silk Loader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.rhm176.silk.installer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Compares the cost of looking up and reading every class of an installation through a fresh class loader, once for
+ * the multi-jar {@code lib/} layout and once for {@link JarPacker#PACKED_JAR_NAME}. This is the part of game startup
+ * the packed layout is meant to speed up.
+ * <p>
+ * Usage: {@code ./gradlew classpathBenchmark -PgamePath=/path/to/Equilinox}
+ */
+public class ClasspathBenchmark {
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("Usage: ClasspathBenchmark <game-path>");
+            System.exit(1);
+        }
+        Path gamePath = Path.of(args[0]);
+        Path libDir = gamePath.resolve("lib");
+        List<Path> libraries;
+        try (Stream<Path> files = Files.list(libDir)) {
+            libraries = files.filter(p -> p.getFileName().toString().endsWith(".jar"))
+                    .sorted()
+                    .toList();
+        }
+
+        Path packed = gamePath.resolve(JarPacker.PACKED_JAR_NAME);
+        if (!Files.isRegularFile(packed)) {
+            packed = Files.createTempFile("silk-benchmark", ".jar");
+            packed.toFile().deleteOnExit();
+            JarPacker.pack(libraries, packed);
+        }
+
+        List<String> classes = new ArrayList<>();
+        try (ZipFile zip = new ZipFile(packed.toFile())) {
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                if (entry.getName().endsWith(".class")) classes.add(entry.getName());
+            }
+        }
+        System.out.printf("%d jars, %d classes%n", libraries.size(), classes.size());
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long multiJar = readAll(libraries, classes);
+            long single = readAll(List.of(packed), classes);
+            System.out.printf(
+                    "round %d: lib/ %.1f ms, %s %.1f ms%n",
+                    round + 1, multiJar / 1e6, JarPacker.PACKED_JAR_NAME, single / 1e6);
+        }
+    }
+
+    private static long readAll(List<Path> classpath, List<String> classes) throws IOException {
+        URL[] urls = new URL[classpath.size()];
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = classpath.get(i).toUri().toURL();
+        }
+        long start = System.nanoTime();
+        try (URLClassLoader loader = new URLClassLoader(urls, null)) {
+            for (String name : classes) {
+                try (InputStream in = loader.getResourceAsStream(name)) {
+                    if (in == null) throw new IOException("Missing " + name);
+                    in.readAllBytes();
+                }
+            }
+        }
+        return System.nanoTime() - start;
+    }
+}
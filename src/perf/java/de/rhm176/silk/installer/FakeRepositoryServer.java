@@ -0,0 +1,333 @@
+/*
+ * Copyright 2025 Silk Loader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.rhm176.silk.installer;
+
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonArray;
+import com.eclipsesource.json.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process stand-in for the GitHub releases API, Fabric meta and the Fabric mavens.
+ * <p>
+ * Every path served here mirrors the real service's path, prefixed so that a single server can play all of them:
+ * {@code /github}, {@code /meta} and {@code /maven}, {@code /maven2}, {@code /maven3}.
+ */
+class FakeRepositoryServer implements AutoCloseable {
+    static final String SILK_TAG = "v0.0.0-harness";
+    static final String FABRIC_VERSION = "0.0.0+harness";
+    static final String FABRIC_MAVEN = "net.fabricmc:fabric-loader:" + FABRIC_VERSION;
+    static final String SILK_MAIN_CLASS = "de.rhm176.loader.HarnessMain";
+
+    private static final int CHUNK_SIZE = 16 * 1024;
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+
+    record Profile(
+            long latencyMillis, long bytesPerSecond, double errorRate, int libraryCount, int librarySize, long seed) {}
+
+    private final Profile profile;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final byte[] silkJar;
+    private final byte[] libraryJar;
+    private final byte[] libraryJarSha256;
+    private final AtomicLong bytesServed = new AtomicLong();
+    private final AtomicLong requestsServed = new AtomicLong();
+    private final AtomicLong errorsInjected = new AtomicLong();
+
+    FakeRepositoryServer(Profile profile) throws IOException {
+        this.profile = profile;
+        this.silkJar = createJar(SILK_MAIN_CLASS, new byte[0]);
+        byte[] payload = new byte[profile.librarySize()];
+        new Random(profile.seed()).nextBytes(payload);
+        this.libraryJar = createJar(null, payload);
+        try {
+            this.libraryJarSha256 = HexFormat.of()
+                    .formatHex(MessageDigest.getInstance("SHA-256").digest(libraryJar))
+                    .getBytes(StandardCharsets.UTF_8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required to be supported", e);
+        }
+
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "fake-repository");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.setExecutor(executor);
+        this.server.createContext("/", this::handle);
+        this.server.start();
+    }
+
+    String baseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    long bytesServed() {
+        return bytesServed.get();
+    }
+
+    long requestsServed() {
+        return requestsServed.get();
+    }
+
+    long errorsInjected() {
+        return errorsInjected.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requestsServed.incrementAndGet();
+            sleep(profile.latencyMillis());
+
+            if (ThreadLocalRandom.current().nextDouble() < profile.errorRate()) {
+                errorsInjected.incrementAndGet();
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            String path = exchange.getRequestURI().getPath();
+            byte[] body = route(path);
+            if (body == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            boolean head = "HEAD".equals(exchange.getRequestMethod());
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            if (range != null && !head) {
+                body = applyRange(exchange, range, body);
+                if (body == null) return;
+            } else {
+                exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+                if (head) {
+                    // download plans size the artifacts with HEAD requests
+                    exchange.getResponseHeaders().set("Content-Length", Integer.toString(body.length));
+                }
+                exchange.sendResponseHeaders(200, head ? -1 : body.length);
+            }
+            if (!head) {
+                writeThrottled(exchange.getResponseBody(), body);
+            }
+        }
+    }
+
+    /**
+     * Answers a single {@code bytes=first-last} or {@code bytes=-suffix} range, like the GitHub and maven CDNs do.
+     *
+     * @return the part of {@code body} to send, or null if the range was rejected
+     */
+    private static byte[] applyRange(HttpExchange exchange, String range, byte[] body) throws IOException {
+        Matcher matcher = RANGE.matcher(range);
+        if (!matcher.matches() || (matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+            exchange.sendResponseHeaders(416, -1);
+            return null;
+        }
+        int first;
+        int last;
+        if (matcher.group(1).isEmpty()) {
+            first = Math.max(0, body.length - Integer.parseInt(matcher.group(2)));
+            last = body.length - 1;
+        } else {
+            first = Integer.parseInt(matcher.group(1));
+            last = matcher.group(2).isEmpty()
+                    ? body.length - 1
+                    : Math.min(body.length - 1, Integer.parseInt(matcher.group(2)));
+        }
+        if (first > last) {
+            exchange.sendResponseHeaders(416, -1);
+            return null;
+        }
+        exchange.getResponseHeaders().set("Content-Range", "bytes " + first + "-" + last + "/" + body.length);
+        exchange.sendResponseHeaders(206, last - first + 1);
+        return Arrays.copyOfRange(body, first, last + 1);
+    }
+
+    private byte[] route(String path) throws IOException {
+        String releases = "/github/repos/SilkLoader/silk-loader/releases";
+        if (path.equals(releases)) {
+            return json(Json.array().add(release()));
+        } else if (path.equals(releases + "/latest") || path.equals(releases + "/tags/" + SILK_TAG)) {
+            return json(release());
+        } else if (path.equals("/github/assets/silk-loader-" + SILK_TAG + ".jar")) {
+            return silkJar;
+        } else if (path.equals("/meta/v2/versions/loader")) {
+            return json(Json.array()
+                    .add(Json.object()
+                            .add("separator", ".")
+                            .add("build", 0)
+                            .add("maven", FABRIC_MAVEN)
+                            .add("version", FABRIC_VERSION)
+                            .add("stable", true)));
+        } else if (path.matches("/maven[23]?/.*")) {
+            String artifactPath = path.substring(path.indexOf('/', 1) + 1);
+            String fabricBase = "net/fabricmc/fabric-loader/" + FABRIC_VERSION + "/fabric-loader-" + FABRIC_VERSION;
+            if (artifactPath.equals(fabricBase + ".json")) {
+                return json(fabricLoaderJson());
+            } else if (artifactPath.endsWith(".jar")) {
+                return libraryJar;
+            } else if (artifactPath.endsWith(".jar.sha256")) {
+                return libraryJarSha256;
+            } else if (artifactPath.endsWith(".pom")) {
+                return pom(artifactPath);
+            }
+        }
+        return null;
+    }
+
+    private JsonObject release() {
+        return Json.object()
+                .add("tag_name", SILK_TAG)
+                .add(
+                        "assets",
+                        Json.array()
+                                .add(Json.object()
+                                        .add("name", "silk-loader-" + SILK_TAG + ".jar")
+                                        .add("size", silkJar.length)
+                                        .add(
+                                                "browser_download_url",
+                                                "https://github.com/assets/silk-loader-" + SILK_TAG + ".jar")));
+    }
+
+    private JsonObject fabricLoaderJson() {
+        JsonArray common = Json.array();
+        for (int i = 0; i < profile.libraryCount(); i++) {
+            // spread libraries over the mirrors so that every maven context gets exercised
+            String maven = Main.FABRIC_MAVENS.get(i % Main.FABRIC_MAVENS.size());
+            common.add(Json.object()
+                    .add("name", "org.harness.group" + (i % 7) + ":library-" + i + ":1." + i)
+                    .add("url", maven));
+        }
+        return Json.object()
+                .add("version", 2)
+                .add("libraries", Json.object().add("common", common))
+                .add("mainClass", Json.object().add("client", "net.fabricmc.loader.impl.launch.knot.KnotClient"));
+    }
+
+    /**
+     * POMs that exercise transitive resolution: every library depends on an extra artifact whose version comes from a
+     * property and conflicts with the other libraries' ones, and the extras inherit a managed version from a parent.
+     */
+    private byte[] pom(String artifactPath) {
+        String[] segments = artifactPath.split("/");
+        String artifactId = segments[segments.length - 3];
+        String head = "";
+        StringBuilder dependencies = new StringBuilder();
+        if (artifactId.startsWith("library-")) {
+            int i = Integer.parseInt(artifactId.substring("library-".length()));
+            head = "<properties><extra.version>2." + (i % 3) + "</extra.version></properties>";
+            dependencies
+                    .append(dependency("org.harness.transitive", "extra-" + (i % 5), "${extra.version}", ""))
+                    .append(dependency("junit", "junit", "4.13.2", "<scope>test</scope>"))
+                    .append(dependency("org.harness.optional", "optional", "1.0", "<optional>true</optional>"));
+            if (i + 1 < profile.libraryCount()) {
+                // an older version of a library the Fabric JSON lists itself
+                dependencies.append(dependency("org.harness.group" + ((i + 1) % 7), "library-" + (i + 1), "0.1", ""));
+            }
+        } else if (artifactId.startsWith("extra-")) {
+            head = "<parent><groupId>org.harness</groupId><artifactId>parent</artifactId><version>1</version></parent>";
+            dependencies.append(dependency("org.harness.transitive", "leaf", null, ""));
+        } else if (artifactId.equals("parent")) {
+            head = "<dependencyManagement><dependencies>" + dependency("org.harness.transitive", "leaf", "3.0", "")
+                    + "</dependencies></dependencyManagement>";
+        } else if (!artifactId.equals("leaf")) {
+            return null;
+        }
+        return ("<project>" + head + "<dependencies>" + dependencies + "</dependencies></project>")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String dependency(String groupId, String artifactId, String version, String extra) {
+        return "<dependency><groupId>" + groupId + "</groupId><artifactId>" + artifactId + "</artifactId>"
+                + (version != null ? "<version>" + version + "</version>" : "") + extra + "</dependency>";
+    }
+
+    private void writeThrottled(OutputStream out, byte[] body) throws IOException {
+        for (int offset = 0; offset < body.length; offset += CHUNK_SIZE) {
+            int length = Math.min(CHUNK_SIZE, body.length - offset);
+            out.write(body, offset, length);
+            bytesServed.addAndGet(length);
+            if (profile.bytesPerSecond() > 0) {
+                sleep(length * 1000L / profile.bytesPerSecond());
+            }
+        }
+    }
+
+    private static byte[] json(JsonObject object) {
+        return object.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] json(JsonArray array) {
+        return array.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] createJar(String mainClass, byte[] payload) throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        if (mainClass != null) {
+            manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, mainClass);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (JarOutputStream jar = new JarOutputStream(bytes, manifest)) {
+            if (payload.length > 0) {
+                // random data does not compress, so the jar ends up roughly payload sized
+                jar.putNextEntry(new JarEntry("payload.bin"));
+                jar.write(payload);
+                jar.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) return;
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2025 Silk Loader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.rhm176.silk.installer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Runs {@link Main#install} and {@link Main#uninstall} repeatedly against a {@link FakeRepositoryServer} and reports
+ * wall time percentiles and throughput, so regressions in the download pipeline show up without network access.
+ * <p>
+ * Usage: {@code ./gradlew installHarness -PharnessArgs="--iterations 20 --libraries 300 --latency 20"}
+ */
+public class InstallLoadHarness {
+    private static final Map<String, String> DEFAULTS = Map.of(
+            "--iterations", "10",
+            "--warmup", "2",
+            "--libraries", "200",
+            "--library-size", "65536",
+            "--latency", "10",
+            "--bandwidth", "0",
+            "--error-rate", "0",
+            "--seed", "176",
+            "--verbose", "false");
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int iterations = Integer.parseInt(options.get("--iterations"));
+        int warmup = Integer.parseInt(options.get("--warmup"));
+        boolean verbose = Boolean.parseBoolean(options.get("--verbose"));
+        FakeRepositoryServer.Profile profile = new FakeRepositoryServer.Profile(
+                Long.parseLong(options.get("--latency")),
+                Long.parseLong(options.get("--bandwidth")),
+                Double.parseDouble(options.get("--error-rate")),
+                Integer.parseInt(options.get("--libraries")),
+                Integer.parseInt(options.get("--library-size")),
+                Long.parseLong(options.get("--seed")));
+
+        PrintStream originalOut = System.out;
+        PrintStream originalErr = System.err;
+        List<Long> installNanos = new ArrayList<>();
+        List<Long> uninstallNanos = new ArrayList<>();
+        List<Long> cleanupNanos = new ArrayList<>();
+        int incompleteInstalls = 0;
+        // the fake release points at this run's server, it must not end up in the user's cache
+        Path gitHubCache = Files.createTempDirectory("silk-harness-github");
+        Main.setGitHubCacheDir(gitHubCache);
+
+        try (FakeRepositoryServer server = new FakeRepositoryServer(profile)) {
+            Main.setHttpClient(new RedirectingHttpClient(
+                    HttpClient.newBuilder()
+                            .followRedirects(HttpClient.Redirect.NORMAL)
+                            .build(),
+                    server.baseUrl()));
+            // every mirror is the fake server here, its timings must not end up in the user's statistics
+            Main.setMirrorStats(new MirrorStats(null));
+            originalOut.printf("Fake repository listening on %s with %s%n", server.baseUrl(), profile);
+
+            long measuredBytes = 0;
+            for (int i = 0; i < warmup + iterations; i++) {
+                boolean measured = i >= warmup;
+                Path gamePath = Files.createTempDirectory("silk-harness-game");
+                // a fresh cache every iteration, otherwise only the first install would download anything
+                Path downloadCache = Files.createTempDirectory("silk-harness-downloads");
+                Main.setSharedDownloads(new SharedDownloads(downloadCache));
+                long bytesBefore = server.bytesServed();
+
+                if (!verbose) {
+                    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+                    System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+                }
+                long installStart = System.nanoTime();
+                Main.install(FakeRepositoryServer.FABRIC_MAVEN, FakeRepositoryServer.SILK_TAG, gamePath, null);
+                long installTime = System.nanoTime() - installStart;
+                boolean complete = countLibraries(gamePath) == profile.libraryCount() + 1;
+
+                long uninstallStart = System.nanoTime();
+                Main.uninstall(gamePath, null, true);
+                long uninstallTime = System.nanoTime() - uninstallStart;
+                DirectoryDeleter.awaitPendingDeletions();
+                long cleanupTime = System.nanoTime() - uninstallStart;
+                deleteQuietly(gamePath);
+                deleteQuietly(downloadCache);
+                System.setOut(originalOut);
+                System.setErr(originalErr);
+
+                if (!measured) continue;
+
+                installNanos.add(installTime);
+                uninstallNanos.add(uninstallTime);
+                cleanupNanos.add(cleanupTime);
+                measuredBytes += server.bytesServed() - bytesBefore;
+                if (!complete) incompleteInstalls++;
+                originalOut.printf(
+                        "  #%d install %.1f ms, uninstall %.1f ms (%.1f ms until cleaned up)%s%n",
+                        i - warmup + 1,
+                        installTime / 1e6,
+                        uninstallTime / 1e6,
+                        cleanupTime / 1e6,
+                        complete ? "" : " (incomplete)");
+            }
+
+            long totalInstallNanos =
+                    installNanos.stream().mapToLong(Long::longValue).sum();
+            originalOut.println();
+            originalOut.printf("install:   %s%n", summarize(installNanos));
+            originalOut.printf("uninstall: %s%n", summarize(uninstallNanos));
+            originalOut.printf("cleanup:   %s%n", summarize(cleanupNanos));
+            originalOut.printf(
+                    "throughput: %.2f MiB/s over %d installs (%d incomplete)%n",
+                    totalInstallNanos == 0 ? 0 : measuredBytes / 1048576.0 / (totalInstallNanos / 1e9),
+                    iterations,
+                    incompleteInstalls);
+            originalOut.printf(
+                    "server: %d requests, %d injected errors%n", server.requestsServed(), server.errorsInjected());
+        } finally {
+            System.setOut(originalOut);
+            System.setErr(originalErr);
+            deleteQuietly(gitHubCache);
+        }
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>(DEFAULTS);
+        for (int i = 0; i < args.length; i++) {
+            if (!DEFAULTS.containsKey(args[i])) {
+                throw new IllegalArgumentException(
+                        "Unknown option " + args[i] + ". Known options: " + DEFAULTS.keySet());
+            }
+            if (args[i].equals("--verbose")) {
+                options.put(args[i], "true");
+            } else if (i + 1 < args.length) {
+                options.put(args[i], args[++i]);
+            } else {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+        }
+        return options;
+    }
+
+    private static String summarize(List<Long> nanos) {
+        if (nanos.isEmpty()) return "no samples";
+        long[] sorted = nanos.stream().mapToLong(Long::longValue).sorted().toArray();
+        return String.format(
+                "p50 %.1f ms, p99 %.1f ms, min %.1f ms, max %.1f ms",
+                percentile(sorted, 50) / 1e6,
+                percentile(sorted, 99) / 1e6,
+                sorted[0] / 1e6,
+                sorted[sorted.length - 1] / 1e6);
+    }
+
+    // nearest-rank percentile
+    private static long percentile(long[] sorted, int percentile) {
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    private static long countLibraries(Path gamePath) throws IOException {
+        Path libDir = gamePath.resolve("lib");
+        if (!Files.isDirectory(libDir)) return 0;
+        try (Stream<Path> files = Files.list(libDir)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(".jar"))
+                    .count();
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Main.deleteDirectoryRecursively(path, null);
+        } catch (IOException e) {
+            System.err.println("Could not clean up " + path + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2025 Silk Loader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.rhm176.silk.installer;
+
+import java.io.IOException;
+import java.net.Authenticator;
+import java.net.CookieHandler;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+
+/**
+ * {@link HttpClient} that rewrites every request aimed at one of the real upstream hosts to the matching context
+ * of a {@link FakeRepositoryServer}. Requests to any other host fail, so the harness can never touch the network.
+ */
+class RedirectingHttpClient extends HttpClient {
+    private final HttpClient delegate;
+    private final Map<String, String> hostToBase;
+
+    RedirectingHttpClient(HttpClient delegate, String serverBaseUrl) {
+        this.delegate = delegate;
+        this.hostToBase = Map.of(
+                "api.github.com", serverBaseUrl + "/github",
+                "github.com", serverBaseUrl + "/github",
+                "meta.fabricmc.net", serverBaseUrl + "/meta",
+                "maven.fabricmc.net", serverBaseUrl + "/maven",
+                "maven2.fabricmc.net", serverBaseUrl + "/maven2",
+                "maven3.fabricmc.net", serverBaseUrl + "/maven3");
+    }
+
+    private HttpRequest redirect(HttpRequest request) {
+        URI uri = request.uri();
+        String base = hostToBase.get(uri.getHost());
+        if (base == null) {
+            throw new IllegalArgumentException("Harness refused request to unknown host: " + uri);
+        }
+        String query = uri.getRawQuery() != null ? "?" + uri.getRawQuery() : "";
+        return HttpRequest.newBuilder(request, (name, value) -> true)
+                .uri(URI.create(base + uri.getRawPath() + query))
+                .build();
+    }
+
+    @Override
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler)
+            throws IOException, InterruptedException {
+        return delegate.send(redirect(request), responseBodyHandler);
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(
+            HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler) {
+        return delegate.sendAsync(redirect(request), responseBodyHandler);
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(
+            HttpRequest request,
+            HttpResponse.BodyHandler<T> responseBodyHandler,
+            HttpResponse.PushPromiseHandler<T> pushPromiseHandler) {
+        return delegate.sendAsync(redirect(request), responseBodyHandler, pushPromiseHandler);
+    }
+
+    @Override
+    public Optional<CookieHandler> cookieHandler() {
+        return delegate.cookieHandler();
+    }
+
+    @Override
+    public Optional<Duration> connectTimeout() {
+        return delegate.connectTimeout();
+    }
+
+    @Override
+    public Redirect followRedirects() {
+        return delegate.followRedirects();
+    }
+
+    @Override
+    public Optional<ProxySelector> proxy() {
+        return delegate.proxy();
+    }
+
+    @Override
+    public SSLContext sslContext() {
+        return delegate.sslContext();
+    }
+
+    @Override
+    public SSLParameters sslParameters() {
+        return delegate.sslParameters();
+    }
+
+    @Override
+    public Optional<Authenticator> authenticator() {
+        return delegate.authenticator();
+    }
+
+    @Override
+    public Version version() {
+        return delegate.version();
+    }
+
+    @Override
+    public Optional<Executor> executor() {
+        return delegate.executor();
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2025 Silk Loader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.rhm176.silk.installer;
+
+import java.awt.Frame;
+import java.awt.GraphicsEnvironment;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares cold starts of the plain fat jar on the build's JDK with the fast-start distribution, once for a command
+ * that finishes right away and, if there is a display, once until the installer window is visible.
+ * <p>
+ * Usage: {@code ./gradlew startupBenchmark}
+ */
+public class StartupBenchmark {
+    private static final int ROUNDS = 15;
+    private static final String WINDOW_PROBE = "--window-probe";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 1 && args[0].equals(WINDOW_PROBE)) {
+            probeWindow();
+            return;
+        }
+        if (args.length != 2) {
+            System.err.println("Usage: StartupBenchmark <fat-jar> <fast-start-image>");
+            System.exit(1);
+        }
+        Path fatJar = Path.of(args[0]).toAbsolutePath();
+        Path image = Path.of(args[1]).toAbsolutePath();
+        boolean windows = System.getProperty("os.name").startsWith("Windows");
+        Path launcher = image.resolve(windows ? "bin/silk-installer.bat" : "bin/silk-installer");
+        String systemJava = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        Path gamePath = Files.createTempDirectory("silk-startup-benchmark");
+
+        try {
+            // the first launch creates the archive, which is not what later launches cost
+            run(List.of(launcher.toString(), "verify", gamePath.toString()));
+
+            System.out.println("command line (verify on an empty directory):");
+            report("plain jar", List.of(systemJava, "-jar", fatJar.toString(), "verify", gamePath.toString()));
+            report("fast-start", List.of(launcher.toString(), "verify", gamePath.toString()));
+
+            if (GraphicsEnvironment.isHeadless()) {
+                System.out.println("no display, skipping the time until the window is visible");
+                return;
+            }
+            // the probe is appended to the classpath, which keeps the archive usable
+            String probe = Path.of(StartupBenchmark.class
+                            .getProtectionDomain()
+                            .getCodeSource()
+                            .getLocation()
+                            .toURI())
+                    .toString();
+            Path runtimeJava = image.resolve(windows ? "runtime/bin/java.exe" : "runtime/bin/java");
+            Path imageJar = image.resolve("lib/silk-installer.jar");
+            System.out.println("window (until the installer window is visible):");
+            report(
+                    "plain jar",
+                    List.of(
+                            systemJava,
+                            "-cp",
+                            fatJar + File.pathSeparator + probe,
+                            StartupBenchmark.class.getName(),
+                            WINDOW_PROBE));
+            report(
+                    "fast-start",
+                    List.of(
+                            runtimeJava.toString(),
+                            "-Xshare:auto",
+                            "-XX:SharedArchiveFile=" + image.resolve("lib/silk-installer.jsa"),
+                            "-cp",
+                            imageJar + File.pathSeparator + probe,
+                            StartupBenchmark.class.getName(),
+                            WINDOW_PROBE));
+        } finally {
+            Files.deleteIfExists(gamePath);
+        }
+    }
+
+    private static void report(String name, List<String> command) throws IOException, InterruptedException {
+        List<Long> nanos = new ArrayList<>();
+        for (int round = 0; round < ROUNDS; round++) {
+            nanos.add(run(command));
+        }
+        long[] sorted = nanos.stream().mapToLong(Long::longValue).sorted().toArray();
+        System.out.printf(
+                "  %-10s p50 %.1f ms, min %.1f ms, max %.1f ms%n",
+                name, sorted[sorted.length / 2] / 1e6, sorted[0] / 1e6, sorted[sorted.length - 1] / 1e6);
+    }
+
+    private static long run(List<String> command) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        process.waitFor();
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Opens the installer window like a launch without arguments and exits as soon as it is visible.
+     */
+    private static void probeWindow() throws InterruptedException {
+        InstallerWindow.launch();
+        while (true) {
+            for (Frame frame : Frame.getFrames()) {
+                if (frame instanceof InstallerWindow && frame.isShowing()) System.exit(0);
+            }
+            Thread.sleep(5);
+        }
+    }
+}